@@ -0,0 +1,310 @@
+package com.manu.forecaster.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of byte values, stored as records appended to memory-mapped segment files.
+ * Records are self describing, so the index is rebuilt by scanning the segments when the cache is opened.
+ * Keys are stored as their SHA-256 digest and length, the upstream urls they are built from may carry credentials.
+ * The segments never exceed the byte budget, the oldest segment is dropped whole to make room for a new one.
+ */
+public class DiskCache implements Closeable {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.dat");
+    // marks a complete record, written last so that a torn write is never read back
+    private static final int RECORD_MAGIC = 0x54494C32;
+    private static final int KEY_DIGEST_SIZE = 32;
+    // magic, key length, value length, expiration epoch millis, key digest
+    static final int HEADER_SIZE = 4 + 4 + 4 + 8 + KEY_DIGEST_SIZE;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Clock clock;
+    private final MessageDigest keyDigest;
+
+    // records by hex digest of their key
+    private final Map<String, RecordLocation> index = new HashMap<>();
+    // segments by id, the first one is the oldest
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private long activeSegmentId;
+    private int writePosition;
+
+    /**
+     * Opens the cache on the directory, loading the records already stored there
+     *
+     * @param directory   directory of the segment files, created if missing
+     * @param maxSize     maximum total size of the segment files
+     * @param segmentSize size of every segment file, also the maximum size of a record
+     * @throws IOException when the directory or the segments can't be opened
+     */
+    public DiskCache(Path directory, long maxSize, int segmentSize) throws IOException {
+        this(directory, maxSize, segmentSize, Clock.systemUTC());
+    }
+
+    /**
+     * @param directory   directory of the segment files, created if missing
+     * @param maxSize     maximum total size of the segment files
+     * @param segmentSize size of every segment file, also the maximum size of a record
+     * @param clock       clock used to check the expiration of the records
+     * @throws IOException when the directory or the segments can't be opened
+     */
+    public DiskCache(Path directory, long maxSize, int segmentSize, Clock clock) throws IOException {
+        if (segmentSize <= HEADER_SIZE || maxSize < segmentSize) {
+            throw new IllegalArgumentException("The disk cache budget must fit at least one segment bigger than a record header");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxSize / segmentSize);
+        this.clock = clock;
+        try {
+            this.keyDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        Files.createDirectories(directory);
+        load();
+    }
+
+    /**
+     * Gets a value from the cache
+     *
+     * @param key key of the value
+     * @return the cached value with its expiration, or null if missing or expired
+     */
+    public synchronized Entry get(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        String digest = HexFormat.of().formatHex(keyDigest.digest(keyBytes));
+        RecordLocation location = index.get(digest);
+        if (location == null || location.keyLength() != keyBytes.length) {
+            return null;
+        }
+
+        if (location.expiresAt() <= clock.millis()) {
+            index.remove(digest);
+            return null;
+        }
+
+        byte[] value = new byte[location.length()];
+        segments.get(location.segmentId()).get(location.offset(), value);
+        return new Entry(value, Instant.ofEpochMilli(location.expiresAt()));
+    }
+
+    /**
+     * Appends a value to the cache, dropping the oldest segment when a new one doesn't fit the budget
+     *
+     * @param key       key of the value
+     * @param value     value to cache
+     * @param expiresAt instant after which the value is no longer returned
+     * @throws IOException when a new segment can't be created
+     */
+    public synchronized void put(String key, byte[] value, Instant expiresAt) throws IOException {
+        // a record must fit a single segment
+        if ((long) HEADER_SIZE + value.length > segmentSize) {
+            return;
+        }
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] digest = keyDigest.digest(keyBytes);
+        int valueOffset = append(keyBytes.length, digest, value, expiresAt.toEpochMilli());
+        index.put(HexFormat.of().formatHex(digest),
+                new RecordLocation(activeSegmentId, valueOffset, value.length, keyBytes.length, expiresAt.toEpochMilli()));
+    }
+
+    /**
+     * Removes a value from the cache, the removal is persisted so that the value doesn't come back on restart
+     *
+     * @param key key of the value to remove
+     * @throws IOException when a new segment can't be created
+     */
+    public synchronized void invalidate(String key) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] digest = keyDigest.digest(keyBytes);
+        if (index.remove(HexFormat.of().formatHex(digest)) != null) {
+            // an already expired record hides the older ones when the segments are scanned again
+            append(keyBytes.length, digest, new byte[0], 0);
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Flushes the segments to the storage
+     */
+    @Override
+    public synchronized void close() {
+        for (var segment : segments.values()) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Writes a record on the active segment, moving to a new segment if it doesn't fit
+     *
+     * @return the offset of the value of the record on the active segment
+     */
+    private int append(int keyLength, byte[] digest, byte[] value, long expiresAt) throws IOException {
+        int recordSize = HEADER_SIZE + value.length;
+        if (writePosition + recordSize > segmentSize) {
+            rollSegment();
+        }
+
+        MappedByteBuffer segment = segments.get(activeSegmentId);
+        int position = writePosition;
+        int end = position + recordSize;
+
+        segment.putInt(position + 4, keyLength);
+        segment.putInt(position + 8, value.length);
+        segment.putLong(position + 12, expiresAt);
+        segment.put(position + 20, digest);
+        segment.put(position + HEADER_SIZE, value);
+
+        // leftovers of a torn write after this record must not look like a record
+        if (end + 4 <= segmentSize) {
+            segment.putInt(end, 0);
+        }
+        segment.putInt(position, RECORD_MAGIC);
+
+        writePosition = end;
+        return position + HEADER_SIZE;
+    }
+
+    private void rollSegment() throws IOException {
+        activeSegmentId++;
+        segments.put(activeSegmentId, mapSegment(activeSegmentId));
+        writePosition = 0;
+
+        // drop the oldest segments, with every record they contain
+        while (segments.size() > maxSegments) {
+            long oldestSegmentId = segments.pollFirstEntry().getKey();
+            index.values().removeIf(location -> location.segmentId() == oldestSegmentId);
+            deleteSegment(oldestSegmentId);
+        }
+    }
+
+    /**
+     * Deletes a segment that is no longer referenced. A deleted file keeps its pages until the garbage collector
+     * unmaps the buffer, so the file is truncated first: the pages are released right away and the budget holds.
+     * The buffer of the segment must never be read again, reading a truncated mapping crashes the process.
+     */
+    private void deleteSegment(long segmentId) throws IOException {
+        Path path = getSegmentPath(segmentId);
+        if (Files.exists(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Maps the existing segments from the oldest to the newest, rebuilding the index from their records
+     */
+    private void load() throws IOException {
+        TreeMap<Long, Path> segmentPaths = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segmentPaths.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+
+        // the budget may have been lowered since the segments were written
+        while (segmentPaths.size() > maxSegments) {
+            Files.deleteIfExists(segmentPaths.pollFirstEntry().getValue());
+        }
+
+        for (long segmentId : segmentPaths.keySet()) {
+            MappedByteBuffer segment = mapSegment(segmentId);
+            segments.put(segmentId, segment);
+            activeSegmentId = segmentId;
+            writePosition = scanSegment(segmentId, segment);
+        }
+
+        if (segments.isEmpty()) {
+            activeSegmentId = 0;
+            segments.put(activeSegmentId, mapSegment(activeSegmentId));
+            writePosition = 0;
+        }
+    }
+
+    /**
+     * Adds the records of a segment to the index, newer records of the same key replace the older ones
+     *
+     * @return the position after the last complete record
+     */
+    private int scanSegment(long segmentId, MappedByteBuffer segment) {
+        long now = clock.millis();
+        int position = 0;
+
+        while (position + HEADER_SIZE <= segmentSize && segment.getInt(position) == RECORD_MAGIC) {
+            int keyLength = segment.getInt(position + 4);
+            int valueLength = segment.getInt(position + 8);
+            long expiresAt = segment.getLong(position + 12);
+
+            long recordSize = (long) HEADER_SIZE + valueLength;
+            if (keyLength < 0 || valueLength < 0 || position + recordSize > segmentSize) {
+                break;
+            }
+
+            byte[] digest = new byte[KEY_DIGEST_SIZE];
+            segment.get(position + 20, digest);
+            String key = HexFormat.of().formatHex(digest);
+
+            if (expiresAt > now) {
+                index.put(key, new RecordLocation(segmentId, position + HEADER_SIZE, valueLength, keyLength, expiresAt));
+            } else {
+                index.remove(key);
+            }
+
+            position += (int) recordSize;
+        }
+
+        return position;
+    }
+
+    private MappedByteBuffer mapSegment(long segmentId) throws IOException {
+        try (FileChannel channel = FileChannel.open(getSegmentPath(segmentId),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path getSegmentPath(long segmentId) {
+        return directory.resolve(String.format("segment-%d.dat", segmentId));
+    }
+
+    public record Entry(byte[] value, Instant expiresAt) {
+    }
+
+    private record RecordLocation(long segmentId, int offset, int length, int keyLength, long expiresAt) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.manu.forecaster.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index of values attached to points of the globe, answering nearest point queries within a fixed radius.
+ * Points are bucketed on a latitude/longitude grid whose cells are as tall as the radius, so a query only
+ * looks at the cells around the queried point instead of every stored point.
+ *
+ * @param <V> type of the values attached to the points
+ */
+public class GeoPointIndex<V> {
+
+    // mean earth radius, the haversine distance is accurate to a few meters at the radii used here
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180;
+    // a zero radius still needs cells with a size, it only matches the exact same point
+    private static final double MIN_CELL_METERS = 1;
+
+    private final double radiusMeters;
+    private final double cellDegrees;
+    private final long cellsAround;
+
+    private final Map<Long, List<GeoPoint<V>>> cells = new HashMap<>();
+    private int size = 0;
+
+    /**
+     * @param radiusMeters maximum distance between a queried point and the point it matches, 0 only matches the same point
+     */
+    public GeoPointIndex(double radiusMeters) {
+        if (!(radiusMeters >= 0) || Double.isInfinite(radiusMeters)) {
+            throw new IllegalArgumentException("The radius must be a finite distance, not negative");
+        }
+        this.radiusMeters = radiusMeters;
+        this.cellDegrees = Math.min(Math.max(radiusMeters, MIN_CELL_METERS) / METERS_PER_DEGREE, 180);
+        this.cellsAround = (long) Math.ceil(360 / cellDegrees);
+    }
+
+    /**
+     * Attaches a value to a point, replacing the value of the exact same point
+     *
+     * @param latitude  latitude of the point in degrees
+     * @param longitude longitude of the point in degrees
+     * @param value     value to attach
+     */
+    public synchronized void put(double latitude, double longitude, V value) {
+        List<GeoPoint<V>> cell = cells.computeIfAbsent(getCellKey(getLatitudeCell(latitude), getLongitudeCell(longitude)), key -> new ArrayList<>());
+        for (int i = 0; i < cell.size(); i++) {
+            GeoPoint<V> point = cell.get(i);
+            if (point.latitude() == latitude && point.longitude() == longitude) {
+                cell.set(i, new GeoPoint<>(latitude, longitude, value));
+                return;
+            }
+        }
+        cell.add(new GeoPoint<>(latitude, longitude, value));
+        size++;
+    }
+
+    /**
+     * Gets the value of the nearest point within the radius
+     *
+     * @param latitude  latitude of the queried point in degrees
+     * @param longitude longitude of the queried point in degrees
+     * @return the value of the nearest point, or null if no point is within the radius
+     */
+    public synchronized V findNearest(double latitude, double longitude) {
+        long latitudeCell = getLatitudeCell(latitude);
+        long longitudeCell = getLongitudeCell(longitude);
+
+        // a cell is as tall as the radius, but gets narrower towards the poles: widen the search accordingly
+        double farthestLatitude = Math.min(90, Math.abs(latitude) + cellDegrees * 2);
+        double cos = Math.cos(Math.toRadians(farthestLatitude));
+        long longitudeSpan = cos > 1.0 / cellsAround ? (long) Math.ceil(1 / cos) : cellsAround;
+        boolean wholeRow = longitudeSpan * 2 + 1 >= cellsAround;
+
+        GeoPoint<V> nearest = null;
+        double nearestDistance = radiusMeters;
+
+        for (long dy = -1; dy <= 1; dy++) {
+            // the whole row when the span wraps around the globe, every cell is visited once
+            long fromX = wholeRow ? 0 : longitudeCell - longitudeSpan;
+            long toX = wholeRow ? cellsAround - 1 : longitudeCell + longitudeSpan;
+            for (long x = fromX; x <= toX; x++) {
+                List<GeoPoint<V>> cell = cells.get(getCellKey(latitudeCell + dy, Math.floorMod(x, cellsAround)));
+                if (cell == null) {
+                    continue;
+                }
+                for (var point : cell) {
+                    double distance = distanceMeters(latitude, longitude, point.latitude(), point.longitude());
+                    if (distance <= nearestDistance) {
+                        nearest = point;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+        }
+
+        return nearest == null ? null : nearest.value();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public double getRadiusMeters() {
+        return radiusMeters;
+    }
+
+    /**
+     * Computes the great circle distance between two points with the haversine formula
+     *
+     * @return the distance in meters
+     */
+    static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+        double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private long getLatitudeCell(double latitude) {
+        return (long) Math.floor((latitude + 90) / cellDegrees);
+    }
+
+    private long getLongitudeCell(double longitude) {
+        // wrapped, so that the cells on both sides of the antimeridian are neighbours
+        return Math.floorMod((long) Math.floor((longitude + 180) / cellDegrees), cellsAround);
+    }
+
+    private static long getCellKey(long latitudeCell, long longitudeCell) {
+        return (latitudeCell << 32) ^ longitudeCell;
+    }
+
+    private record GeoPoint<V>(double latitude, double longitude, V value) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.manu.forecaster.cache;
+
+import com.manu.forecaster.exception.RestException;
+import com.manu.forecaster.utils.FutureUtils;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces concurrent calls with the same key: the first caller runs the call, while every caller arriving
+ * before it completes waits for the same result instead of running its own copy.
+ *
+ * @param <K> type of the keys identifying the calls
+ * @param <V> type of the results
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the call, or waits for the identical call already running
+     *
+     * @param key  identifies identical calls
+     * @param call call to run
+     * @return the result of the call
+     * @throws IOException   when the call failed with an IOException
+     * @throws RestException when the call failed with a RestException
+     */
+    public V execute(K key, FutureUtils.RemoteSupplier<V> call) throws IOException, RestException {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+
+        // someone else is already running the call, share its outcome
+        if (running != null) {
+            return FutureUtils.join(running);
+        }
+
+        try {
+            V value = call.get();
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * @return the number of calls currently running
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
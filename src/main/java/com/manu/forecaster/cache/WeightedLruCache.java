@@ -0,0 +1,156 @@
+package com.manu.forecaster.cache;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Least recently used cache bounded by the total weight of its values instead of the number of entries.
+ * Every entry carries its own expiration instant, expired entries are never returned and get dropped lazily.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the cached values
+ */
+public class WeightedLruCache<K, V> {
+
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final Clock clock;
+
+    // access ordered, the eldest entry is always the least recently used one
+    private final LinkedHashMap<K, CacheEntry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+
+    /**
+     * @param maxWeight maximum total weight of the cached values, 0 disables the cache
+     * @param weigher   function that computes the weight (usually the size in bytes) of a value
+     */
+    public WeightedLruCache(long maxWeight, ToLongFunction<V> weigher) {
+        this(maxWeight, weigher, Clock.systemUTC());
+    }
+
+    /**
+     * @param maxWeight maximum total weight of the cached values, 0 disables the cache
+     * @param weigher   function that computes the weight (usually the size in bytes) of a value
+     * @param clock     clock used to check the expiration of the values
+     */
+    public WeightedLruCache(long maxWeight, ToLongFunction<V> weigher, Clock clock) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.clock = clock;
+    }
+
+    /**
+     * Gets a value from the cache
+     *
+     * @param key key of the value
+     * @return the cached value, or null if missing or expired
+     */
+    public synchronized V get(K key) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        // expired entries are removed on read
+        if (entry.isExpired(clock.instant())) {
+            removeEntry(key);
+            return null;
+        }
+
+        return entry.value();
+    }
+
+    /**
+     * Puts a value on the cache, evicting the least recently used values until the weight fits the budget
+     *
+     * @param key       key of the value
+     * @param value     value to cache
+     * @param expiresAt instant after which the value is no longer returned
+     */
+    public synchronized void put(K key, V value, Instant expiresAt) {
+        long entryWeight = weigher.applyAsLong(value);
+
+        // a value bigger than the whole budget would only flush the cache, don't store it
+        if (entryWeight > maxWeight) {
+            removeEntry(key);
+            return;
+        }
+
+        CacheEntry<V> previous = entries.put(key, new CacheEntry<>(value, entryWeight, expiresAt));
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+        weight += entryWeight;
+
+        evict();
+    }
+
+    /**
+     * Removes a value from the cache
+     *
+     * @param key key of the value to remove
+     */
+    public synchronized void invalidate(K key) {
+        removeEntry(key);
+    }
+
+    /**
+     * Removes every value from the cache
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    private void removeEntry(K key) {
+        CacheEntry<V> removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight();
+        }
+    }
+
+    private void evict() {
+        Instant now = clock.instant();
+        Iterator<Map.Entry<K, CacheEntry<V>>> iterator = entries.entrySet().iterator();
+
+        // walk from the least recently used entry, dropping until the budget is respected
+        while (weight > maxWeight && iterator.hasNext()) {
+            CacheEntry<V> entry = iterator.next().getValue();
+            weight -= entry.weight();
+            iterator.remove();
+        }
+
+        // opportunistically drop expired entries still sitting at the head of the list
+        iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            CacheEntry<V> entry = iterator.next().getValue();
+            if (!entry.isExpired(now)) {
+                break;
+            }
+            weight -= entry.weight();
+            iterator.remove();
+        }
+    }
+
+    private record CacheEntry<V>(V value, long weight, Instant expiresAt) {
+        boolean isExpired(Instant now) {
+            return !now.isBefore(expiresAt);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.manu.forecaster.constant;
+
+public enum Resampling {
+    NEAREST,
+    BILINEAR
+}
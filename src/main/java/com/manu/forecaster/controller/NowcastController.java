@@ -1,5 +1,7 @@
 package com.manu.forecaster.controller;
 
+import com.manu.forecaster.dto.nowcast.BatchNowcastRequest;
+import com.manu.forecaster.dto.nowcast.BatchWeatherMatchedNowcast;
 import com.manu.forecaster.dto.nowcast.RawNowcast;
 import com.manu.forecaster.dto.nowcast.WeatherMatchedNowcast;
 import com.manu.forecaster.service.NowcastService;
@@ -8,10 +10,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.awt.image.BufferedImage;
 import java.util.List;
 
 @RestController
@@ -41,11 +47,18 @@ public class NowcastController {
         return ResponseEntity.ok(nowcastService.getNowcastsMatch(latitude, longitude, weatherTypes));
     }
 
+    @PostMapping(path = "/batch/weatherMatch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchWeatherMatchedNowcast> batchWeatherMatch(@RequestBody BatchNowcastRequest batchNowcastRequest) {
+        return ResponseEntity.ok(nowcastService.getNowcastsMatchBatch(batchNowcastRequest));
+    }
+
     @GetMapping(path = "/radarImage", produces = MediaType.IMAGE_PNG_VALUE)
-    public ResponseEntity<?> radarImage(@RequestParam String latitude, @RequestParam String longitude,
-                                        @RequestParam String name) {
+    public ResponseEntity<StreamingResponseBody> radarImage(@RequestParam String latitude, @RequestParam String longitude,
+                                                            @RequestParam String name) {
+        // render before the response starts, so that a failure still gets its error status
+        BufferedImage image = nowcastService.getNowcastImage(latitude, longitude, name);
         return ResponseEntity.status(HttpStatus.OK)
-                .body(nowcastService.getImage(latitude, longitude, name));
+                .body(outputStream -> nowcastService.writeImage(image, outputStream));
     }
 
 }
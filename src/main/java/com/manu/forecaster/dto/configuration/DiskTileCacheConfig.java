@@ -0,0 +1,14 @@
+package com.manu.forecaster.dto.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.util.unit.DataSize;
+
+@Getter
+@Setter
+public class DiskTileCacheConfig {
+    private boolean enabled = false;
+    private String directory = "/tmp/climacode-tile-cache";
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+    private DataSize segmentSize = DataSize.ofMegabytes(16);
+}
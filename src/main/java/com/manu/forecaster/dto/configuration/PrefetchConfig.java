@@ -0,0 +1,17 @@
+package com.manu.forecaster.dto.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class PrefetchConfig {
+    private boolean enabled = false;
+    private Duration interval = Duration.ofMinutes(1);
+    private int maxTilesPerRegion = 64;
+    private List<PrefetchRegionConfig> regions = new ArrayList<>();
+}
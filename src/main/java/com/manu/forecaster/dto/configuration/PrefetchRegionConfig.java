@@ -0,0 +1,19 @@
+package com.manu.forecaster.dto.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class PrefetchRegionConfig {
+    private String name;
+    private BigDecimal north;
+    private BigDecimal south;
+    private BigDecimal west;
+    private BigDecimal east;
+    private List<Integer> zoomLevels = new ArrayList<>();
+}
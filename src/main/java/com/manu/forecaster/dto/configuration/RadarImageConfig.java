@@ -0,0 +1,11 @@
+package com.manu.forecaster.dto.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class RadarImageConfig {
+    private boolean palette = false;
+    private int compressionLevel = 6;
+}
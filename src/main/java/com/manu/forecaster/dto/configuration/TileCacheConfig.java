@@ -0,0 +1,19 @@
+package com.manu.forecaster.dto.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+public class TileCacheConfig {
+    private DataSize maxSize = DataSize.ofMegabytes(64);
+    private DataSize rasterMaxSize = DataSize.ofMegabytes(128);
+    private DataSize baseMapMaxSize = DataSize.ofMegabytes(32);
+    private Duration baseMapTtl = Duration.ofDays(7);
+    private boolean summedAreaTables = false;
+    private Duration frameInterval = Duration.ofMinutes(5);
+    private DiskTileCacheConfig disk = new DiskTileCacheConfig();
+}
@@ -1,6 +1,7 @@
 package com.manu.forecaster.dto.configuration;
 
 
+import com.manu.forecaster.constant.Resampling;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -16,6 +17,7 @@ public class TileRadarConfig {
     private float opacity;
     private int size;
     private int pixelToleranceRadius;
+    private Resampling resampling = Resampling.BILINEAR;
     private Map<String, String> templates;
     private Map<String, String> headers;
     private Map<String, String> legend;
@@ -16,6 +16,10 @@ public class WeatherSourcesConfig {
     private int baseMapZoomLevel;
     private int baseMapSize;
     private String userAgent;
+    private int maxBatchPoints = 1000;
+    private TileCacheConfig tileCache = new TileCacheConfig();
+    private PrefetchConfig prefetch = new PrefetchConfig();
+    private RadarImageConfig radarImage = new RadarImageConfig();
     private List<TileRadarConfig> tileRadars;
     private WebScrapersConfig webScrapers;
 }
@@ -3,6 +3,7 @@ package com.manu.forecaster.dto.configuration;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -10,10 +11,17 @@ import java.util.Map;
 @Setter
 public class WebScraperConfig {
     private boolean enabled;
+    private Duration deadline = Duration.ofSeconds(10);
+    private Duration cacheTtl = Duration.ofHours(1);
+    private long cacheMaxEntries = 1000;
+    private int coordinateDecimals = 2;
     private String geolocationMethod;
     private String geolocationContentType;
     private String geolocationUrl;
     private String geolocationBody;
+    private double geolocationCacheRadius = 1000;
+    private int geolocationCacheMaxEntries = 100000;
+    private String geolocationCacheFile;
     private List<WebScraperForecastsConfig> forecasts;
     private Map<String, String> legend;
 }
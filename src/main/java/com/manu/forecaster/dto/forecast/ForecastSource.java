@@ -12,4 +12,5 @@ import java.util.List;
 public class ForecastSource {
     private String name;
     private List<Forecast> forecasts;
+    private String error;
 }
@@ -0,0 +1,16 @@
+package com.manu.forecaster.dto.nowcast;
+
+import com.manu.forecaster.dto.tile.Coordinate;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchNowcastRequest {
+    private List<Coordinate> points;
+    private List<String> weatherTypes;
+}
@@ -0,0 +1,15 @@
+package com.manu.forecaster.dto.nowcast;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchWeatherMatchedNowcast {
+    // one entry for every requested point, in the same order of the request
+    private List<WeatherMatchedNowcast> results;
+}
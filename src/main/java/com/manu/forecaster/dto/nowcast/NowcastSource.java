@@ -12,4 +12,5 @@ import java.util.List;
 public class NowcastSource {
     private String sourceName;
     private List<Nowcast> nowcast;
+    private String error;
 }
@@ -11,4 +11,6 @@ import java.util.Map;
 @NoArgsConstructor
 public class WeatherMatchedNowcast {
     private Map<String, NowcastMatch> matches;
+    // error of every source that could not be queried, by source name
+    private Map<String, String> errors;
 }
@@ -2,17 +2,16 @@ package com.manu.forecaster.dto.tile;
 
 import lombok.*;
 
+/**
+ * Immutable xyz of a tile, with the pixel index of a point within it.
+ */
 @Getter
-@Setter
 @Builder
 @AllArgsConstructor
-@NoArgsConstructor
 public class TileRapresentation {
-    private int x;
-    private int y;
-    private int z;
-    private int xPixel;
-    private int yPixel;
-    private Coordinate topLeftCorner;
-    private Coordinate bottomRightCorner;
+    private final int x;
+    private final int y;
+    private final int z;
+    private final int xPixel;
+    private final int yPixel;
 }
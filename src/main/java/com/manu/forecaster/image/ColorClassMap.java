@@ -0,0 +1,62 @@
+package com.manu.forecaster.image;
+
+/**
+ * Open addressing hash map from ARGB colors to legend classes, working only with primitives.
+ * Class 0 marks an empty slot, so only classes from 1 to 255 can be stored.
+ */
+class ColorClassMap {
+
+    private final int[] colors;
+    private final byte[] classes;
+    private final int mask;
+
+    /**
+     * @param expectedSize number of colors that will be stored
+     */
+    ColorClassMap(int expectedSize) {
+        // keep the load factor at or below 50%, with a power of two capacity to use a bitmask instead of modulo
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        colors = new int[capacity];
+        classes = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Stores the class of the color, unless the color is already mapped
+     *
+     * @param color       ARGB color
+     * @param legendClass class of the color, from 1 to 255
+     */
+    void putIfAbsent(int color, int legendClass) {
+        int slot = hash(color) & mask;
+        while (classes[slot] != 0) {
+            if (colors[slot] == color) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        colors[slot] = color;
+        classes[slot] = (byte) legendClass;
+    }
+
+    /**
+     * @param color ARGB color
+     * @return the class of the color, or 0 if the color is not mapped
+     */
+    int get(int color) {
+        int slot = hash(color) & mask;
+        while (classes[slot] != 0) {
+            if (colors[slot] == color) {
+                return classes[slot] & 0xFF;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    private static int hash(int color) {
+        // spread the bits, colors of a legend often differ only in a few low bits
+        int h = color * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,89 @@
+package com.manu.forecaster.image;
+
+import com.manu.forecaster.exception.ConfigurationException;
+import com.manu.forecaster.utils.ImageUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A radar legend parsed once, where every weather name of the legend is identified by a numeric class.
+ * Colors sharing the same weather name share the same class.
+ * Class 0 is reserved for pixels that don't match any legend color, weather names start from 1.
+ */
+public class CompiledLegend {
+
+    public static final int NO_MATCH = 0;
+
+    // a legend class must fit in a single unsigned byte of a LegendRaster
+    private static final int MAX_CLASSES = 255;
+
+    private final ColorClassMap colorClasses;
+    private final String[] names;
+
+    /**
+     * @param legend map of hex colors and weather names, as configured on the tile radar
+     */
+    public CompiledLegend(Map<String, String> legend) {
+        colorClasses = new ColorClassMap(legend.size());
+        List<String> classNames = new ArrayList<>();
+
+        for (var legendItem : legend.entrySet()) {
+            // reuse the class of the weather name if another color already declared it
+            int legendClass = classNames.indexOf(legendItem.getValue()) + 1;
+            if (legendClass == NO_MATCH) {
+                classNames.add(legendItem.getValue());
+                legendClass = classNames.size();
+            }
+
+            if (legendClass > MAX_CLASSES) {
+                String message = String.format("The radar legend can't contain more than %s weather names", MAX_CLASSES);
+                throw new ConfigurationException(message);
+            }
+
+            colorClasses.putIfAbsent(ImageUtils.hexToARGB(legendItem.getKey()), legendClass);
+        }
+
+        names = classNames.toArray(new String[0]);
+    }
+
+    /**
+     * Gets the legend class of the provided color
+     *
+     * @param argb color to classify
+     * @return the class of the matching legend entry, or NO_MATCH
+     */
+    public int classify(int argb) {
+        return colorClasses.get(argb);
+    }
+
+    /**
+     * Classifies every color of a palette, so that the pixels of a palette image are classified by index
+     *
+     * @param palette ARGB colors of the palette
+     * @return the legend class of every palette index
+     */
+    public byte[] classifyPalette(int[] palette) {
+        byte[] paletteClasses = new byte[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            paletteClasses[i] = (byte) classify(palette[i]);
+        }
+        return paletteClasses;
+    }
+
+    /**
+     * @param legendClass class of a legend entry, greater than NO_MATCH
+     * @return the weather name of the legend entry
+     */
+    public String getName(int legendClass) {
+        return names[legendClass - 1];
+    }
+
+    /**
+     * @return the number of legend classes, NO_MATCH excluded
+     */
+    public int getClassCount() {
+        return names.length;
+    }
+}
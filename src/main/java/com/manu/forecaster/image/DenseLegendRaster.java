@@ -0,0 +1,54 @@
+package com.manu.forecaster.image;
+
+/**
+ * LegendRaster storing one byte per pixel
+ */
+public class DenseLegendRaster implements LegendRaster {
+
+    private final byte[] classes;
+    private final int width;
+    private final int height;
+
+    public DenseLegendRaster(byte[] classes, int width, int height) {
+        this.classes = classes;
+        this.width = width;
+        this.height = height;
+    }
+
+    static long estimateSizeInBytes(int width, int height) {
+        return (long) width * height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int classAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IndexOutOfBoundsException(String.format("Pixel %s,%s is outside the raster", x, y));
+        }
+        return classes[y * width + x] & 0xFF;
+    }
+
+    @Override
+    public void countClasses(int startX, int startY, int endX, int endY, int[] counts) {
+        for (int y = startY; y < endY; y++) {
+            int rowStart = y * width;
+            for (int i = rowStart + startX; i < rowStart + endX; i++) {
+                counts[classes[i] & 0xFF]++;
+            }
+        }
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return estimateSizeInBytes(width, height);
+    }
+}
@@ -0,0 +1,67 @@
+package com.manu.forecaster.image;
+
+/**
+ * A decoded radar tile where every pixel is stored as its CompiledLegend class instead of its color.
+ */
+public interface LegendRaster {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * @param x x pixel
+     * @param y y pixel
+     * @return the legend class of the pixel, CompiledLegend.NO_MATCH if it doesn't match any legend color
+     */
+    int classAt(int x, int y);
+
+    /**
+     * Adds the number of pixels of each legend class within the window to the counts array.
+     *
+     * @param startX first x pixel of the window, inclusive
+     * @param startY first y pixel of the window, inclusive
+     * @param endX   last x pixel of the window, exclusive
+     * @param endY   last y pixel of the window, exclusive
+     * @param counts array indexed by legend class, must be longer than the greatest class of the raster
+     */
+    void countClasses(int startX, int startY, int endX, int endY, int[] counts);
+
+    /**
+     * @return approximate heap footprint of the raster, used to weight it on caches
+     */
+    long getSizeInBytes();
+
+    /**
+     * Creates the most compact raster for the provided classes.
+     * Mostly clear tiles are run-length encoded, everything else is kept as one byte per pixel.
+     *
+     * @param classes legend class of every pixel, row by row
+     * @param width   width of the raster
+     * @param height  height of the raster
+     * @return a raster containing the provided classes
+     */
+    static LegendRaster of(byte[] classes, int width, int height) {
+
+        // count the runs of non-clear pixels, to estimate the run-length encoded size
+        int runs = 0;
+        for (int y = 0; y < height; y++) {
+            int previous = CompiledLegend.NO_MATCH;
+            int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                int current = classes[rowStart + x];
+                if (current != CompiledLegend.NO_MATCH && current != previous) {
+                    runs++;
+                }
+                previous = current;
+            }
+        }
+
+        // use run-length encoding only when it's considerably smaller than the dense raster
+        if (RunLengthLegendRaster.estimateSizeInBytes(runs, height) * 2 < DenseLegendRaster.estimateSizeInBytes(width, height)) {
+            return RunLengthLegendRaster.encode(classes, width, height, runs);
+        }
+
+        return new DenseLegendRaster(classes, width, height);
+    }
+}
@@ -0,0 +1,309 @@
+package com.manu.forecaster.image;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reduces ARGB pixels to a palette of at most 256 colors, for indexed PNG output.
+ * The pixels are first counted in a histogram of their colors, so only the distinct colors get sorted.
+ * Images with few distinct colors keep them all, so that the palette is lossless.
+ * Otherwise the distinct colors are split with median cut: the box of colors with the widest channel range,
+ * weighted by the pixels it covers, is split on that channel at the pixel median until the palette is full.
+ */
+public class PaletteQuantizer {
+
+    public static final int MAX_COLORS = 256;
+
+    private static final int[] CHANNEL_SHIFTS = {24, 16, 8, 0};
+
+    private PaletteQuantizer() {
+    }
+
+    /**
+     * Maps every pixel to a palette entry
+     *
+     * @param argb      ARGB pixels to quantize
+     * @param maxColors maximum size of the palette, from 1 to 256
+     * @return the ARGB palette and the palette index of every pixel
+     */
+    public static Quantized quantize(int[] argb, int maxColors) {
+        if (maxColors < 1 || maxColors > MAX_COLORS) {
+            throw new IllegalArgumentException("The palette size must be between 1 and " + MAX_COLORS);
+        }
+
+        // how many pixels have every color, runs of the same color are counted at once
+        ColorTable histogram = new ColorTable();
+        int runStart = 0;
+        for (int i = 1; i <= argb.length; i++) {
+            if (i == argb.length || argb[i] != argb[runStart]) {
+                histogram.add(argb[runStart], i - runStart);
+                runStart = i;
+            }
+        }
+
+        // distinct colors sorted by color, and how many pixels have them
+        int[] distinct = histogram.colors();
+        int distinctCount = distinct.length;
+        int[] counts = new int[distinctCount];
+        for (int i = 0; i < distinctCount; i++) {
+            counts[i] = histogram.get(distinct[i]);
+        }
+
+        // palette index of every distinct color
+        int[] paletteIndexes = new int[distinctCount];
+        int[] palette;
+        if (distinctCount <= maxColors) {
+            palette = distinct;
+            for (int i = 0; i < distinctCount; i++) {
+                paletteIndexes[i] = i;
+            }
+        } else {
+            palette = medianCut(distinct, counts, maxColors, paletteIndexes);
+        }
+
+        // from now on the table maps every color to its palette index
+        for (int i = 0; i < distinctCount; i++) {
+            histogram.put(distinct[i], paletteIndexes[i]);
+        }
+
+        byte[] indexes = new byte[argb.length];
+        // neighbouring pixels often share the color, skip the search for them
+        int previousColor = 0;
+        byte previousIndex = 0;
+        boolean hasPrevious = false;
+        for (int i = 0; i < argb.length; i++) {
+            int color = argb[i];
+            if (!hasPrevious || color != previousColor) {
+                previousColor = color;
+                previousIndex = (byte) histogram.get(color);
+                hasPrevious = true;
+            }
+            indexes[i] = previousIndex;
+        }
+
+        return new Quantized(palette, indexes);
+    }
+
+    /**
+     * Splits the distinct colors in boxes, every box becomes a palette entry with the weighted average of its colors
+     *
+     * @param distinct       distinct colors
+     * @param counts         pixels of every distinct color
+     * @param maxColors      maximum number of boxes
+     * @param paletteIndexes filled with the palette index of every distinct color
+     * @return the ARGB palette
+     */
+    private static int[] medianCut(int[] distinct, int[] counts, int maxColors, int[] paletteIndexes) {
+        // distinct color indexes, every box is a range of this array
+        int[] order = new int[distinct.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        List<Box> boxes = new ArrayList<>();
+        boxes.add(new Box(distinct, counts, order, 0, order.length));
+
+        while (boxes.size() < maxColors) {
+            Box widest = null;
+            for (Box box : boxes) {
+                if (box.end - box.start > 1 && (widest == null || box.score > widest.score)) {
+                    widest = box;
+                }
+            }
+            // every box has a single color left
+            if (widest == null || widest.score == 0) {
+                break;
+            }
+
+            int split = widest.split(distinct, counts, order);
+            boxes.remove(widest);
+            boxes.add(new Box(distinct, counts, order, widest.start, split));
+            boxes.add(new Box(distinct, counts, order, split, widest.end));
+        }
+
+        int[] palette = new int[boxes.size()];
+        for (int boxIndex = 0; boxIndex < boxes.size(); boxIndex++) {
+            Box box = boxes.get(boxIndex);
+            long[] sums = new long[CHANNEL_SHIFTS.length];
+            for (int i = box.start; i < box.end; i++) {
+                int color = distinct[order[i]];
+                for (int channel = 0; channel < CHANNEL_SHIFTS.length; channel++) {
+                    sums[channel] += (long) ((color >>> CHANNEL_SHIFTS[channel]) & 0xFF) * counts[order[i]];
+                }
+                paletteIndexes[order[i]] = boxIndex;
+            }
+
+            int average = 0;
+            for (int channel = 0; channel < CHANNEL_SHIFTS.length; channel++) {
+                average |= (int) ((sums[channel] + box.population / 2) / box.population) << CHANNEL_SHIFTS[channel];
+            }
+            palette[boxIndex] = average;
+        }
+
+        return palette;
+    }
+
+    /**
+     * @param palette ARGB colors of the palette
+     * @param indexes palette index of every pixel
+     */
+    public record Quantized(int[] palette, byte[] indexes) {
+    }
+
+    /**
+     * Open addressing hash table from colors to an int value, kept at most half full so that probes stay short
+     */
+    private static class ColorTable {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private int[] colors = new int[INITIAL_CAPACITY];
+        private int[] values = new int[INITIAL_CAPACITY];
+        private boolean[] used = new boolean[INITIAL_CAPACITY];
+        private int shift = Integer.numberOfLeadingZeros(INITIAL_CAPACITY - 1);
+        private int size;
+
+        /**
+         * Adds to the value of the color, colors not in the table start at 0
+         */
+        private void add(int color, int amount) {
+            int slot = slot(color);
+            if (!used[slot]) {
+                if ((size + 1) * 2 > colors.length) {
+                    grow();
+                    slot = slot(color);
+                }
+                used[slot] = true;
+                colors[slot] = color;
+                size++;
+            }
+            values[slot] += amount;
+        }
+
+        /**
+         * Sets the value of a color already in the table
+         */
+        private void put(int color, int value) {
+            values[slot(color)] = value;
+        }
+
+        /**
+         * @return the value of the color, 0 if not in the table
+         */
+        private int get(int color) {
+            return values[slot(color)];
+        }
+
+        /**
+         * @return the colors of the table, sorted
+         */
+        private int[] colors() {
+            int[] sorted = new int[size];
+            int count = 0;
+            for (int slot = 0; slot < colors.length; slot++) {
+                if (used[slot]) {
+                    sorted[count++] = colors[slot];
+                }
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private int slot(int color) {
+            int mask = colors.length - 1;
+            // fibonacci hashing, the top bits spread colors that differ only in their low channels
+            int slot = (color * 0x9E3779B9) >>> shift;
+            while (used[slot] && colors[slot] != color) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldColors = colors;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            colors = new int[oldColors.length * 2];
+            values = new int[oldColors.length * 2];
+            used = new boolean[oldColors.length * 2];
+            shift--;
+            for (int i = 0; i < oldColors.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = slot(oldColors[i]);
+                    used[slot] = true;
+                    colors[slot] = oldColors[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Range of the order array, with the channel it would be split on
+     */
+    private static class Box {
+
+        private final int start;
+        private final int end;
+        private final long population;
+        private final int channel;
+        private final long score;
+
+        private Box(int[] distinct, int[] counts, int[] order, int start, int end) {
+            this.start = start;
+            this.end = end;
+
+            int[] min = {255, 255, 255, 255};
+            int[] max = {0, 0, 0, 0};
+            long pixels = 0;
+            for (int i = start; i < end; i++) {
+                int color = distinct[order[i]];
+                for (int c = 0; c < CHANNEL_SHIFTS.length; c++) {
+                    int value = (color >>> CHANNEL_SHIFTS[c]) & 0xFF;
+                    min[c] = Math.min(min[c], value);
+                    max[c] = Math.max(max[c], value);
+                }
+                pixels += counts[order[i]];
+            }
+
+            int widestChannel = 0;
+            for (int c = 1; c < CHANNEL_SHIFTS.length; c++) {
+                if (max[c] - min[c] > max[widestChannel] - min[widestChannel]) {
+                    widestChannel = c;
+                }
+            }
+
+            this.population = pixels;
+            this.channel = widestChannel;
+            this.score = (long) (max[widestChannel] - min[widestChannel]) * pixels;
+        }
+
+        /**
+         * Sorts the colors of the box on its widest channel
+         *
+         * @return the position that splits the pixels of the box in half, never empty on either side
+         */
+        private int split(int[] distinct, int[] counts, int[] order) {
+            int shift = CHANNEL_SHIFTS[channel];
+            long[] keys = new long[end - start];
+            for (int i = start; i < end; i++) {
+                keys[i - start] = (long) ((distinct[order[i]] >>> shift) & 0xFF) << 32 | order[i];
+            }
+            Arrays.sort(keys);
+            for (int i = start; i < end; i++) {
+                order[i] = (int) keys[i - start];
+            }
+
+            long half = population / 2;
+            long cumulative = 0;
+            for (int i = start; i < end - 1; i++) {
+                cumulative += counts[order[i]];
+                if (cumulative >= half) {
+                    return i + 1;
+                }
+            }
+            return end - 1;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.manu.forecaster.image;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decoder of the PNG flavours served by the radars: non interlaced RGB, RGBA and palette images at 8 bits.
+ * Rows are inflated straight from the PNG bytes and handed to the caller one at a time as ARGB pixels,
+ * without building an intermediate BufferedImage. Every other flavour must go through ImageIO.
+ */
+public class PngDecoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_PALETTE = 3;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    // pooled inflaters and row buffers beyond the concurrent decodes of a busy moment are dropped
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    // inflaters hold native memory and are expensive to create, they are reused across decodes
+    private static final Queue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    // row buffers are reused across decodes too, growing to the widest image they served
+    private static final Queue<RowBuffers> ROW_BUFFERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final byte[] png;
+    private final int width;
+    private final int height;
+    private final int colorType;
+    private final int bytesPerPixel;
+    // ARGB colors of the palette, only for palette images
+    private final int[] palette;
+    // RGB color marked as transparent by the tRNS chunk of RGB images, -1 if none
+    private final int transparentColor;
+    // offset and length of every IDAT chunk, their concatenation is the zlib stream of the image
+    private final List<int[]> dataChunks;
+
+    private PngDecoder(byte[] png, int width, int height, int colorType, int[] palette, int transparentColor,
+                       List<int[]> dataChunks) {
+        this.png = png;
+        this.width = width;
+        this.height = height;
+        this.colorType = colorType;
+        this.bytesPerPixel = switch (colorType) {
+            case COLOR_TYPE_RGB -> 3;
+            case COLOR_TYPE_RGBA -> 4;
+            default -> 1;
+        };
+        this.palette = palette;
+        this.transparentColor = transparentColor;
+        this.dataChunks = dataChunks;
+    }
+
+    /**
+     * Reads the chunks of a PNG, without inflating the image data
+     *
+     * @param png bytes of the image
+     * @return a decoder of the image, or null if the bytes are not a PNG flavour supported by this decoder
+     * @throws IOException when the PNG is malformed
+     */
+    public static PngDecoder open(byte[] png) throws IOException {
+        if (png.length < SIGNATURE.length + 25 || !Arrays.equals(png, 0, SIGNATURE.length, SIGNATURE, 0, SIGNATURE.length)) {
+            return null;
+        }
+
+        // the first chunk is always the 13 bytes IHDR
+        int position = SIGNATURE.length;
+        if (readInt(png, position) != 13 || readInt(png, position + 4) != chunkType("IHDR")) {
+            throw new IOException("Invalid PNG header");
+        }
+        int width = readInt(png, position + 8);
+        int height = readInt(png, position + 12);
+        int bitDepth = png[position + 16] & 0xFF;
+        int colorType = png[position + 17] & 0xFF;
+        int interlace = png[position + 20] & 0xFF;
+
+        boolean supportedColorType = colorType == COLOR_TYPE_RGB || colorType == COLOR_TYPE_RGBA || colorType == COLOR_TYPE_PALETTE;
+        if (bitDepth != 8 || interlace != 0 || !supportedColorType) {
+            return null;
+        }
+        if (width <= 0 || height <= 0 || (long) width * 4 + 1 > Integer.MAX_VALUE || (long) width * height > Integer.MAX_VALUE) {
+            throw new IOException("Invalid PNG size " + width + "x" + height);
+        }
+        position += 25;
+
+        int[] palette = null;
+        int transparentColor = -1;
+        List<int[]> dataChunks = new ArrayList<>();
+
+        while (true) {
+            if (position + 12 > png.length) {
+                throw new IOException("Truncated PNG");
+            }
+            int length = readInt(png, position);
+            int type = readInt(png, position + 4);
+            int data = position + 8;
+            if (length < 0 || (long) data + length + 4 > png.length) {
+                throw new IOException("Truncated PNG");
+            }
+
+            if (type == chunkType("IEND")) {
+                break;
+            } else if (type == chunkType("IDAT")) {
+                dataChunks.add(new int[]{data, length});
+            } else if (type == chunkType("PLTE")) {
+                palette = new int[256];
+                // indexes outside of the palette are opaque black
+                Arrays.fill(palette, 0xFF000000);
+                for (int i = 0; i < Math.min(256, length / 3); i++) {
+                    int entry = data + i * 3;
+                    palette[i] = 0xFF000000 | (png[entry] & 0xFF) << 16 | (png[entry + 1] & 0xFF) << 8 | png[entry + 2] & 0xFF;
+                }
+            } else if (type == chunkType("tRNS")) {
+                if (colorType == COLOR_TYPE_PALETTE && palette != null) {
+                    // one alpha for each of the first palette entries
+                    for (int i = 0; i < Math.min(256, length); i++) {
+                        palette[i] = (png[data + i] & 0xFF) << 24 | palette[i] & 0xFFFFFF;
+                    }
+                } else if (colorType == COLOR_TYPE_RGB && length == 6) {
+                    // 16 bits samples, only the low byte is meaningful at 8 bits depth
+                    transparentColor = (png[data + 1] & 0xFF) << 16 | (png[data + 3] & 0xFF) << 8 | png[data + 5] & 0xFF;
+                }
+            }
+
+            position = data + length + 4;
+        }
+
+        if (colorType == COLOR_TYPE_PALETTE && palette == null) {
+            throw new IOException("Palette PNG without PLTE chunk");
+        }
+        if (dataChunks.isEmpty()) {
+            throw new IOException("PNG without IDAT chunks");
+        }
+
+        return new PngDecoder(png, width, height, colorType, palette, transparentColor, dataChunks);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Decodes the image, handing every row to the consumer from top to bottom.
+     * The row array is reused for the following row, consumers must copy what they need to keep.
+     *
+     * @param consumer receiver of the ARGB pixels of every row
+     * @throws IOException when the image data is malformed
+     */
+    public void decode(RowConsumer consumer) throws IOException {
+        decodeRows(0, height, consumer);
+    }
+
+    /**
+     * Decodes only a window of rows, handing them to the consumer from top to bottom.
+     * Rows above the window are still inflated and unfiltered, as PNG filters refer to the previous row,
+     * but they are not converted. Inflating stops after the last row of the window.
+     * The row array is reused for the following row, consumers must copy what they need to keep.
+     * The array is pooled across decodes and may be longer than the width of the image.
+     *
+     * @param startRow first row to decode, inclusive
+     * @param endRow   last row to decode, exclusive. Clamped to the image height
+     * @param consumer receiver of the ARGB pixels of every row of the window
+     * @throws IOException when the image data is malformed
+     */
+    public void decodeRows(int startRow, int endRow, RowConsumer consumer) throws IOException {
+        RowBuffers buffers = acquireRowBuffers();
+        try {
+            int[] argb = buffers.argb(width);
+            decodeRawRows(startRow, endRow, buffers, (y, row) -> {
+                toArgb(row, argb);
+                consumer.accept(y, argb);
+            });
+        } finally {
+            ROW_BUFFERS.offer(buffers);
+        }
+    }
+
+    /**
+     * Decodes a window of rows of a palette image without resolving the palette, handing the palette index of
+     * every pixel to the consumer. Combined with a per image palette lookup table it avoids any per pixel color work.
+     * The row array is reused for the following row, consumers must copy what they need to keep.
+     * The array is pooled across decodes and may be longer than the row of the image.
+     *
+     * @param startRow first row to decode, inclusive
+     * @param endRow   last row to decode, exclusive. Clamped to the image height
+     * @param consumer receiver of the palette indexes of every row of the window
+     * @throws IOException when the image data is malformed
+     */
+    public void decodeIndexRows(int startRow, int endRow, IndexRowConsumer consumer) throws IOException {
+        if (!isIndexed()) {
+            throw new IllegalStateException("Only palette images have palette indexes");
+        }
+        RowBuffers buffers = acquireRowBuffers();
+        try {
+            // the first byte of the raw row is the filter type
+            decodeRawRows(startRow, endRow, buffers, (y, row) -> consumer.accept(y, row, 1));
+        } finally {
+            ROW_BUFFERS.offer(buffers);
+        }
+    }
+
+    public boolean isIndexed() {
+        return colorType == COLOR_TYPE_PALETTE;
+    }
+
+    /**
+     * Gets the palette of the image, with the transparency of the tRNS chunk applied
+     *
+     * @return the 256 ARGB colors of the palette, or null if the image is not a palette image
+     */
+    public int[] getPalette() {
+        return palette == null ? null : palette.clone();
+    }
+
+    /**
+     * Inflates and unfilters the rows up to the end of the window, handing the raw rows of the window to the consumer
+     */
+    private void decodeRawRows(int startRow, int endRow, RowBuffers buffers, RawRowConsumer consumer) throws IOException {
+        int lastRow = Math.min(endRow, height);
+        int stride = width * bytesPerPixel;
+        // filter type byte followed by the row bytes, the previous row starts zeroed for the first row
+        int rowLength = stride + 1;
+        byte[] row = buffers.row(rowLength);
+        byte[] previousRow = buffers.previousRow(rowLength);
+        Arrays.fill(previousRow, 0, rowLength, (byte) 0);
+
+        Inflater inflater = acquireInflater();
+        try {
+            int nextChunk = 0;
+            for (int y = 0; y < lastRow; y++) {
+                nextChunk = inflateRow(inflater, row, rowLength, nextChunk);
+                unfilter(row, previousRow, stride);
+                if (y >= startRow) {
+                    consumer.accept(y, row);
+                }
+
+                byte[] swap = previousRow;
+                previousRow = row;
+                row = swap;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid PNG data: " + e.getMessage(), e);
+        } finally {
+            releaseInflater(inflater);
+        }
+    }
+
+    /**
+     * Inflates the next row, feeding the IDAT chunks to the inflater as they are consumed
+     *
+     * @return the index of the next IDAT chunk to feed
+     */
+    private int inflateRow(Inflater inflater, byte[] row, int rowLength, int nextChunk) throws DataFormatException, IOException {
+        int offset = 0;
+        while (offset < rowLength) {
+            int inflated = inflater.inflate(row, offset, rowLength - offset);
+            offset += inflated;
+            if (inflated == 0) {
+                if (inflater.finished() || inflater.needsDictionary()) {
+                    throw new IOException("Truncated PNG data");
+                }
+                if (inflater.needsInput()) {
+                    if (nextChunk == dataChunks.size()) {
+                        throw new IOException("Truncated PNG data");
+                    }
+                    int[] chunk = dataChunks.get(nextChunk++);
+                    inflater.setInput(png, chunk[0], chunk[1]);
+                }
+            }
+        }
+        return nextChunk;
+    }
+
+    /**
+     * Reverts the PNG filter of the row in place, filters work on bytes regardless of the pixel layout
+     */
+    private void unfilter(byte[] row, byte[] previousRow, int stride) throws IOException {
+        int bpp = bytesPerPixel;
+        switch (row[0]) {
+            case 0 -> {
+                // none
+            }
+            case 1 -> {
+                // sub: left byte
+                for (int i = 1 + bpp; i <= stride; i++) {
+                    row[i] += row[i - bpp];
+                }
+            }
+            case 2 -> {
+                // up: byte above
+                for (int i = 1; i <= stride; i++) {
+                    row[i] += previousRow[i];
+                }
+            }
+            case 3 -> {
+                // average of left and above
+                for (int i = 1; i <= bpp; i++) {
+                    row[i] += (previousRow[i] & 0xFF) >>> 1;
+                }
+                for (int i = 1 + bpp; i <= stride; i++) {
+                    row[i] += ((row[i - bpp] & 0xFF) + (previousRow[i] & 0xFF)) >>> 1;
+                }
+            }
+            case 4 -> {
+                // paeth: the closest of left, above and upper left to their linear prediction
+                for (int i = 1; i <= bpp; i++) {
+                    row[i] += previousRow[i];
+                }
+                for (int i = 1 + bpp; i <= stride; i++) {
+                    int left = row[i - bpp] & 0xFF;
+                    int above = previousRow[i] & 0xFF;
+                    int upperLeft = previousRow[i - bpp] & 0xFF;
+                    int leftDistance = Math.abs(above - upperLeft);
+                    int aboveDistance = Math.abs(left - upperLeft);
+                    int upperLeftDistance = Math.abs(left + above - 2 * upperLeft);
+                    if (leftDistance <= aboveDistance && leftDistance <= upperLeftDistance) {
+                        row[i] += (byte) left;
+                    } else if (aboveDistance <= upperLeftDistance) {
+                        row[i] += (byte) above;
+                    } else {
+                        row[i] += (byte) upperLeft;
+                    }
+                }
+            }
+            default -> throw new IOException("Invalid PNG filter type " + row[0]);
+        }
+    }
+
+    private void toArgb(byte[] row, int[] argb) {
+        switch (colorType) {
+            case COLOR_TYPE_RGBA -> {
+                for (int x = 0, i = 1; x < width; x++, i += 4) {
+                    argb[x] = (row[i + 3] & 0xFF) << 24 | (row[i] & 0xFF) << 16 | (row[i + 1] & 0xFF) << 8 | row[i + 2] & 0xFF;
+                }
+            }
+            case COLOR_TYPE_RGB -> {
+                for (int x = 0, i = 1; x < width; x++, i += 3) {
+                    int rgb = (row[i] & 0xFF) << 16 | (row[i + 1] & 0xFF) << 8 | row[i + 2] & 0xFF;
+                    argb[x] = rgb == transparentColor ? rgb : 0xFF000000 | rgb;
+                }
+            }
+            default -> {
+                for (int x = 0; x < width; x++) {
+                    argb[x] = palette[row[x + 1] & 0xFF];
+                }
+            }
+        }
+    }
+
+    private static Inflater acquireInflater() {
+        Inflater inflater = INFLATERS.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        // reset also drops the reference to the input bytes
+        inflater.reset();
+        if (!INFLATERS.offer(inflater)) {
+            // the pool is full, free the native memory now rather than on garbage collection
+            inflater.end();
+        }
+    }
+
+    private static RowBuffers acquireRowBuffers() {
+        RowBuffers buffers = ROW_BUFFERS.poll();
+        return buffers != null ? buffers : new RowBuffers();
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+
+    private static int chunkType(String type) {
+        return type.charAt(0) << 24 | type.charAt(1) << 16 | type.charAt(2) << 8 | type.charAt(3);
+    }
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(int y, int[] argb);
+    }
+
+    @FunctionalInterface
+    public interface IndexRowConsumer {
+        /**
+         * @param y       row of the indexes
+         * @param indexes palette indexes of the row, the one of pixel x is at offset + x
+         * @param offset  position of the first pixel on the array
+         */
+        void accept(int y, byte[] indexes, int offset);
+    }
+
+    @FunctionalInterface
+    private interface RawRowConsumer {
+        void accept(int y, byte[] row);
+    }
+
+    /**
+     * Row arrays of a decode, reallocated only when an image is wider than every image they served before.
+     * Arrays may be longer than the rows of the current image
+     */
+    private static final class RowBuffers {
+        private byte[] row = new byte[0];
+        private byte[] previousRow = new byte[0];
+        private int[] argb = new int[0];
+
+        byte[] row(int length) {
+            if (row.length < length) {
+                row = new byte[length];
+            }
+            return row;
+        }
+
+        byte[] previousRow(int length) {
+            if (previousRow.length < length) {
+                previousRow = new byte[length];
+            }
+            return previousRow;
+        }
+
+        int[] argb(int width) {
+            if (argb.length < width) {
+                argb = new int[width];
+            }
+            return argb;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.manu.forecaster.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encoder of non interlaced 8 bits PNG images, from ARGB pixels.
+ * Palette output quantizes the pixels to at most 256 colors, one byte per pixel, rows are stored unfiltered.
+ * Truecolor output drops the alpha channel when every pixel is opaque, rows are filtered with the
+ * minimum sum of absolute differences heuristic.
+ * The image data is written in a new IDAT chunk every time the deflate buffer fills up, so that the first chunks
+ * can reach the output stream before the whole image is compressed.
+ */
+public class PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_PALETTE = 3;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+
+    // size of the IDAT chunks, the compressed data waiting to be written never exceeds it
+    private static final int DATA_CHUNK_SIZE = 32 * 1024;
+
+    private final int compressionLevel;
+    private final boolean palette;
+    // deflaters hold native memory and are expensive to create, they are reused across encodes.
+    // Deflaters beyond the concurrent encodes of a busy moment are dropped
+    private final Queue<Deflater> deflaters = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * @param compressionLevel deflate level, from 0 (fastest) to 9 (smallest)
+     * @param palette          true to quantize the pixels to a palette of at most 256 colors
+     */
+    public PngEncoder(int compressionLevel, boolean palette) {
+        if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("The PNG compression level must be between 0 and 9");
+        }
+        this.compressionLevel = compressionLevel;
+        this.palette = palette;
+    }
+
+    /**
+     * Encodes the pixels as a PNG image
+     *
+     * @param argb   ARGB pixels, row by row
+     * @param width  width of the image
+     * @param height height of the image
+     * @return the bytes of the PNG image
+     */
+    public byte[] encode(int[] argb, int width, int height) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            encode(argb, width, height, output);
+        } catch (IOException e) {
+            // byte array streams don't fail
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Encodes the pixels as a PNG image, writing the chunks on the stream as soon as they are ready
+     *
+     * @param argb   ARGB pixels, row by row
+     * @param width  width of the image
+     * @param height height of the image
+     * @param output stream of the PNG image, not closed
+     * @throws IOException when the stream can't be written
+     */
+    public void encode(int[] argb, int width, int height, OutputStream output) throws IOException {
+        if (width <= 0 || height <= 0 || argb.length < width * height) {
+            throw new IllegalArgumentException("The pixels don't match the image size");
+        }
+
+        if (palette) {
+            // the palette depends on every pixel, nothing can be written before it's ready
+            PaletteQuantizer.Quantized quantized = PaletteQuantizer.quantize(
+                    width * height == argb.length ? argb : Arrays.copyOf(argb, width * height),
+                    PaletteQuantizer.MAX_COLORS
+            );
+            output.write(SIGNATURE);
+            writeHeader(output, width, height, COLOR_TYPE_PALETTE);
+            writePalette(output, quantized.palette());
+            deflatePaletteRows(output, quantized.indexes(), width, height);
+        } else {
+            boolean opaque = isOpaque(argb, width * height);
+            output.write(SIGNATURE);
+            writeHeader(output, width, height, opaque ? COLOR_TYPE_RGB : COLOR_TYPE_RGBA);
+            deflateTruecolorRows(output, argb, width, height, opaque ? 3 : 4);
+        }
+
+        writeChunk(output, "IEND", new byte[0], 0);
+        output.flush();
+    }
+
+    private void writeHeader(OutputStream output, int width, int height, int colorType) throws IOException {
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8;
+        header[9] = (byte) colorType;
+        // compression, filter and interlace methods are all 0
+        writeChunk(output, "IHDR", header, header.length);
+    }
+
+    /**
+     * Writes the PLTE chunk, and the tRNS chunk when some palette entries are not opaque
+     */
+    private void writePalette(OutputStream output, int[] colors) throws IOException {
+        byte[] rgb = new byte[colors.length * 3];
+        int alphaEntries = 0;
+        for (int i = 0; i < colors.length; i++) {
+            rgb[i * 3] = (byte) (colors[i] >>> 16);
+            rgb[i * 3 + 1] = (byte) (colors[i] >>> 8);
+            rgb[i * 3 + 2] = (byte) colors[i];
+            if (colors[i] >>> 24 != 0xFF) {
+                alphaEntries = i + 1;
+            }
+        }
+        writeChunk(output, "PLTE", rgb, rgb.length);
+
+        // entries after the last translucent one are opaque by default
+        if (alphaEntries > 0) {
+            byte[] alpha = new byte[alphaEntries];
+            for (int i = 0; i < alphaEntries; i++) {
+                alpha[i] = (byte) (colors[i] >>> 24);
+            }
+            writeChunk(output, "tRNS", alpha, alpha.length);
+        }
+    }
+
+    private void deflatePaletteRows(OutputStream output, byte[] indexes, int width, int height) throws IOException {
+        byte[] row = new byte[width + 1];
+        row[0] = FILTER_NONE;
+
+        Deflater deflater = acquireDeflater();
+        try {
+            DataChunkWriter writer = new DataChunkWriter(output, deflater);
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(indexes, y * width, row, 1, width);
+                writer.deflate(row);
+            }
+            writer.finish();
+        } finally {
+            releaseDeflater(deflater);
+        }
+    }
+
+    private void deflateTruecolorRows(OutputStream output, int[] argb, int width, int height, int bytesPerPixel) throws IOException {
+        int rowLength = width * bytesPerPixel;
+        byte[] previous = new byte[rowLength];
+        byte[] current = new byte[rowLength];
+        // one candidate row for every filter type, with the filter type byte first
+        byte[][] filtered = new byte[FILTER_PAETH + 1][rowLength + 1];
+
+        Deflater deflater = acquireDeflater();
+        try {
+            DataChunkWriter writer = new DataChunkWriter(output, deflater);
+            for (int y = 0; y < height; y++) {
+                int rowStart = y * width;
+                for (int x = 0; x < width; x++) {
+                    int color = argb[rowStart + x];
+                    int offset = x * bytesPerPixel;
+                    current[offset] = (byte) (color >>> 16);
+                    current[offset + 1] = (byte) (color >>> 8);
+                    current[offset + 2] = (byte) color;
+                    if (bytesPerPixel == 4) {
+                        current[offset + 3] = (byte) (color >>> 24);
+                    }
+                }
+
+                writer.deflate(filterRow(current, previous, bytesPerPixel, filtered));
+
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            writer.finish();
+        } finally {
+            releaseDeflater(deflater);
+        }
+    }
+
+    /**
+     * Applies every filter type to the row and picks the one with the minimum sum of absolute differences
+     *
+     * @return the filtered row, with the filter type byte first
+     */
+    private static byte[] filterRow(byte[] current, byte[] previous, int bytesPerPixel, byte[][] filtered) {
+        byte[] best = null;
+        long bestSum = Long.MAX_VALUE;
+
+        for (int type = FILTER_NONE; type <= FILTER_PAETH; type++) {
+            byte[] row = filtered[type];
+            row[0] = (byte) type;
+            long sum = 0;
+            for (int i = 0; i < current.length; i++) {
+                int left = i >= bytesPerPixel ? current[i - bytesPerPixel] & 0xFF : 0;
+                int up = previous[i] & 0xFF;
+                int upLeft = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xFF : 0;
+                int predictor = switch (type) {
+                    case FILTER_SUB -> left;
+                    case FILTER_UP -> up;
+                    case FILTER_AVERAGE -> (left + up) >>> 1;
+                    case FILTER_PAETH -> paeth(left, up, upLeft);
+                    default -> 0;
+                };
+                byte value = (byte) (current[i] - predictor);
+                row[i + 1] = value;
+                sum += Math.abs(value);
+            }
+
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = row;
+            }
+        }
+
+        return best;
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int leftDistance = Math.abs(estimate - left);
+        int upDistance = Math.abs(estimate - up);
+        int upLeftDistance = Math.abs(estimate - upLeft);
+        if (leftDistance <= upDistance && leftDistance <= upLeftDistance) {
+            return left;
+        }
+        return upDistance <= upLeftDistance ? up : upLeft;
+    }
+
+    private static boolean isOpaque(int[] argb, int length) {
+        for (int i = 0; i < length; i++) {
+            if (argb[i] >>> 24 != 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeChunk(OutputStream output, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] number = new byte[4];
+
+        writeInt(number, 0, length);
+        output.write(number);
+        output.write(typeBytes);
+        output.write(data, 0, length);
+
+        // the checksum covers the type and the data
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        writeInt(number, 0, (int) crc.getValue());
+        output.write(number);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private Deflater acquireDeflater() {
+        Deflater deflater = deflaters.poll();
+        return deflater != null ? deflater : new Deflater(compressionLevel);
+    }
+
+    private void releaseDeflater(Deflater deflater) {
+        // reset also drops the reference to the input bytes
+        deflater.reset();
+        if (!deflaters.offer(deflater)) {
+            // the pool is full, free the native memory now rather than on garbage collection
+            deflater.end();
+        }
+    }
+
+    /**
+     * Compresses the filtered rows, writing an IDAT chunk every time the buffer of compressed data fills up
+     */
+    private static class DataChunkWriter {
+
+        private final OutputStream output;
+        private final Deflater deflater;
+        private final byte[] buffer = new byte[DATA_CHUNK_SIZE];
+        private int position;
+
+        private DataChunkWriter(OutputStream output, Deflater deflater) {
+            this.output = output;
+            this.deflater = deflater;
+        }
+
+        private void deflate(byte[] row) throws IOException {
+            deflater.setInput(row);
+            while (!deflater.needsInput()) {
+                fill();
+            }
+        }
+
+        private void finish() throws IOException {
+            deflater.finish();
+            while (!deflater.finished()) {
+                fill();
+            }
+            if (position > 0) {
+                writeChunk(output, "IDAT", buffer, position);
+                position = 0;
+            }
+        }
+
+        private void fill() throws IOException {
+            position += deflater.deflate(buffer, position, buffer.length - position);
+            if (position == buffer.length) {
+                writeChunk(output, "IDAT", buffer, position);
+                position = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.manu.forecaster.image;
+
+/**
+ * LegendRaster storing only the runs of pixels matching a legend color, row by row.
+ * Clear pixels are implicit, so mostly clear tiles take a fraction of the dense size.
+ */
+public class RunLengthLegendRaster implements LegendRaster {
+
+    private final int width;
+    private final int height;
+    // runs of row y are stored from rowOffsets[y] (inclusive) to rowOffsets[y + 1] (exclusive)
+    private final int[] rowOffsets;
+    private final char[] runStarts;
+    private final char[] runEnds;
+    private final byte[] runClasses;
+
+    private RunLengthLegendRaster(int width, int height, int[] rowOffsets, char[] runStarts, char[] runEnds,
+                                  byte[] runClasses) {
+        this.width = width;
+        this.height = height;
+        this.rowOffsets = rowOffsets;
+        this.runStarts = runStarts;
+        this.runEnds = runEnds;
+        this.runClasses = runClasses;
+    }
+
+    static long estimateSizeInBytes(int runs, int height) {
+        return (long) runs * 5 + (height + 1L) * 4;
+    }
+
+    /**
+     * Encodes the provided dense classes
+     *
+     * @param classes legend class of every pixel, row by row
+     * @param width   width of the raster, up to 65535 pixels
+     * @param height  height of the raster
+     * @param runs    number of non-clear runs contained in classes
+     * @return the run-length encoded raster
+     */
+    static RunLengthLegendRaster encode(byte[] classes, int width, int height, int runs) {
+        int[] rowOffsets = new int[height + 1];
+        char[] runStarts = new char[runs];
+        char[] runEnds = new char[runs];
+        byte[] runClasses = new byte[runs];
+
+        int run = 0;
+        for (int y = 0; y < height; y++) {
+            rowOffsets[y] = run;
+            int rowStart = y * width;
+            int x = 0;
+            while (x < width) {
+                byte current = classes[rowStart + x];
+                int start = x;
+                // advance until the end of the run
+                while (x < width && classes[rowStart + x] == current) {
+                    x++;
+                }
+                if (current != CompiledLegend.NO_MATCH) {
+                    runStarts[run] = (char) start;
+                    runEnds[run] = (char) x;
+                    runClasses[run] = current;
+                    run++;
+                }
+            }
+        }
+        rowOffsets[height] = run;
+
+        return new RunLengthLegendRaster(width, height, rowOffsets, runStarts, runEnds, runClasses);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int classAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IndexOutOfBoundsException(String.format("Pixel %s,%s is outside the raster", x, y));
+        }
+
+        for (int run = rowOffsets[y]; run < rowOffsets[y + 1]; run++) {
+            // runs are sorted, once past x there is nothing left to find
+            if (runStarts[run] > x) {
+                break;
+            }
+            if (x < runEnds[run]) {
+                return runClasses[run] & 0xFF;
+            }
+        }
+
+        return CompiledLegend.NO_MATCH;
+    }
+
+    @Override
+    public void countClasses(int startX, int startY, int endX, int endY, int[] counts) {
+        int matched = 0;
+
+        for (int y = startY; y < endY; y++) {
+            for (int run = rowOffsets[y]; run < rowOffsets[y + 1]; run++) {
+                if (runStarts[run] >= endX) {
+                    break;
+                }
+                // count only the portion of the run inside the window
+                int overlap = Math.min(runEnds[run], endX) - Math.max(runStarts[run], startX);
+                if (overlap > 0) {
+                    counts[runClasses[run] & 0xFF] += overlap;
+                    matched += overlap;
+                }
+            }
+        }
+
+        // every pixel not covered by a run is clear
+        counts[CompiledLegend.NO_MATCH] += (endX - startX) * (endY - startY) - matched;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return estimateSizeInBytes(runClasses.length, height);
+    }
+}
@@ -0,0 +1,113 @@
+package com.manu.forecaster.image;
+
+import java.util.Arrays;
+
+/**
+ * LegendRaster decorator that keeps a summed-area table (integral image) for every legend class present on the
+ * raster, so that the pixel count of any window is computed with four array reads per class,
+ * regardless of the window size.
+ */
+public class SummedAreaLegendRaster implements LegendRaster {
+
+    private final LegendRaster raster;
+    // legend classes present on the raster, NO_MATCH excluded
+    private final int[] presentClasses;
+    // tables[i] is the summed-area table of presentClasses[i], with (width + 1) * (height + 1) cells
+    private final int[][] tables;
+    private final int stride;
+
+    private SummedAreaLegendRaster(LegendRaster raster, int[] presentClasses, int[][] tables) {
+        this.raster = raster;
+        this.presentClasses = presentClasses;
+        this.tables = tables;
+        this.stride = raster.getWidth() + 1;
+    }
+
+    /**
+     * Builds the summed-area tables of the provided raster
+     *
+     * @param raster raster to index
+     * @return the indexed raster
+     */
+    public static SummedAreaLegendRaster index(LegendRaster raster) {
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        int stride = width + 1;
+
+        // find which classes are present, mostly clear tiles only need a few tables
+        int[] counts = new int[256];
+        raster.countClasses(0, 0, width, height, counts);
+        int[] tableIndexes = new int[256];
+        int presentCount = 0;
+        for (int legendClass = 1; legendClass < counts.length; legendClass++) {
+            tableIndexes[legendClass] = counts[legendClass] > 0 ? presentCount++ : -1;
+        }
+
+        int[] presentClasses = new int[presentCount];
+        int[][] tables = new int[presentCount][];
+        for (int legendClass = 1; legendClass < counts.length; legendClass++) {
+            if (tableIndexes[legendClass] >= 0) {
+                presentClasses[tableIndexes[legendClass]] = legendClass;
+                tables[tableIndexes[legendClass]] = new int[stride * (height + 1)];
+            }
+        }
+
+        // each cell holds the count of the pixels above and to the left of it: row prefix + cell above
+        int[] rowCounts = new int[presentCount];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(rowCounts, 0);
+            int rowOffset = (y + 1) * stride;
+            for (int x = 0; x < width; x++) {
+                int legendClass = raster.classAt(x, y);
+                if (legendClass != CompiledLegend.NO_MATCH) {
+                    rowCounts[tableIndexes[legendClass]]++;
+                }
+                int cell = rowOffset + x + 1;
+                for (int i = 0; i < presentCount; i++) {
+                    tables[i][cell] = tables[i][cell - stride] + rowCounts[i];
+                }
+            }
+        }
+
+        return new SummedAreaLegendRaster(raster, presentClasses, tables);
+    }
+
+    @Override
+    public int getWidth() {
+        return raster.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return raster.getHeight();
+    }
+
+    @Override
+    public int classAt(int x, int y) {
+        return raster.classAt(x, y);
+    }
+
+    @Override
+    public void countClasses(int startX, int startY, int endX, int endY, int[] counts) {
+        int topLeft = startY * stride + startX;
+        int topRight = startY * stride + endX;
+        int bottomLeft = endY * stride + startX;
+        int bottomRight = endY * stride + endX;
+
+        int matched = 0;
+        for (int i = 0; i < presentClasses.length; i++) {
+            int[] table = tables[i];
+            int count = table[bottomRight] - table[topRight] - table[bottomLeft] + table[topLeft];
+            counts[presentClasses[i]] += count;
+            matched += count;
+        }
+
+        // every pixel not counted by a table is clear
+        counts[CompiledLegend.NO_MATCH] += (endX - startX) * (endY - startY) - matched;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return raster.getSizeInBytes() + (long) tables.length * stride * (getHeight() + 1) * Integer.BYTES;
+    }
+}
@@ -7,15 +7,24 @@ import com.manu.forecaster.dto.forecast.*;
 import com.manu.forecaster.service.scrape.MeteblueScrapeService;
 import com.manu.forecaster.service.scrape.MeteocielScrapeService;
 import com.manu.forecaster.service.scrape.ScrapeService;
+import com.manu.forecaster.utils.FutureUtils;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class ForecastService {
@@ -24,6 +33,9 @@ public class ForecastService {
 
     private final List<GenericForecastServiceInterface> forecastServices = new ArrayList<>();
 
+    // scrapers spend most of their time waiting for the remote pages, a virtual thread each is cheap
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
     @Autowired
     ForecastService(WeatherSourcesConfig weatherSourcesConfig, RestService restService) {
         this.restService = restService;
@@ -35,13 +47,24 @@ public class ForecastService {
         //TODO: api
     }
 
+    @PreDestroy
+    public void close() {
+        // the application is going down, scrapes still running are interrupted instead of awaited
+        executor.shutdownNow();
+    }
+
     public RawForecast getForecastRaw(String latitude, String longitude, Timeframe timeframe) {
 
-        List<ForecastSource> forecastSources = new ArrayList<>();
+        // query every source concurrently, the slowest allowed deadline bounds the request
+        List<CompletableFuture<ForecastSource>> futures = new ArrayList<>();
+        for (var forecastService : forecastServices) {
+            futures.add(getForecastSource(forecastService, timeframe, latitude, longitude));
+        }
 
-        for(var forecastService: forecastServices){
-            ForecastSource forecastSource = forecastService.getForecasts(timeframe, latitude, longitude);
-            forecastSources.add(forecastSource);
+        // collect the results, preserving the sources order
+        List<ForecastSource> forecastSources = new ArrayList<>();
+        for (var future : futures) {
+            forecastSources.add(FutureUtils.joinUnchecked(future));
         }
 
         return RawForecast.builder()
@@ -95,7 +118,7 @@ public class ForecastService {
 
         WebScraperConfig meteoblueConfig = weatherSourcesConfig.getWebScrapers().getMeteoblue();
         if (meteoblueConfig.isEnabled()) {
-            ScrapeService meteoblueScraper = new MeteblueScrapeService(userAgent, meteoblueConfig);
+            ScrapeService meteoblueScraper = new MeteblueScrapeService(restService, userAgent, meteoblueConfig);
             scrapeServices.add(meteoblueScraper);
         }
 
@@ -108,6 +131,41 @@ public class ForecastService {
         return scrapeServices;
     }
 
+    /**
+     * Gets the forecasts of a single source asynchronously. A failure or a missed deadline is reported on the source
+     * instead of failing the request. A timed out source keeps running in background, its late result is discarded.
+     *
+     * @param forecastService source to query
+     * @param timeframe       timeframe of the forecast
+     * @param latitude        latitude of the forecast location
+     * @param longitude       longitude of the forecast location
+     * @return a future of the forecast source, never completed exceptionally
+     */
+    private CompletableFuture<ForecastSource> getForecastSource(GenericForecastServiceInterface forecastService,
+                                                                Timeframe timeframe, String latitude, String longitude) {
+        CompletableFuture<ForecastSource> future = CompletableFuture.supplyAsync(
+                () -> forecastService.getForecasts(timeframe, latitude, longitude), executor
+        );
+
+        // a missing, zero or negative deadline means no deadline, a zero timeout would fail every source at once
+        Duration deadline = forecastService.getDeadline();
+        if (deadline != null && deadline.isPositive()) {
+            future = future.orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        return future.exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            String error = cause instanceof TimeoutException
+                    ? String.format("The source did not answer within %s ms", deadline.toMillis())
+                    : cause.getMessage();
+            return ForecastSource.builder()
+                    .name(forecastService.getName())
+                    .forecasts(new ArrayList<>())
+                    .error(error)
+                    .build();
+        });
+    }
+
     private Map<String, ForecastMatch> initializeMatchesMap(List<String> weatherTypes) {
         Map<String, ForecastMatch> map = new HashMap<>();
 
@@ -3,7 +3,27 @@ package com.manu.forecaster.service;
 import com.manu.forecaster.constant.Timeframe;
 import com.manu.forecaster.dto.forecast.ForecastSource;
 
+import java.time.Duration;
+
 public interface GenericForecastServiceInterface {
     public abstract ForecastSource getForecasts(Timeframe timeframe,  String latitude, String longitude);
 
+    /**
+     * Gets the name of the forecast provider, reported on the source when the forecast could not be retrieved
+     *
+     * @return the provider name
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Gets how long a forecast request waits for this provider, before reporting it as timed out
+     *
+     * @return the deadline of the provider, null, zero or negative to wait until it answers
+     */
+    default Duration getDeadline() {
+        return null;
+    }
+
 }
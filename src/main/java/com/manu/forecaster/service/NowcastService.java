@@ -1,68 +1,120 @@
 package com.manu.forecaster.service;
 
+import com.manu.forecaster.dto.configuration.RadarImageConfig;
 import com.manu.forecaster.dto.configuration.WeatherSourcesConfig;
 import com.manu.forecaster.dto.nowcast.*;
+import com.manu.forecaster.dto.tile.Coordinate;
+import com.manu.forecaster.exception.ConfigurationException;
 import com.manu.forecaster.exception.GeneralDataException;
 import com.manu.forecaster.exception.RestException;
+import com.manu.forecaster.image.PngEncoder;
+import com.manu.forecaster.utils.FutureUtils;
 import com.manu.forecaster.utils.GeneralUtils;
+import com.manu.forecaster.utils.ImageUtils;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 public class NowcastService {
 
     private final List<TileRadarService> tileRadarServices = new ArrayList<>();
+    private final PngEncoder pngEncoder;
+    // every distinct tile of a batch is fetched in parallel, the points bound how many there can be
+    private final int maxBatchPoints;
+
+    // remote fetches spend most of their time waiting, a virtual thread each is cheap
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
 
     @Autowired
-    NowcastService(WeatherSourcesConfig weatherSourcesConfig, RestService restService, SpelService spelService) {
+    NowcastService(WeatherSourcesConfig weatherSourcesConfig, RestService restService, SpelService spelService,
+                   TileCacheService tileCacheService) {
         // initialize tile radars
         for (var tileradar : weatherSourcesConfig.getTileRadars()) {
             TileRadarService trs = new TileRadarService(
-                    tileradar, restService, spelService, weatherSourcesConfig.getBaseMapZoomLevel(),
-                    weatherSourcesConfig.getBaseMapSize(), weatherSourcesConfig.getBaseMapUrl(),
+                    tileradar, restService, spelService, tileCacheService, executor,
+                    weatherSourcesConfig.getBaseMapZoomLevel(), weatherSourcesConfig.getBaseMapSize(),
+                    weatherSourcesConfig.getBaseMapUrl(),
                     weatherSourcesConfig.getUserAgent()
             );
             tileRadarServices.add(trs);
         }
 
+        maxBatchPoints = weatherSourcesConfig.getMaxBatchPoints();
+
+        RadarImageConfig radarImageConfig = weatherSourcesConfig.getRadarImage();
+        try {
+            pngEncoder = new PngEncoder(radarImageConfig.getCompressionLevel(), radarImageConfig.isPalette());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException(e.getMessage());
+        }
     }
 
-    public byte[] getImage(String latitude, String longitude, String name) {
+    @PreDestroy
+    public void close() {
+        // the application is going down, fetches still running are interrupted instead of awaited
+        executor.shutdownNow();
+    }
+
+    List<TileRadarService> getTileRadarServices() {
+        return tileRadarServices;
+    }
+
+    /**
+     * Renders the radar image of a point, without encoding it
+     *
+     * @param latitude  latitude of the point
+     * @param longitude longitude of the point
+     * @param name      name of the radar imagery
+     * @return the radar imagery on top of the base map, with the point marked
+     */
+    public BufferedImage getNowcastImage(String latitude, String longitude, String name) {
         Optional<TileRadarService> optionalService = tileRadarServices.stream().filter(service -> name.contains(service.getName())).findFirst();
         TileRadarService tileservice = optionalService.orElseThrow(() -> new java.util.NoSuchElementException("No tile radar service found matching name: " + name));
         try {
-            BufferedImage image = tileservice.getNowcastImage(new BigDecimal(latitude), new BigDecimal(longitude), name);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ImageIO.write(image, "png", outputStream);
-            return outputStream.toByteArray();
+            return tileservice.getNowcastImage(parseDegrees(latitude), parseDegrees(longitude), name);
         } catch (RestException | IOException e) {
             throw new GeneralDataException(HttpStatus.EXPECTATION_FAILED, e.getMessage());
         }
     }
 
+    /**
+     * Encodes a radar image as PNG straight on the stream, the first chunks are written before the encoding ends
+     *
+     * @param image        radar image to encode
+     * @param outputStream stream of the PNG image, not closed
+     * @throws IOException when the stream can't be written
+     */
+    public void writeImage(BufferedImage image, OutputStream outputStream) throws IOException {
+        pngEncoder.encode(ImageUtils.getPixels(image), image.getWidth(), image.getHeight(), outputStream);
+    }
+
     public RawNowcast getNowcastsRaw(String latitude, String longitude) {
 
-        ArrayList<NowcastSource> sources = new ArrayList<>();
+        double parsedLatitude = parseDegrees(latitude);
+        double parsedLongitude = parseDegrees(longitude);
 
-        try {
-            for (var tileRadarService : tileRadarServices) {
-                List<Nowcast> nowcast = tileRadarService.getNowcasts(new BigDecimal(latitude), new BigDecimal(longitude));
-                NowcastSource nowcastSource = NowcastSource.builder()
-                        .sourceName(tileRadarService.getName())
-                        .nowcast(nowcast)
-                        .build();
-                sources.add(nowcastSource);
-            }
-        } catch (RestException | IOException e) {
-            throw new GeneralDataException(HttpStatus.EXPECTATION_FAILED, e.getMessage());
+        // query every radar concurrently
+        List<CompletableFuture<NowcastSource>> futures = new ArrayList<>();
+        for (var tileRadarService : tileRadarServices) {
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> getNowcastSource(tileRadarService, parsedLatitude, parsedLongitude), executor
+            ));
+        }
+
+        // collect the results, preserving the radars order
+        List<NowcastSource> sources = new ArrayList<>();
+        for (var future : futures) {
+            sources.add(FutureUtils.joinUnchecked(future));
         }
 
         return RawNowcast.builder()
@@ -72,10 +124,86 @@ public class NowcastService {
 
     public WeatherMatchedNowcast getNowcastsMatch(String latitude, String longitude, List<String> weatherTypes) {
 
-        Map<String, NowcastMatch> matches = initializeMatchesMap(weatherTypes);
-
         List<NowcastSource> nowcastSources = getNowcastsRaw(latitude, longitude).getSources();
 
+        return matchNowcasts(nowcastSources, weatherTypes);
+    }
+
+    /**
+     * Matches the weather types on many points at once, every distinct radar tile is fetched and decoded only once
+     *
+     * @param batchNowcastRequest points and weather types to match
+     * @return the weather matches of every point, in the same order of the requested points
+     */
+    public BatchWeatherMatchedNowcast getNowcastsMatchBatch(BatchNowcastRequest batchNowcastRequest) {
+
+        List<Coordinate> points = batchNowcastRequest.getPoints();
+
+        if (points == null || batchNowcastRequest.getWeatherTypes() == null) {
+            throw new GeneralDataException(HttpStatus.BAD_REQUEST, "The batch request needs both points and weatherTypes");
+        }
+        if (points.size() > maxBatchPoints) {
+            throw new GeneralDataException(HttpStatus.BAD_REQUEST,
+                    String.format("The batch request has %d points, at most %d are allowed", points.size(), maxBatchPoints));
+        }
+        for (var point : points) {
+            if (point == null || point.getLatitude() == null || point.getLongitude() == null) {
+                throw new GeneralDataException(HttpStatus.BAD_REQUEST, "Every point needs both latitude and longitude");
+            }
+        }
+
+        // query every radar concurrently, each radar groups the points by tile
+        List<CompletableFuture<List<NowcastSource>>> futures = new ArrayList<>();
+        for (var tileRadarService : tileRadarServices) {
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> getNowcastSources(tileRadarService, points), executor
+            ));
+        }
+
+        // collect the sources of every radar, preserving the radars order
+        List<List<NowcastSource>> radarSources = new ArrayList<>();
+        for (var future : futures) {
+            radarSources.add(FutureUtils.joinUnchecked(future));
+        }
+
+        // match the weather types of every point on the sources of all the radars
+        List<WeatherMatchedNowcast> results = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            List<NowcastSource> pointSources = new ArrayList<>();
+            for (var sources : radarSources) {
+                pointSources.add(sources.get(i));
+            }
+            results.add(matchNowcasts(pointSources, batchNowcastRequest.getWeatherTypes()));
+        }
+
+        return BatchWeatherMatchedNowcast.builder()
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Matches the weather types on the nowcasts of all the sources.
+     * Failed sources are reported on the result, so that their missing matches are not mistaken for clear weather
+     *
+     * @param nowcastSources sources to match
+     * @param weatherTypes   weather types to match
+     * @return the weather matches of the sources, with the errors of the failed ones
+     * @throws GeneralDataException when every source failed, there is nothing left to match
+     */
+    private WeatherMatchedNowcast matchNowcasts(List<NowcastSource> nowcastSources, List<String> weatherTypes) {
+
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (var source : nowcastSources) {
+            if (source.getError() != null) {
+                errors.put(source.getSourceName(), source.getError());
+            }
+        }
+        if (!nowcastSources.isEmpty() && errors.size() == nowcastSources.size()) {
+            throw new GeneralDataException(HttpStatus.EXPECTATION_FAILED, "Every nowcast source failed: " + errors);
+        }
+
+        Map<String, NowcastMatch> matches = initializeMatchesMap(weatherTypes);
+
         // for every weather radar source
         for (var source : nowcastSources) {
             List<Nowcast> nowcasts = source.getNowcast();
@@ -101,9 +229,63 @@ public class NowcastService {
 
         return WeatherMatchedNowcast.builder()
                 .matches(matches)
+                .errors(errors)
                 .build();
     }
 
+    /**
+     * Gets the nowcasts of a single radar, a radar failure is reported on the source instead of failing the request
+     *
+     * @param tileRadarService radar to query
+     * @param latitude         latitude of the point to nowcast
+     * @param longitude        longitude of the point to nowcast
+     * @return the nowcast source of the radar, containing an error if the radar could not be queried
+     */
+    private NowcastSource getNowcastSource(TileRadarService tileRadarService, double latitude, double longitude) {
+        try {
+            List<Nowcast> nowcast = tileRadarService.getNowcasts(latitude, longitude);
+            return NowcastSource.builder()
+                    .sourceName(tileRadarService.getName())
+                    .nowcast(nowcast)
+                    .build();
+        } catch (RestException | IOException e) {
+            return NowcastSource.builder()
+                    .sourceName(tileRadarService.getName())
+                    .nowcast(new ArrayList<>())
+                    .error(e.getMessage())
+                    .build();
+        }
+    }
+
+    /**
+     * Gets the nowcasts of many points from a single radar, a radar failure is reported on every point
+     * instead of failing the request
+     *
+     * @param tileRadarService radar to query
+     * @param points           coordinates of the points to nowcast
+     * @return a nowcast source for every point, in the same order of the points
+     */
+    private List<NowcastSource> getNowcastSources(TileRadarService tileRadarService, List<Coordinate> points) {
+        List<NowcastSource> sources = new ArrayList<>();
+        try {
+            for (var nowcast : tileRadarService.getNowcasts(points)) {
+                sources.add(NowcastSource.builder()
+                        .sourceName(tileRadarService.getName())
+                        .nowcast(nowcast)
+                        .build());
+            }
+        } catch (RestException | IOException e) {
+            for (int i = 0; i < points.size(); i++) {
+                sources.add(NowcastSource.builder()
+                        .sourceName(tileRadarService.getName())
+                        .nowcast(new ArrayList<>())
+                        .error(e.getMessage())
+                        .build());
+            }
+        }
+        return sources;
+    }
+
     private Map<String, NowcastMatch> initializeMatchesMap(List<String> weatherTypes) {
         Map<String, NowcastMatch> map = new HashMap<>();
 
@@ -119,4 +301,20 @@ public class NowcastService {
         return map;
     }
 
+    /**
+     * Parses a latitude or longitude in decimal degrees
+     *
+     * @param value the coordinate to parse
+     * @return the coordinate in degrees
+     * @throws NumberFormatException when the value is not a finite decimal number
+     */
+    private static double parseDegrees(String value) {
+        double degrees = Double.parseDouble(value);
+        // NaN and infinities parse fine but would land on a meaningless tile
+        if (!Double.isFinite(degrees)) {
+            throw new NumberFormatException("Invalid coordinate: " + value);
+        }
+        return degrees;
+    }
+
 }
@@ -0,0 +1,95 @@
+package com.manu.forecaster.service;
+
+import com.manu.forecaster.dto.configuration.PrefetchConfig;
+import com.manu.forecaster.dto.configuration.PrefetchRegionConfig;
+import com.manu.forecaster.dto.configuration.WeatherSourcesConfig;
+import com.manu.forecaster.dto.tile.TileRapresentation;
+import com.manu.forecaster.exception.RestException;
+import com.manu.forecaster.utils.TileUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+@Slf4j
+@Service
+public class RadarPrefetchService implements SchedulingConfigurer {
+
+    private final PrefetchConfig prefetchConfig;
+    private final NowcastService nowcastService;
+
+    @Autowired
+    RadarPrefetchService(WeatherSourcesConfig weatherSourcesConfig, NowcastService nowcastService) {
+        this.prefetchConfig = weatherSourcesConfig.getPrefetch();
+        this.nowcastService = nowcastService;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        // the poller is registered only when there is something to prefetch
+        if (prefetchConfig.isEnabled() && !prefetchConfig.getRegions().isEmpty()) {
+            taskRegistrar.addFixedDelayTask(this::prefetchRegions, prefetchConfig.getInterval());
+        }
+    }
+
+    /**
+     * Fetches and decodes every tile covering the configured regions, for every tile radar and imagery.
+     * Tiles of the current frame that are already cached are not fetched again, so only new frames hit the radars.
+     */
+    public void prefetchRegions() {
+        for (var region : prefetchConfig.getRegions()) {
+            for (var tileRadarService : nowcastService.getTileRadarServices()) {
+                // an empty zoom level list prefetches every radar
+                if (region.getZoomLevels().isEmpty() || region.getZoomLevels().contains(tileRadarService.getZoomLevel())) {
+                    prefetchRegion(tileRadarService, region);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches and decodes the tiles of a radar covering a region, a failing tile does not stop the others
+     *
+     * @param tileRadarService radar to prefetch
+     * @param region           region to cover
+     */
+    private void prefetchRegion(TileRadarService tileRadarService, PrefetchRegionConfig region) {
+        int zoom = tileRadarService.getZoomLevel();
+        int maxTile = (1 << zoom) - 1;
+
+        // tile y grows southward, so the north west corner holds the smallest xy
+        TileRapresentation northWest = TileUtils.latlongToTile(region.getNorth().doubleValue(), region.getWest().doubleValue(), zoom, 1);
+        TileRapresentation southEast = TileUtils.latlongToTile(region.getSouth().doubleValue(), region.getEast().doubleValue(), zoom, 1);
+        int startX = Math.max(0, northWest.getX());
+        int startY = Math.max(0, northWest.getY());
+        int endX = Math.min(maxTile, southEast.getX());
+        int endY = Math.min(maxTile, southEast.getY());
+
+        // a region crossing the antimeridian has its west edge east of its east edge:
+        // its columns run to the last one of the map and wrap around to the first one
+        int columns = region.getWest().compareTo(region.getEast()) > 0
+                ? maxTile - startX + 1 + endX + 1
+                : endX - startX + 1;
+
+        long tiles = (long) columns * (endY - startY + 1);
+        if (tiles > prefetchConfig.getMaxTilesPerRegion()) {
+            log.warn("Skipping prefetch of {} on {}: {} tiles exceed the limit of {}",
+                    region.getName(), tileRadarService.getName(), tiles, prefetchConfig.getMaxTilesPerRegion());
+            return;
+        }
+
+        for (int y = startY; y <= endY; y++) {
+            for (int column = 0; column < columns; column++) {
+                int x = (startX + column) % (maxTile + 1);
+                try {
+                    tileRadarService.prefetch(x, y);
+                } catch (IOException | RestException | RuntimeException e) {
+                    log.warn("Prefetch of tile {}/{}/{} on {} failed: {}", zoom, x, y, tileRadarService.getName(), e.getMessage());
+                }
+            }
+        }
+    }
+}
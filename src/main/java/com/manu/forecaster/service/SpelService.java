@@ -1,48 +1,78 @@
 package com.manu.forecaster.service;
 
 import com.manu.forecaster.dto.tile.TileRapresentation;
+import com.manu.forecaster.template.CompiledTemplates;
+import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class SpelService {
 
-    private final ExpressionParser parser = new SpelExpressionParser();
-    private final StandardEvaluationContext context = new StandardEvaluationContext();
+    // every url and body of a nowcast request is rendered well within this time, so they share the template values
+    private static final Duration TEMPLATE_VALUE_BUCKET = Duration.ofSeconds(1);
+
+    // mixed mode compiles the expressions to bytecode once they ran, falling back to interpreting them if that fails
+    private final ExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, SpelService.class.getClassLoader())
+    );
+    // the radars pass their configured templates map on every call, it gets parsed only the first time
+    private final Map<Map<String, String>, CompiledTemplates> compiledTemplates = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private final Duration templateValueBucket;
+
+    public SpelService() {
+        this(Clock.systemUTC(), TEMPLATE_VALUE_BUCKET);
+    }
+
+    SpelService(Clock clock, Duration templateValueBucket) {
+        this.clock = clock;
+        this.templateValueBucket = templateValueBucket;
+    }
 
     /**
      * Replaces the standard xyz and the SpEL evaluated version of the provided templates on the source string.
+     * Templates are parsed once, and their values are reused for the rest of the current second.
      *
      * @param source    source string where the replacing happens
      * @param templates SpEL templates to be evaluated and replaced
      * @param tile      source tile for the xyz replace, if null skips only the xyz replace.
-     * @return
+     * @return the source with the placeholders replaced, empty if the source is null or blank
      */
     public String applyTemplates(String source, Map<String, String> templates, TileRapresentation tile) {
+        return compileTemplates(templates).apply(source, tile);
+    }
 
-        if (source == null || source.isBlank()) {
-            return "";
-        }
-
-        // replace basic tile xyz values
-        if (tile != null) {
-            source = source.replace("{x}", String.valueOf(tile.getX()));
-            source = source.replace("{y}", String.valueOf(tile.getY()));
-            source = source.replace("{z}", String.valueOf(tile.getZ()));
+    /**
+     * Parses the templates, or gets them already parsed if the same templates were compiled before
+     *
+     * @param templates SpEL templates by name, null when the radar has none
+     * @return the compiled templates
+     */
+    public CompiledTemplates compileTemplates(Map<String, String> templates) {
+        if (templates == null) {
+            templates = Map.of();
         }
 
-        // replace every defined template with its parsed SpEL expression
-        for (var templateEntry : templates.entrySet()) {
-            String searchString = String.format("{%s}", templateEntry.getKey());
-            source = source.replace(searchString, parseSpel(templateEntry.getValue()));
+        CompiledTemplates compiled = compiledTemplates.get(templates);
+        if (compiled != null) {
+            return compiled;
         }
 
-        return source;
+        // the key is copied, so that later changes to the caller map can't corrupt the lookup
+        return compiledTemplates.computeIfAbsent(Map.copyOf(templates),
+                key -> new CompiledTemplates(key, parser, SpelService::createContext, clock, templateValueBucket)
+        );
     }
 
     /**
@@ -53,6 +83,18 @@ public class SpelService {
      */
     public String parseSpel(String expression) {
         Expression exp = parser.parseExpression(expression);
-        return exp.getValue(context, String.class);
+        return exp.getValue(createContext(), String.class);
+    }
+
+    /**
+     * Creates the context of a single evaluation.
+     * Evaluation contexts cache resolvers and hold variables, sharing one between request threads is not safe.
+     * Templates are evaluated at most once per bucket, so a fresh context costs nothing on the hot path.
+     * The standard context is needed for the T(...) type references of the time templates.
+     *
+     * @return a new evaluation context
+     */
+    private static EvaluationContext createContext() {
+        return new StandardEvaluationContext();
     }
 }
@@ -0,0 +1,302 @@
+package com.manu.forecaster.service;
+
+import com.manu.forecaster.cache.DiskCache;
+import com.manu.forecaster.cache.SingleFlight;
+import com.manu.forecaster.cache.WeightedLruCache;
+import com.manu.forecaster.dto.configuration.DiskTileCacheConfig;
+import com.manu.forecaster.dto.configuration.TileCacheConfig;
+import com.manu.forecaster.dto.configuration.WeatherSourcesConfig;
+import com.manu.forecaster.exception.ConfigurationException;
+import com.manu.forecaster.exception.RestException;
+import com.manu.forecaster.image.LegendRaster;
+import com.manu.forecaster.image.SummedAreaLegendRaster;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+@Slf4j
+@Service
+public class TileCacheService {
+
+    private final WeightedLruCache<String, byte[]> tileBytesCache;
+    private final WeightedLruCache<String, LegendRaster> legendRasterCache;
+    private final WeightedLruCache<String, byte[]> baseMapBytesCache;
+    // optional persistent tier of the tile bytes, null when disabled
+    private final DiskCache tileBytesDiskCache;
+    private final SingleFlight<String, byte[]> tileBytesFlights = new SingleFlight<>();
+    private final SingleFlight<String, LegendRaster> legendRasterFlights = new SingleFlight<>();
+    private final SingleFlight<String, byte[]> baseMapBytesFlights = new SingleFlight<>();
+    private final boolean summedAreaTables;
+    private final long frameIntervalMillis;
+    private final Duration baseMapTtl;
+    private final Clock clock;
+
+    @Autowired
+    TileCacheService(WeatherSourcesConfig weatherSourcesConfig) {
+        this(weatherSourcesConfig.getTileCache(), Clock.systemUTC());
+    }
+
+    TileCacheService(TileCacheConfig tileCacheConfig, Clock clock) {
+        this.tileBytesCache = new WeightedLruCache<>(
+                tileCacheConfig.getMaxSize().toBytes(), bytes -> bytes.length, clock
+        );
+        this.legendRasterCache = new WeightedLruCache<>(
+                tileCacheConfig.getRasterMaxSize().toBytes(), LegendRaster::getSizeInBytes, clock
+        );
+        this.baseMapBytesCache = new WeightedLruCache<>(
+                tileCacheConfig.getBaseMapMaxSize().toBytes(), bytes -> bytes.length, clock
+        );
+        this.summedAreaTables = tileCacheConfig.isSummedAreaTables();
+        this.frameIntervalMillis = tileCacheConfig.getFrameInterval().toMillis();
+        this.baseMapTtl = tileCacheConfig.getBaseMapTtl();
+        this.clock = clock;
+        this.tileBytesDiskCache = openDiskCache(tileCacheConfig.getDisk());
+    }
+
+    /**
+     * Gets the bytes of a tile image from the cache, or loads and caches them if missing.
+     * When the disk tier is enabled, memory misses are looked up on disk before loading.
+     * Tiles are identified by their resolved request, so a new templated timestamp is a new tile.
+     * Concurrent misses of the same tile share a single load.
+     *
+     * @param method request method of the tile
+     * @param url    final url of the tile, with all the templates applied
+     * @param body   final body of the tile request, with all the templates applied
+     * @param loader fetches the tile bytes on cache miss
+     * @return the tile image bytes
+     * @throws IOException   when the loader fails to fetch the tile
+     * @throws RestException when the loader receives an unexpected response
+     */
+    public byte[] getTileBytes(String method, String url, String body, CacheLoader<byte[]> loader) throws IOException, RestException {
+        String key = getKey(method, url, body);
+
+        byte[] cached = tileBytesCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        return tileBytesFlights.execute(key, () -> {
+            // a flight may have filled the cache between the lookup and the start of this one
+            byte[] filled = tileBytesCache.get(key);
+            if (filled != null) {
+                return filled;
+            }
+
+            // tiles fetched before a restart are still on disk
+            DiskCache.Entry stored = tileBytesDiskCache != null ? tileBytesDiskCache.get(key) : null;
+            if (stored != null) {
+                tileBytesCache.put(key, stored.value(), stored.expiresAt());
+                return stored.value();
+            }
+
+            byte[] loaded = loader.load();
+            Instant expiresAt = getFrameExpiration();
+            tileBytesCache.put(key, loaded, expiresAt);
+            storeOnDisk(key, loaded, expiresAt);
+            return loaded;
+        });
+    }
+
+    /**
+     * Gets the bytes of a base map tile from its own cache, or loads and caches them if missing.
+     * Base map tiles don't follow the radar frames, they expire after the configured time to live and
+     * have a separate memory budget, so that radar tiles can't push them out.
+     * When the disk tier is enabled, memory misses are looked up on disk before loading.
+     * Concurrent misses of the same tile share a single load.
+     *
+     * @param url    final url of the base map tile, with all the templates applied
+     * @param loader fetches the tile bytes on cache miss
+     * @return the tile image bytes
+     * @throws IOException   when the loader fails to fetch the tile
+     * @throws RestException when the loader receives an unexpected response
+     */
+    public byte[] getBaseMapBytes(String url, CacheLoader<byte[]> loader) throws IOException, RestException {
+        byte[] cached = baseMapBytesCache.get(url);
+        if (cached != null) {
+            return cached;
+        }
+
+        return baseMapBytesFlights.execute(url, () -> {
+            // a flight may have filled the cache between the lookup and the start of this one
+            byte[] filled = baseMapBytesCache.get(url);
+            if (filled != null) {
+                return filled;
+            }
+
+            // base map tiles fetched before a restart are still on disk, sharing the budget of the radar tiles
+            String diskKey = getBaseMapDiskKey(url);
+            DiskCache.Entry stored = tileBytesDiskCache != null ? tileBytesDiskCache.get(diskKey) : null;
+            if (stored != null) {
+                baseMapBytesCache.put(url, stored.value(), stored.expiresAt());
+                return stored.value();
+            }
+
+            byte[] loaded = loader.load();
+            Instant expiresAt = clock.instant().plus(baseMapTtl);
+            baseMapBytesCache.put(url, loaded, expiresAt);
+            storeOnDisk(diskKey, loaded, expiresAt);
+            return loaded;
+        });
+    }
+
+    /**
+     * Gets the decoded legend raster of a tile from the cache, or loads and caches it if missing.
+     * Rasters depend on the legend of the radar, so the same tile is cached separately for every radar.
+     * Concurrent misses of the same raster share a single load.
+     * When enabled, loaded rasters are indexed with summed-area tables before entering the cache, so that
+     * area queries on cached tiles don't depend on the search radius.
+     *
+     * @param radarName name of the radar whose legend classifies the tile
+     * @param method    request method of the tile
+     * @param url       final url of the tile, with all the templates applied
+     * @param body      final body of the tile request, with all the templates applied
+     * @param loader    fetches and decodes the tile on cache miss
+     * @return the legend raster of the tile
+     * @throws IOException   when the loader fails to fetch the tile
+     * @throws RestException when the loader receives an unexpected response
+     */
+    public LegendRaster getLegendRaster(String radarName, String method, String url, String body,
+                                        CacheLoader<LegendRaster> loader) throws IOException, RestException {
+        String key = radarName + "\n" + getKey(method, url, body);
+
+        LegendRaster cached = legendRasterCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        return legendRasterFlights.execute(key, () -> {
+            // a flight may have filled the cache between the lookup and the start of this one
+            LegendRaster filled = legendRasterCache.get(key);
+            if (filled != null) {
+                return filled;
+            }
+
+            LegendRaster loaded = loader.load();
+            if (summedAreaTables) {
+                loaded = SummedAreaLegendRaster.index(loaded);
+            }
+            legendRasterCache.put(key, loaded, getFrameExpiration());
+            return loaded;
+        });
+    }
+
+    /**
+     * Checks if decoded legend rasters are cached, when they are not it's cheaper to decode only the needed rows
+     *
+     * @return true if the legend raster cache has a memory budget
+     */
+    public boolean isLegendRasterCacheEnabled() {
+        return legendRasterCache.getMaxWeight() > 0;
+    }
+
+    /**
+     * Removes the bytes of a tile from the cache, used when the cached image turns out to be unusable
+     *
+     * @param method request method of the tile
+     * @param url    final url of the tile
+     * @param body   final body of the tile request
+     */
+    public void evictTileBytes(String method, String url, String body) {
+        String key = getKey(method, url, body);
+        tileBytesCache.invalidate(key);
+        if (tileBytesDiskCache != null) {
+            try {
+                tileBytesDiskCache.invalidate(key);
+            } catch (IOException e) {
+                log.warn("Unable to evict tile from the disk cache: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Removes the bytes of a base map tile from the cache, used when the cached image turns out to be unusable
+     *
+     * @param url final url of the base map tile
+     */
+    public void evictBaseMapBytes(String url) {
+        baseMapBytesCache.invalidate(url);
+        if (tileBytesDiskCache == null) {
+            return;
+        }
+        try {
+            tileBytesDiskCache.invalidate(getBaseMapDiskKey(url));
+        } catch (IOException e) {
+            log.warn("Unable to remove the base map tile from the disk cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes the disk tier, if enabled
+     */
+    @PreDestroy
+    public void close() {
+        if (tileBytesDiskCache != null) {
+            tileBytesDiskCache.close();
+        }
+    }
+
+    /**
+     * Computes when the current radar frame ends, tiles cached now expire at that instant.
+     *
+     * @return the start instant of the next radar frame
+     */
+    Instant getFrameExpiration() {
+        long now = clock.millis();
+        return Instant.ofEpochMilli((now / frameIntervalMillis + 1) * frameIntervalMillis);
+    }
+
+    /**
+     * Opens the disk tier of the tile bytes
+     *
+     * @param diskConfig configuration of the disk tier
+     * @return the disk cache, or null if disabled
+     */
+    private DiskCache openDiskCache(DiskTileCacheConfig diskConfig) {
+        if (!diskConfig.isEnabled()) {
+            return null;
+        }
+        try {
+            return new DiskCache(
+                    Path.of(diskConfig.getDirectory()), diskConfig.getMaxSize().toBytes(),
+                    (int) Math.min(Integer.MAX_VALUE, diskConfig.getSegmentSize().toBytes()), clock
+            );
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ConfigurationException("Unable to open the disk tile cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stores the tile bytes on the disk tier, if enabled. The disk tier is best effort, failures don't fail the request
+     */
+    private void storeOnDisk(String key, byte[] bytes, Instant expiresAt) {
+        if (tileBytesDiskCache == null) {
+            return;
+        }
+        try {
+            tileBytesDiskCache.put(key, bytes, expiresAt);
+        } catch (IOException e) {
+            log.warn("Unable to store tile on the disk cache: {}", e.getMessage());
+        }
+    }
+
+    private String getBaseMapDiskKey(String url) {
+        // no request method starts like this, so base map keys never collide with the radar tile keys
+        return "BASEMAP " + url;
+    }
+
+    private String getKey(String method, String url, String body) {
+        return method + " " + url + "\n" + body;
+    }
+
+    @FunctionalInterface
+    public interface CacheLoader<T> {
+        T load() throws IOException, RestException;
+    }
+}
@@ -2,37 +2,47 @@ package com.manu.forecaster.service;
 
 import com.manu.forecaster.dto.configuration.TileRadarImageryConfig;
 import com.manu.forecaster.dto.nowcast.Nowcast;
-import com.manu.forecaster.dto.tile.TileBoundary;
+import com.manu.forecaster.dto.tile.Coordinate;
 import com.manu.forecaster.dto.tile.TileRapresentation;
 import com.manu.forecaster.dto.configuration.TileRadarConfig;
 import com.manu.forecaster.exception.ConfigurationException;
 import com.manu.forecaster.exception.RestException;
+import com.manu.forecaster.image.CompiledLegend;
+import com.manu.forecaster.image.LegendRaster;
+import com.manu.forecaster.utils.FutureUtils;
 import com.manu.forecaster.utils.ImageUtils;
 import com.manu.forecaster.utils.TileUtils;
 import okhttp3.*;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.math.BigDecimal;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class TileRadarService {
 
     private final TileRadarConfig tileRadarConfig;
     private final RestService restService;
     private final SpelService spelService;
+    private final TileCacheService tileCacheService;
+    private final CompiledLegend legend;
+    private final Executor executor;
     private final String baseMapUrl;
     private final String userAgent;
     private final int baseMapZoomLevel;
     private final int baseMapSize;
 
     public TileRadarService(TileRadarConfig tileRadarConfig, RestService restService, SpelService spelService,
-                            int baseMapZoomLevel, int baseMapSize, String baseMapUrl, String userAgent) {
+                            TileCacheService tileCacheService, Executor executor, int baseMapZoomLevel,
+                            int baseMapSize, String baseMapUrl, String userAgent) {
         this.tileRadarConfig = tileRadarConfig;
         this.restService = restService;
         this.spelService = spelService;
+        this.tileCacheService = tileCacheService;
+        this.legend = new CompiledLegend(tileRadarConfig.getLegend());
+        this.executor = executor;
         this.baseMapUrl = baseMapUrl;
         this.baseMapZoomLevel = baseMapZoomLevel;
         this.baseMapSize = baseMapSize;
@@ -43,38 +53,144 @@ public class TileRadarService {
         return tileRadarConfig.getName();
     }
 
-    public List<Nowcast> getNowcasts(BigDecimal latitude, BigDecimal longitude) throws IOException, RestException {
+    public int getZoomLevel() {
+        return tileRadarConfig.getZoomLevel();
+    }
 
-        List<Nowcast> nowcasts = new ArrayList<>();
+    public List<Nowcast> getNowcasts(double latitude, double longitude) throws IOException, RestException {
+
+        // calculate Tile and pixel position within tile
+        TileRapresentation tile = TileUtils.latlongToTile(latitude, longitude, tileRadarConfig.getZoomLevel(), tileRadarConfig.getSize());
 
+        // fetch and evaluate every imagery concurrently
+        List<CompletableFuture<Nowcast>> futures = new ArrayList<>();
         for (var imagery : tileRadarConfig.getImagery()) {
-            // calculate Tile and pixel position within tile
-            TileRapresentation tile = TileUtils.latlongToTile(latitude, longitude, tileRadarConfig.getZoomLevel(), tileRadarConfig.getSize());
+            futures.add(FutureUtils.supplyAsync(() -> getNowcast(imagery, tile), executor));
+        }
 
-            // get weather radar tile image
-            BufferedImage weatherRadarTileImage = getImage(
-                    imagery.getUrl(), imagery.getMethod(), tileRadarConfig.getHeaders(), imagery.getBody(), imagery.getBodyContentType(), tile
-            );
+        // collect the results, preserving the imagery order
+        List<Nowcast> nowcasts = new ArrayList<>();
+        for (var future : futures) {
+            nowcasts.add(FutureUtils.join(future));
+        }
 
-            // get how many pixels around the point of interest have matching colors with the legend
-            Map<String, Integer> forecast = ImageUtils.getColorMatchCount(
-                    weatherRadarTileImage, tileRadarConfig.getLegend(), tile.getXPixel(), tile.getYPixel(),
-                    tileRadarConfig.getPixelToleranceRadius()
+        return nowcasts;
+    }
+
+    /**
+     * Gets the nowcasts of many points at once. Points are grouped by tile, so that every distinct tile of every
+     * imagery is fetched and decoded only once, and tiles are processed in Morton order to keep the work local.
+     *
+     * @param points coordinates of the points to nowcast
+     * @return the nowcasts of every point, in the same order of the points provided
+     * @throws IOException   when there is an issue while fetching a tile
+     * @throws RestException when a response is anything but the image expected
+     */
+    public List<List<Nowcast>> getNowcasts(List<Coordinate> points) throws IOException, RestException {
+
+        // calculate the tile of every point, grouping the point indexes by the Morton code of their tile
+        List<TileRapresentation> pointTiles = new ArrayList<>(points.size());
+        SortedMap<Long, List<Integer>> pointsByTile = new TreeMap<>();
+        for (int i = 0; i < points.size(); i++) {
+            Coordinate point = points.get(i);
+            TileRapresentation tile = TileUtils.latlongToTile(
+                    point.getLatitude().doubleValue(), point.getLongitude().doubleValue(),
+                    tileRadarConfig.getZoomLevel(), tileRadarConfig.getSize()
             );
+            pointTiles.add(tile);
+            pointsByTile.computeIfAbsent(TileUtils.getMortonCode(tile.getX(), tile.getY()), k -> new ArrayList<>()).add(i);
+        }
 
-            String pointWeather = ImageUtils.getWeatherMatchByColor(weatherRadarTileImage, tileRadarConfig.getLegend(), tile.getXPixel(), tile.getYPixel());
+        List<TileRadarImageryConfig> imageryConfigs = tileRadarConfig.getImagery();
+        Nowcast[][] nowcasts = new Nowcast[points.size()][imageryConfigs.size()];
+
+        // fetch every distinct tile of every imagery concurrently, and evaluate all of its points on the same raster
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int imageryIndex = 0; imageryIndex < imageryConfigs.size(); imageryIndex++) {
+            TileRadarImageryConfig imagery = imageryConfigs.get(imageryIndex);
+            int column = imageryIndex;
+            for (List<Integer> tilePoints : pointsByTile.values()) {
+                futures.add(FutureUtils.supplyAsync(() -> {
+                    // the rows needed by all the points of the tile
+                    int startRow = Integer.MAX_VALUE;
+                    int endRow = 0;
+                    for (int point : tilePoints) {
+                        startRow = Math.min(startRow, getStartRow(pointTiles.get(point)));
+                        endRow = Math.max(endRow, getEndRow(pointTiles.get(point)));
+                    }
+
+                    LegendRaster raster = getLegendRaster(imagery, pointTiles.get(tilePoints.getFirst()), startRow, endRow);
+                    for (int point : tilePoints) {
+                        nowcasts[point][column] = getNowcast(imagery, raster, pointTiles.get(point));
+                    }
+                    return null;
+                }, executor));
+            }
+        }
 
-            // add to the forecasts list
-            nowcasts.add(
-                    Nowcast.builder()
-                            .imageryName(imagery.getName())
-                            .pointWeatherCondition(pointWeather)
-                            .areaWeatherCoinditions(forecast)
-                            .build()
-            );
+        // wait for every tile, the join also makes the nowcasts written by the tasks visible
+        for (var future : futures) {
+            FutureUtils.join(future);
         }
 
-        return nowcasts;
+        List<List<Nowcast>> pointNowcasts = new ArrayList<>(points.size());
+        for (Nowcast[] row : nowcasts) {
+            pointNowcasts.add(new ArrayList<>(Arrays.asList(row)));
+        }
+        return pointNowcasts;
+    }
+
+    /**
+     * Fetches and decodes every imagery of a tile into the tile cache, without evaluating any point
+     *
+     * @param x x of the tile, at the zoom level of the radar
+     * @param y y of the tile, at the zoom level of the radar
+     * @throws IOException   when there is an issue while fetching the tile
+     * @throws RestException when a response is anything but the image expected
+     */
+    public void prefetch(int x, int y) throws IOException, RestException {
+
+        TileRapresentation tile = TileRapresentation.builder()
+                .x(x)
+                .y(y)
+                .z(tileRadarConfig.getZoomLevel())
+                .build();
+
+        // fetch every imagery concurrently, the tile cache keeps the bytes and the decoded rasters
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (var imagery : tileRadarConfig.getImagery()) {
+            futures.add(FutureUtils.supplyAsync(() -> {
+                warmCaches(imagery, tile);
+                return null;
+            }, executor));
+        }
+
+        for (var future : futures) {
+            FutureUtils.join(future);
+        }
+    }
+
+    /**
+     * Loads an imagery tile into the tile cache. The bytes are always cached, the legend raster only when
+     * rasters are cached: otherwise nothing would keep it and decoding it would be wasted work
+     *
+     * @param imagery imagery config of the tile to load
+     * @param tile    tile to load
+     * @throws IOException   when there is an issue while fetching the image
+     * @throws RestException when the response is anything but the image expected
+     */
+    private void warmCaches(TileRadarImageryConfig imagery, TileRapresentation tile) throws IOException, RestException {
+        String finalUrl = spelService.applyTemplates(imagery.getUrl(), tileRadarConfig.getTemplates(), tile);
+        String finalBody = spelService.applyTemplates(imagery.getBody(), tileRadarConfig.getTemplates(), tile);
+
+        if (!tileCacheService.isLegendRasterCacheEnabled()) {
+            getResolvedImageBytes(finalUrl, imagery.getMethod(), tileRadarConfig.getHeaders(), finalBody, imagery.getBodyContentType());
+            return;
+        }
+
+        tileCacheService.getLegendRaster(getName(), imagery.getMethod(), finalUrl, finalBody,
+                () -> readLegendRaster(imagery, finalUrl, finalBody, 0, Integer.MAX_VALUE)
+        );
     }
 
     /**
@@ -87,7 +203,7 @@ public class TileRadarService {
      * @throws IOException
      * @throws RestException
      */
-    public BufferedImage getNowcastImage(BigDecimal latitude, BigDecimal longitude, String name) throws IOException, RestException {
+    public BufferedImage getNowcastImage(double latitude, double longitude, String name) throws IOException, RestException {
 
         // the radar can't cover a smaller area than the base map.
         if (tileRadarConfig.getZoomLevel() > baseMapZoomLevel) {
@@ -107,48 +223,166 @@ public class TileRadarService {
         );
         TileRapresentation baseMapTile = TileUtils.latlongToTile(latitude, longitude, baseMapZoomLevel, baseMapSize);
 
-        // get weather radar tile image
-        BufferedImage weatherRadarTileImage = getImage(
-                imagery.getUrl(), imagery.getMethod(), tileRadarConfig.getHeaders(), imagery.getBody(),
-                imagery.getBodyContentType(), weatherRadarTile
+        // the base map doesn't depend on the radar, fetch it while the radar tile is fetched and scaled
+        CompletableFuture<BufferedImage> baseMapFuture = FutureUtils.supplyAsync(
+                () -> getBaseMapImage(baseMapTile), executor
         );
 
-        // set the default scale to 1, used later to scale the drawn square
-        double scale = 1;
+        int zoomDifference = baseMapZoomLevel - tileRadarConfig.getZoomLevel();
+        int windowsPerSide = 1 << zoomDifference;
 
-        // if the basemap image and the tile radar image are different in size
-        if (baseMapSize != tileRadarConfig.getSize()) {
-            // update the imagery scale
-            scale = (double) baseMapSize / tileRadarConfig.getSize();
-            // resize the tile radar image to match the basemap
-            weatherRadarTileImage = ImageUtils.scale(weatherRadarTileImage, scale);
-        }
+        BufferedImage weatherRadarTileImage;
+        try {
+            // get weather radar tile image
+            weatherRadarTileImage = getImage(
+                    imagery.getUrl(), imagery.getMethod(), tileRadarConfig.getHeaders(), imagery.getBody(),
+                    imagery.getBodyContentType(), weatherRadarTile
+            );
 
-        // if the zoom level is not the same
-        if (baseMapZoomLevel != tileRadarConfig.getZoomLevel()) {
-            // crop the weather radar image to extract only the portion covered by the base map tile
-            // and scale it back to the original size
-            weatherRadarTileImage = zoomTileImagery(weatherRadarTileImage, weatherRadarTile, baseMapTile, baseMapSize);
-            // account for the zoom level change on the scale
-            scale = scale * Math.pow(2, (double) baseMapZoomLevel - tileRadarConfig.getZoomLevel());
+            // the base map tile covers a window of the weather radar tile, 2^zoomDifference times smaller on each side
+            double windowWidth = (double) weatherRadarTileImage.getWidth() / windowsPerSide;
+            double windowHeight = (double) weatherRadarTileImage.getHeight() / windowsPerSide;
+            double windowX = (baseMapTile.getX() - ((long) weatherRadarTile.getX() << zoomDifference)) * windowWidth;
+            double windowY = (baseMapTile.getY() - ((long) weatherRadarTile.getY() << zoomDifference)) * windowHeight;
+
+            // crop the window and scale it to the base map size in a single pass
+            weatherRadarTileImage = ImageUtils.cropAndScale(
+                    weatherRadarTileImage, windowX, windowY, windowWidth, windowHeight, baseMapSize, baseMapSize,
+                    tileRadarConfig.getResampling()
+            );
+        } catch (IOException | RestException | RuntimeException e) {
+            // nobody is going to wait for the base map: a fetch not started yet is skipped,
+            // one already running still completes into the base map cache
+            baseMapFuture.cancel(true);
+            throw e;
         }
 
-        // get base map tile image
-        BufferedImage baseMapImage = getImage(
-                baseMapUrl, "GET", new HashMap<>(), null, null, baseMapTile
+        // scale of a radar pixel on the base map, used later to scale the drawn square
+        double scale = (double) baseMapSize / tileRadarConfig.getSize() * windowsPerSide;
+
+        // wait for the base map tile image
+        BufferedImage baseMapImage = FutureUtils.join(baseMapFuture);
+
+        // overlay the weather radar image on top of the base map and mark the requested point, in a single pass
+        return ImageUtils.overlayImage(
+                baseMapImage, weatherRadarTileImage, tileRadarConfig.getOpacity(),
+                baseMapTile.getXPixel(), baseMapTile.getYPixel(), (int) (tileRadarConfig.getPixelToleranceRadius() * scale)
         );
+    }
+
+    /**
+     * Gets the nowcast of a single imagery for the pixel of interest of the tile
+     *
+     * @param imagery imagery config to nowcast
+     * @param tile    tile containing the pixel of interest
+     * @return the nowcast of the imagery
+     * @throws IOException   when there is an issue while fetching the image
+     * @throws RestException when the response is anything but the image expected
+     */
+    private Nowcast getNowcast(TileRadarImageryConfig imagery, TileRapresentation tile) throws IOException, RestException {
+
+        // get weather radar tile, already classified with the legend
+        LegendRaster weatherRadarTileRaster = getLegendRaster(imagery, tile, getStartRow(tile), getEndRow(tile));
+
+        return getNowcast(imagery, weatherRadarTileRaster, tile);
+    }
+
+    /**
+     * Gets the nowcast of a single imagery for the pixel of interest of the tile, on an already fetched tile raster
+     *
+     * @param imagery                imagery config to nowcast
+     * @param weatherRadarTileRaster legend raster of the imagery tile
+     * @param tile                   tile containing the pixel of interest
+     * @return the nowcast of the imagery
+     */
+    private Nowcast getNowcast(TileRadarImageryConfig imagery, LegendRaster weatherRadarTileRaster, TileRapresentation tile) {
+
+        // get how many pixels around the point of interest have matching colors with the legend
+        Map<String, Integer> forecast = ImageUtils.getColorMatchCount(
+                weatherRadarTileRaster, legend, tile.getXPixel(), tile.getYPixel(),
+                tileRadarConfig.getPixelToleranceRadius()
+        );
+
+        String pointWeather = ImageUtils.getWeatherMatchByColor(weatherRadarTileRaster, legend, tile.getXPixel(), tile.getYPixel());
+
+        return Nowcast.builder()
+                .imageryName(imagery.getName())
+                .pointWeatherCondition(pointWeather)
+                .areaWeatherCoinditions(forecast)
+                .build();
+    }
+
+    /**
+     * Gets the legend raster of the imagery tile, from the tile cache when the same tile was already decoded.
+     * When decoded rasters are not cached, only the requested rows are classified and the others are left clear.
+     *
+     * @param imagery  imagery config of the tile to get
+     * @param tile     tile to get
+     * @param startRow first row needed, inclusive
+     * @param endRow   last row needed, exclusive
+     * @return the legend raster of the tile
+     * @throws IOException   when there is an issue while fetching the image
+     * @throws RestException when the response is anything but the image expected
+     */
+    private LegendRaster getLegendRaster(TileRadarImageryConfig imagery, TileRapresentation tile, int startRow, int endRow)
+            throws IOException, RestException {
 
-        // overlay the weather radar image on top of the base map
-        BufferedImage overlayedImage = ImageUtils.overlayImage(baseMapImage, weatherRadarTileImage, tileRadarConfig.getOpacity());
+        // apply url and body templates
+        String finalUrl = spelService.applyTemplates(imagery.getUrl(), tileRadarConfig.getTemplates(), tile);
+        String finalBody = spelService.applyTemplates(imagery.getBody(), tileRadarConfig.getTemplates(), tile);
 
-        return ImageUtils.drawSquare(
-                overlayedImage, baseMapTile.getXPixel(), baseMapTile.getYPixel(),
-                (int) (tileRadarConfig.getPixelToleranceRadius() * scale)
+        // a raster that is not going to be cached doesn't need the rows outside of the window
+        if (!tileCacheService.isLegendRasterCacheEnabled()) {
+            return readLegendRaster(imagery, finalUrl, finalBody, startRow, endRow);
+        }
+
+        // decode and classify the image only once per tile
+        return tileCacheService.getLegendRaster(getName(), imagery.getMethod(), finalUrl, finalBody,
+                () -> readLegendRaster(imagery, finalUrl, finalBody, 0, Integer.MAX_VALUE)
         );
     }
 
     /**
-     * Fetches the remote image with the params provided
+     * Gets the imagery tile bytes and classifies a window of its rows with the legend
+     *
+     * @param imagery   imagery config of the tile to get
+     * @param finalUrl  url of the tile, with templates already applied
+     * @param finalBody body of the tile request, with templates already applied
+     * @param startRow  first row to classify, inclusive
+     * @param endRow    last row to classify, exclusive
+     * @return the legend raster of the tile
+     * @throws IOException   when there is an issue while fetching the image
+     * @throws RestException when the response is anything but the image expected
+     */
+    private LegendRaster readLegendRaster(TileRadarImageryConfig imagery, String finalUrl, String finalBody,
+                                          int startRow, int endRow) throws IOException, RestException {
+        byte[] imageBytes = getResolvedImageBytes(
+                finalUrl, imagery.getMethod(), tileRadarConfig.getHeaders(), finalBody, imagery.getBodyContentType()
+        );
+        LegendRaster raster = ImageUtils.readLegendRaster(imageBytes, legend, startRow, endRow);
+        if (raster == null) {
+            throw invalidImage(imagery.getMethod(), finalUrl, finalBody);
+        }
+        return raster;
+    }
+
+    /**
+     * Gets the first row of the tile needed to nowcast its pixel of interest
+     */
+    private int getStartRow(TileRapresentation tile) {
+        return Math.max(0, tile.getYPixel() - tileRadarConfig.getPixelToleranceRadius());
+    }
+
+    /**
+     * Gets the row after the last one of the tile needed to nowcast its pixel of interest
+     */
+    private int getEndRow(TileRapresentation tile) {
+        // the search area ends before y + radius, the pixel of interest is needed even with no radius
+        return tile.getYPixel() + Math.max(1, tileRadarConfig.getPixelToleranceRadius());
+    }
+
+    /**
+     * Gets the remote image with the params provided, from the tile cache when the same tile was already fetched
      *
      * @param url            url of the image to fetch
      * @param method         method of the request
@@ -165,6 +399,103 @@ public class TileRadarService {
         String finalUrl = spelService.applyTemplates(url, tileRadarConfig.getTemplates(), tile);
         String finalBody = spelService.applyTemplates(serializedBody, tileRadarConfig.getTemplates(), tile);
 
+        return getResolvedImage(finalUrl, method, headers, finalBody, contentType);
+    }
+
+    /**
+     * Gets the remote image of an already templated request, from the tile cache when it was already fetched
+     *
+     * @param finalUrl    url of the image to fetch, with templates already applied
+     * @param method      method of the request
+     * @param headers     headers of the request
+     * @param finalBody   body of the request, with templates already applied. It does not get sent if null or empty
+     * @param contentType content type of the body, sent only if the body is provided
+     * @return a bufferedImage containing the fetched data
+     * @throws IOException   when there is an issue while fetching the image
+     * @throws RestException when the response is anything but the image expected
+     */
+    private BufferedImage getResolvedImage(String finalUrl, String method, Map<String, String> headers, String finalBody,
+                                           String contentType) throws IOException, RestException {
+
+        byte[] imageBytes = getResolvedImageBytes(finalUrl, method, headers, finalBody, contentType);
+
+        // get image from bytes
+        BufferedImage image = ImageUtils.readImage(imageBytes);
+        if (image == null) {
+            throw invalidImage(method, finalUrl, finalBody);
+        }
+        return image;
+    }
+
+    /**
+     * Gets the remote image bytes of an already templated request, from the tile cache when it was already fetched
+     *
+     * @param finalUrl    url of the image to fetch, with templates already applied
+     * @param method      method of the request
+     * @param headers     headers of the request
+     * @param finalBody   body of the request, with templates already applied. It does not get sent if null or empty
+     * @param contentType content type of the body, sent only if the body is provided
+     * @return the raw bytes of the image
+     * @throws IOException   when there is an issue while fetching the image
+     * @throws RestException when the response is not successful
+     */
+    private byte[] getResolvedImageBytes(String finalUrl, String method, Map<String, String> headers, String finalBody,
+                                         String contentType) throws IOException, RestException {
+        // the resolved url and body identify the tile on the cache
+        return tileCacheService.getTileBytes(method, finalUrl, finalBody,
+                () -> fetchImageBytes(finalUrl, method, headers, finalBody, contentType)
+        );
+    }
+
+    /**
+     * Gets the base map tile image, from the base map cache when it was already fetched
+     *
+     * @param tile base map tile to fetch
+     * @return a bufferedImage containing the base map tile
+     * @throws IOException   when there is an issue while fetching the image
+     * @throws RestException when the response is anything but the image expected
+     */
+    private BufferedImage getBaseMapImage(TileRapresentation tile) throws IOException, RestException {
+        String finalUrl = spelService.applyTemplates(baseMapUrl, tileRadarConfig.getTemplates(), tile);
+        Map<String, String> headers = new HashMap<>();
+
+        byte[] imageBytes = tileCacheService.getBaseMapBytes(finalUrl,
+                () -> fetchImageBytes(finalUrl, "GET", headers, null, null)
+        );
+
+        BufferedImage image = ImageUtils.readImage(imageBytes);
+        if (image == null) {
+            tileCacheService.evictBaseMapBytes(finalUrl);
+            throw new RestException("The remote server returned an invalid or empty image");
+        }
+        return image;
+    }
+
+    /**
+     * Evicts an unreadable tile from the cache, so that it doesn't keep being served until the next frame
+     *
+     * @return the exception to throw for the unreadable tile
+     */
+    private RestException invalidImage(String method, String finalUrl, String finalBody) {
+        tileCacheService.evictTileBytes(method, finalUrl, finalBody);
+        return new RestException("The remote server returned an invalid or empty image");
+    }
+
+    /**
+     * Fetches the remote image bytes with the params provided
+     *
+     * @param finalUrl    url of the image to fetch, with templates already applied
+     * @param method      method of the request
+     * @param headers     headers of the request
+     * @param finalBody   body of the request, with templates already applied. It does not get sent if null or empty
+     * @param contentType content type of the body, sent only if the body is provided
+     * @return the raw bytes of the image
+     * @throws IOException   when there is an issue while fetching the image
+     * @throws RestException when the response is not successful
+     */
+    private byte[] fetchImageBytes(String finalUrl, String method, Map<String, String> headers, String finalBody,
+                                   String contentType) throws IOException, RestException {
+
         // create a request body if configured
         RequestBody requestBody = null;
         if (finalBody != null && !finalBody.isBlank()) {
@@ -188,51 +519,8 @@ public class TileRadarService {
         // do the weather tile image request
         try (Response response = restService.executeRequest(request)) {
             ResponseBody responseBody = restService.validateResponse(response);
-
-            // get image from body
-            InputStream inputStream = responseBody.byteStream();
-            BufferedImage image = ImageIO.read(inputStream);
-            if (image == null) {
-                throw new RestException("The remote server returned an invalid or empty image");
-            }
-            return image;
+            return responseBody.bytes();
         }
     }
 
-    /**
-     * Given an imagery of a tile, crops and scales it to match the targetTile
-     *
-     * @param tileImagery the imagery to crop and scale in order to zoom-in
-     * @param tile        the tile corresponding to the imagery
-     * @param targetTile  a smaller tileRapresentation contained within the imagery, target of the zoom operation
-     */
-    private BufferedImage zoomTileImagery(BufferedImage tileImagery, TileRapresentation tile,
-                                          TileRapresentation targetTile, int tilePixelSize) {
-
-        // scale difference between representations
-        int scale = (int) Math.pow(2, (double) targetTile.getZ() - tile.getZ());
-
-        // extract lat long of target tile's corners for readability
-        BigDecimal topLeftLatitude = targetTile.getTopLeftCorner().getLatitude();
-        BigDecimal topLeftLongitude = targetTile.getTopLeftCorner().getLongitude();
-        BigDecimal bottomRightLatitude = targetTile.getBottomRightCorner().getLatitude();
-        BigDecimal bottomRightLongitude = targetTile.getBottomRightCorner().getLongitude();
-
-        // targetTile is always contained inside the tile of the imagery.
-        // the objective here is to identify the portion of the imagery that represents targetTile.
-        // as such, we need to find the pixel index (xy) of each targetTile's corner inside of the imagery.
-
-        // Calculate each corner tile representation.
-        // this will result in a "recalculation" of the tile that represents the imagery 2 times,
-        // but with the pixel index values (xPixel, yPixel) corresponding to targetTile's corner.
-        TileRapresentation topLeftTile = TileUtils.latlongToTile(topLeftLatitude, topLeftLongitude, tile.getZ(), tilePixelSize);
-        TileRapresentation bottomRightTile = TileUtils.latlongToTile(bottomRightLatitude, bottomRightLongitude, tile.getZ(), tilePixelSize);
-
-        // Create the cropping boundary
-        TileBoundary tileBoundary = TileUtils.getBoundaries(tileImagery.getWidth(), tileImagery.getHeight(), tile, topLeftTile, bottomRightTile);
-
-        // do magic
-        return ImageUtils.cropAndScale(tileImagery, tileBoundary, scale);
-    }
-
 }
@@ -7,6 +7,7 @@ import com.manu.forecaster.dto.configuration.WebScraperConfig;
 import com.manu.forecaster.dto.configuration.WebScraperForecastsConfig;
 import com.manu.forecaster.exception.DisabledException;
 import com.manu.forecaster.exception.GeneralDataException;
+import com.manu.forecaster.service.RestService;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -19,19 +20,37 @@ import java.util.List;
 
 public class MeteblueScrapeService extends ScrapeService {
 
-    public MeteblueScrapeService(String userAgent, WebScraperConfig config) {
-        super(userAgent, config);
+    public MeteblueScrapeService(RestService restService, String userAgent, WebScraperConfig config) {
+        super(restService, userAgent, config);
     }
 
 
+    @Override
+    public String getName() {
+        return "MeteoBlue";
+    }
+
     public ForecastSource getForecasts(Timeframe timeframe, String latitude, String longitude) {
 
         if (!config.isEnabled()) {
             throw new DisabledException("MeteoBlue forecast is not enabled");
         }
 
-        WebScraperForecastsConfig currentForecastConfig = forecastConfigFactory(timeframe, latitude, longitude);
+        // nearby locations share the same page
+        WebScraperForecastsConfig currentForecastConfig = forecastConfigFactory(
+                timeframe, roundCoordinate(latitude), roundCoordinate(longitude)
+        );
+
+        return getCachedForecasts(timeframe, currentForecastConfig.getUrl(), () -> scrape(currentForecastConfig));
+    }
 
+    /**
+     * Scrapes the forecast page of the config
+     *
+     * @param currentForecastConfig forecast config, with the url placeholders already replaced
+     * @return the normalized forecast source
+     */
+    private ForecastSource scrape(WebScraperForecastsConfig currentForecastConfig) {
         // get web page
         Document doc = getDocument(currentForecastConfig.getUrl());
 
@@ -42,7 +61,7 @@ public class MeteblueScrapeService extends ScrapeService {
         // normalize data
         List<Forecast> forecasts = normalizeTable(timeTable, iconTable);
 
-        String name = String.format("MeteoBlue - %s", currentForecastConfig.getName());
+        String name = String.format("%s - %s", getName(), currentForecastConfig.getName());
 
         return ForecastSource.builder()
                 .name(name)
@@ -1,14 +1,17 @@
 package com.manu.forecaster.service.scrape;
 
+import com.manu.forecaster.cache.GeoPointIndex;
 import com.manu.forecaster.constant.Timeframe;
 import com.manu.forecaster.dto.configuration.WebScraperConfig;
 import com.manu.forecaster.dto.configuration.WebScraperForecastsConfig;
 import com.manu.forecaster.dto.forecast.Forecast;
 import com.manu.forecaster.dto.forecast.ForecastSource;
+import com.manu.forecaster.exception.ConfigurationException;
 import com.manu.forecaster.exception.DisabledException;
 import com.manu.forecaster.exception.GeneralDataException;
 import com.manu.forecaster.exception.RestException;
 import com.manu.forecaster.service.RestService;
+import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -16,22 +19,49 @@ import org.jsoup.select.Elements;
 import org.springframework.http.HttpStatus;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+@Slf4j
 public class MeteocielScrapeService extends ScrapeService {
 
-    private final RestService restService;
+    // contains both the forecast table and the timezone, the rest of the page is not needed
+    private static final String FORECAST_SELECTOR = "body > table:nth-child(2) > tbody > tr.texte > td:nth-child(2) > table > tbody > tr:nth-child(2) > td > table > tbody > tr:nth-child(2) > td > center:nth-child(4)";
+
+    // location ids of the points already geolocated, nearby points share the same meteociel location
+    private final GeoPointIndex<String> locationIds;
+    // optional file where the location ids are appended, null when disabled
+    private final Path locationIdsFile;
 
     public MeteocielScrapeService(RestService restService, String userAgent, WebScraperConfig config) {
-        super(userAgent, config);
-        this.restService = restService;
+        super(restService, userAgent, config);
+
+        try {
+            this.locationIds = new GeoPointIndex<>(config.getGeolocationCacheRadius());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException("Invalid MeteoCiel geolocation cache radius: " + e.getMessage());
+        }
+
+        String file = config.getGeolocationCacheFile();
+        this.locationIdsFile = file == null || file.isBlank() ? null : Path.of(file);
+        if (locationIdsFile != null) {
+            loadLocationIds(locationIdsFile);
+        }
     }
 
 
+    @Override
+    public String getName() {
+        return "MeteoCiel";
+    }
+
     public ForecastSource getForecasts(Timeframe timeframe, String latitude, String longitude) {
 
         if (!config.isEnabled()) {
@@ -40,21 +70,33 @@ public class MeteocielScrapeService extends ScrapeService {
 
         WebScraperForecastsConfig currentForecastConfig = forecastConfigFactory(timeframe, latitude, longitude);
 
+        // the location id identifies the page, nearby locations resolving to the same id share it
         String url = getGeolocatedUrl(currentForecastConfig.getUrl(), latitude, longitude);
 
-        // get web page
-        Document doc = getDocument(url);
+        return getCachedForecasts(timeframe, url, () -> scrape(currentForecastConfig, url));
+    }
+
+    /**
+     * Scrapes the forecast page of the location
+     *
+     * @param currentForecastConfig forecast config of the timeframe
+     * @param url                   url of the page, with the location id already replaced
+     * @return the normalized forecast source
+     */
+    private ForecastSource scrape(WebScraperForecastsConfig currentForecastConfig, String url) {
+        // get web page, up to the end of the forecast
+        Document doc = getDocument(url, FORECAST_SELECTOR);
 
         // extract forecast table
-        Elements forecastTable = doc.select("body > table:nth-child(2) > tbody > tr.texte > td:nth-child(2) > table > tbody > tr:nth-child(2) > td > table > tbody > tr:nth-child(2) > td > center:nth-child(4) > table > tbody > tr > td:nth-child(1) > table:nth-child(1) > tbody > tr");
+        Elements forecastTable = doc.select(FORECAST_SELECTOR + " > table > tbody > tr > td:nth-child(1) > table:nth-child(1) > tbody > tr");
 
         // extract timezone
-        Elements timezoneElement = doc.select("body > table:nth-child(2) > tbody > tr.texte > td:nth-child(2) > table > tbody > tr:nth-child(2) > td > table > tbody > tr:nth-child(2) > td > center:nth-child(4) > b");
+        Elements timezoneElement = doc.select(FORECAST_SELECTOR + " > b");
 
         // normalize data
         List<Forecast> forecasts = normalizeTable(forecastTable, timezoneElement);
 
-        String name = String.format("MeteoCiel - %s", currentForecastConfig.getName());
+        String name = String.format("%s - %s", getName(), currentForecastConfig.getName());
 
         return ForecastSource.builder()
                 .name(name)
@@ -63,13 +105,51 @@ public class MeteocielScrapeService extends ScrapeService {
     }
 
     /**
-     * Gets the forecast url by calling meteociel geolocation service to retrieve the location id
+     * Gets the forecast url by replacing the location id of the point
      * @param url url that needs its geolocation-id replaced
      * @param latitude latitude of the location point
      * @param longitude longitude of the location point
      * @return the initial url, with the geolocation-id replaced
      */
     private String getGeolocatedUrl(String url, String latitude, String longitude) {
+        return url.replace("{location-id}", getLocationId(latitude, longitude));
+    }
+
+    /**
+     * Gets the location id of a point, reusing the id of a point already geolocated nearby.
+     * Only the points missing from the cache call the meteociel geolocation service.
+     * @param latitude latitude of the location point
+     * @param longitude longitude of the location point
+     * @return the meteociel location id of the point
+     */
+    String getLocationId(String latitude, String longitude) {
+        double parsedLatitude;
+        double parsedLongitude;
+        try {
+            parsedLatitude = Double.parseDouble(latitude);
+            parsedLongitude = Double.parseDouble(longitude);
+        } catch (NumberFormatException e) {
+            throw new GeneralDataException(HttpStatus.BAD_REQUEST, String.format("Invalid coordinates: %s, %s", latitude, longitude));
+        }
+
+        String cachedLocationId = locationIds.findNearest(parsedLatitude, parsedLongitude);
+        if (cachedLocationId != null) {
+            return cachedLocationId;
+        }
+
+        String locationId = geolocate(latitude, longitude);
+        storeLocationId(parsedLatitude, parsedLongitude, locationId);
+
+        return locationId;
+    }
+
+    /**
+     * Calls meteociel geolocation service to retrieve the location id of a point
+     * @param latitude latitude of the location point
+     * @param longitude longitude of the location point
+     * @return the meteociel location id of the point
+     */
+    private String geolocate(String latitude, String longitude) {
         String geolocationUrl = config.getGeolocationUrl();
         String geolocationBody = config.getGeolocationBody();
 
@@ -101,8 +181,6 @@ public class MeteocielScrapeService extends ScrapeService {
                 .method(config.getGeolocationMethod(), requestBody)
                 .build();
 
-        String locationId = "";
-
         try (Response res = restService.executeRequest(request)) {
             var responseBody = restService.validateResponse(res);
             // extract the location id from the response (location name|location id|some number)
@@ -111,16 +189,65 @@ public class MeteocielScrapeService extends ScrapeService {
             if (parts.length < 2) {
                 throw new RestException("Unexpected geolocation response format: " + bodyString);
             }
-            locationId = parts[1];
+            return parts[1];
 
         } catch (IOException | RestException e) {
             String message = String.format("Unable to get locationId from geolocation service: %s", e.getMessage());
             throw new GeneralDataException(HttpStatus.EXPECTATION_FAILED, message);
         }
+    }
+
+    /**
+     * Stores the location id of a point on the cache, and appends it to the cache file if configured.
+     * Once the cache is full new points are no longer stored, the points already there keep being reused.
+     */
+    private void storeLocationId(double latitude, double longitude, String locationId) {
+        synchronized (locationIds) {
+            if (locationIds.size() >= config.getGeolocationCacheMaxEntries()) {
+                return;
+            }
+            locationIds.put(latitude, longitude, locationId);
 
-        url = url.replace("{location-id}", locationId);
+            if (locationIdsFile == null) {
+                return;
+            }
+            // the file is best effort, failures don't fail the request
+            try {
+                Files.writeString(locationIdsFile, String.format("%s\t%s\t%s%n", latitude, longitude, locationId),
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.warn("Unable to store the location id on the geolocation cache file: {}", e.getMessage());
+            }
+        }
+    }
 
-        return url;
+    /**
+     * Loads the points stored on the geolocation cache file, malformed lines are skipped
+     * @param locationIdsFile cache file, may not exist yet
+     */
+    private void loadLocationIds(Path locationIdsFile) {
+        try {
+            if (locationIdsFile.getParent() != null) {
+                Files.createDirectories(locationIdsFile.getParent());
+            }
+            if (!Files.exists(locationIdsFile)) {
+                return;
+            }
+            for (String line : Files.readAllLines(locationIdsFile, StandardCharsets.UTF_8)) {
+                // latitude, longitude, location id
+                String[] parts = line.split("\t");
+                if (parts.length != 3 || parts[2].isBlank() || locationIds.size() >= config.getGeolocationCacheMaxEntries()) {
+                    continue;
+                }
+                try {
+                    locationIds.put(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), parts[2]);
+                } catch (NumberFormatException e) {
+                    // a line torn by a crash, the point will be geolocated again
+                }
+            }
+        } catch (IOException e) {
+            throw new ConfigurationException("Unable to load the geolocation cache file: " + e.getMessage());
+        }
     }
 
     /**
@@ -1,45 +1,166 @@
 package com.manu.forecaster.service.scrape;
 
+import com.manu.forecaster.cache.SingleFlight;
+import com.manu.forecaster.cache.WeightedLruCache;
 import com.manu.forecaster.constant.Timeframe;
 import com.manu.forecaster.dto.configuration.WebScraperConfig;
 import com.manu.forecaster.dto.configuration.WebScraperForecastsConfig;
+import com.manu.forecaster.dto.forecast.ForecastSource;
 import com.manu.forecaster.exception.GeneralDataException;
+import com.manu.forecaster.exception.RestException;
 import com.manu.forecaster.service.GenericForecastServiceInterface;
-import org.jsoup.Jsoup;
+import com.manu.forecaster.service.RestService;
+import com.manu.forecaster.utils.HtmlUtils;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
 import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
 import org.springframework.http.HttpStatus;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
 
 public abstract class ScrapeService implements GenericForecastServiceInterface {
 
+    // unread page bytes worth receiving to keep the connection, beyond them a new connection is cheaper
+    private static final long MAX_DRAINED_BYTES = 64 * 1024;
+
+    protected final RestService restService;
     protected final String userAgent;
     protected final WebScraperConfig config;
+    // scraped forecasts by page, a page changes at most a few times a day
+    private final WeightedLruCache<String, ForecastSource> forecastCache;
+    private final SingleFlight<String, ForecastSource> forecastFlights = new SingleFlight<>();
+    private final Clock clock;
+
+    ScrapeService(RestService restService, String userAgent, WebScraperConfig config) {
+        this(restService, userAgent, config, Clock.systemUTC());
+    }
 
-    ScrapeService(String userAgent, WebScraperConfig config) {
+    ScrapeService(RestService restService, String userAgent, WebScraperConfig config, Clock clock) {
+        this.restService = restService;
         this.userAgent = userAgent;
         this.config = config;
+        // every forecast source weighs 1, the budget is a number of pages
+        this.forecastCache = new WeightedLruCache<>(config.getCacheMaxEntries(), source -> 1, clock);
+        this.clock = clock;
+    }
+
+    @Override
+    public Duration getDeadline() {
+        return config.getDeadline();
     }
 
     /**
-     * Scrapes the document at the provided url
+     * Scrapes the document at the provided url, fetched with the shared http client.
+     * When selectors are provided, the page is read only until the first match of every selector has ended,
+     * and only the matched subtrees keep their content. A short unread remainder is still received and skipped,
+     * so that the connection goes back to the pool instead of being dropped.
      *
-     * @param url scrape target
+     * @param url       scrape target
+     * @param selectors selectors of the elements containing everything the scraper needs, none to parse the whole page
      * @return extracted Jsoup Document
      */
-    protected Document getDocument(String url) {
-        Document document;
+    protected Document getDocument(String url, String... selectors) {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", userAgent)
+                .get()
+                .build();
+
+        // the shared client pools the connections, the page is decoded and parsed while it is received
+        try (Response response = restService.executeRequest(request)) {
+            ResponseBody responseBody = restService.validateResponse(response);
+            MediaType contentType = responseBody.contentType();
+            Reader reader = HtmlUtils.openReader(responseBody.byteStream(), contentType == null ? null : contentType.charset());
+
+            // links are resolved against the final url, after the redirects
+            try (StreamParser streamParser = new StreamParser(Parser.htmlParser()).parse(reader, response.request().url().toString())) {
+                if (selectors.length == 0) {
+                    return streamParser.complete();
+                }
+                Document document = HtmlUtils.parseUntil(streamParser, List.of(selectors));
+                skipShortRemainder(responseBody.source());
+                return document;
+            }
+        } catch (IOException | RestException e) {
+            throw new GeneralDataException(HttpStatus.EXPECTATION_FAILED, e.getMessage());
+        }
+    }
 
+    /**
+     * Skips the rest of a body when it ends within the drain limit. A body closed before its end makes the
+     * http client drop the connection, while receiving a short remainder costs less than a new handshake
+     *
+     * @param source body whose document has already been parsed
+     */
+    private static void skipShortRemainder(BufferedSource source) {
         try {
-            document = Jsoup.connect(url)
-                    .userAgent(userAgent)
-                    .timeout(30000)
-                    .get();
+            // request buffers up to the limit, it returns false when the body ends before it
+            if (!source.request(MAX_DRAINED_BYTES + 1)) {
+                source.skip(source.getBuffer().size());
+            }
         } catch (IOException e) {
+            // the document is complete, a failing remainder only costs the connection
+        }
+    }
+
+    /**
+     * Gets the forecasts of a page from the cache, or scrapes and caches them if missing.
+     * Concurrent misses of the same page share a single scrape.
+     * The cached source is shared by every request of the page, it must not be modified.
+     *
+     * @param timeframe timeframe of the forecast
+     * @param url       final url of the page, identifying the location as the provider sees it
+     * @param scraper   scrapes the page on cache miss
+     * @return the forecast source of the page
+     */
+    protected ForecastSource getCachedForecasts(Timeframe timeframe, String url, Supplier<ForecastSource> scraper) {
+        String key = timeframe + " " + url;
+
+        ForecastSource cached = forecastCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            return forecastFlights.execute(key, () -> {
+                // a flight may have filled the cache between the lookup and the start of this one
+                ForecastSource filled = forecastCache.get(key);
+                if (filled != null) {
+                    return filled;
+                }
+
+                ForecastSource scraped = scraper.get();
+                forecastCache.put(key, scraped, clock.instant().plus(config.getCacheTtl()));
+                return scraped;
+            });
+        } catch (IOException | RestException e) {
+            // scrapers report their failures as runtime exceptions, the flight rethrows them as they are
             throw new GeneralDataException(HttpStatus.EXPECTATION_FAILED, e.getMessage());
         }
+    }
 
-        return document;
+    /**
+     * Rounds a coordinate to the configured decimals, so that nearby locations resolve to the same page.
+     * Shorter coordinates are padded with zeros, so that the same location always gives the same string.
+     *
+     * @param coordinate latitude or longitude in decimal degrees
+     * @return the rounded coordinate
+     * @throws NumberFormatException when the coordinate is not a decimal number
+     */
+    protected String roundCoordinate(String coordinate) {
+        return new BigDecimal(coordinate).setScale(config.getCoordinateDecimals(), RoundingMode.HALF_UP).toPlainString();
     }
 
     protected WebScraperForecastsConfig forecastConfigFactory(Timeframe timeframe, String latitude, String longitude) {
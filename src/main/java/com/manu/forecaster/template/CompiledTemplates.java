@@ -0,0 +1,109 @@
+package com.manu.forecaster.template;
+
+import com.manu.forecaster.dto.tile.TileRapresentation;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The SpEL templates of a tile radar, parsed once.
+ * Template values are memoized for a bucket of wall clock time, so that every url and body rendered in the same
+ * bucket sees the same value, and the reflective calls of an expression like the default timestamp run once
+ * per bucket instead of once per fetch.
+ * Instances are safe to share between threads: the parsed expressions are immutable once compiled, the memoized
+ * values are swapped atomically, and every evaluation gets its own context.
+ */
+public class CompiledTemplates {
+
+    private final Map<String, CompiledTemplate> templates = new HashMap<>();
+    // urls and bodies are few and come from the configuration, each one is tokenized once
+    private final Map<String, TemplateSource> sources = new ConcurrentHashMap<>();
+    private final Supplier<EvaluationContext> contextFactory;
+    private final Clock clock;
+    private final long bucketMillis;
+
+    /**
+     * @param templates      SpEL expressions by template name
+     * @param parser         parser of the expressions
+     * @param contextFactory creates the context of a single evaluation, contexts are mutable and never shared
+     * @param clock          clock of the memoization buckets
+     * @param bucket         how long an evaluated value is reused
+     */
+    public CompiledTemplates(Map<String, String> templates, ExpressionParser parser,
+                             Supplier<EvaluationContext> contextFactory, Clock clock, Duration bucket) {
+        for (var template : templates.entrySet()) {
+            this.templates.put(template.getKey(), new CompiledTemplate(parser.parseExpression(template.getValue())));
+        }
+        this.contextFactory = contextFactory;
+        this.clock = clock;
+        this.bucketMillis = Math.max(1, bucket.toMillis());
+    }
+
+    /**
+     * Replaces the standard xyz and the templates on the source string.
+     * Placeholders that are neither a tile coordinate nor a template are left as they are.
+     *
+     * @param source source string where the replacing happens
+     * @param tile   source tile for the xyz replace, if null skips only the xyz replace.
+     * @return the source with the placeholders replaced, empty if the source is null or blank
+     */
+    public String apply(String source, TileRapresentation tile) {
+        if (source == null || source.isBlank()) {
+            return "";
+        }
+
+        long bucket = clock.millis() / bucketMillis;
+        return sources.computeIfAbsent(source, TemplateSource::parse).render(name -> {
+            // tile coordinates take precedence over templates with the same name
+            if (tile != null) {
+                String coordinate = switch (name) {
+                    case "x" -> String.valueOf(tile.getX());
+                    case "y" -> String.valueOf(tile.getY());
+                    case "z" -> String.valueOf(tile.getZ());
+                    default -> null;
+                };
+                if (coordinate != null) {
+                    return coordinate;
+                }
+            }
+
+            CompiledTemplate template = templates.get(name);
+            return template != null ? template.getValue(bucket) : null;
+        });
+    }
+
+    /**
+     * A parsed expression, with the value of the last bucket it was evaluated in
+     */
+    private class CompiledTemplate {
+
+        private final Expression expression;
+        private volatile Memo memo;
+
+        private CompiledTemplate(Expression expression) {
+            this.expression = expression;
+        }
+
+        private String getValue(long bucket) {
+            Memo current = memo;
+            if (current != null && current.bucket() == bucket) {
+                return current.value();
+            }
+
+            // concurrent misses of a new bucket may both evaluate, the last value stored is the one reused
+            String value = expression.getValue(contextFactory.get(), String.class);
+            memo = new Memo(bucket, value);
+            return value;
+        }
+    }
+
+    private record Memo(long bucket, String value) {
+    }
+}
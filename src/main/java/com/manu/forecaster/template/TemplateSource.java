@@ -0,0 +1,79 @@
+package com.manu.forecaster.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A url or body split once into literal segments and {name} placeholders, so that rendering it is a single
+ * append pass instead of a replace scan of the whole string for every placeholder.
+ */
+public class TemplateSource {
+
+    // literals[i] comes before placeholders[i], the last literal closes the source
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalsLength;
+
+    private TemplateSource(List<String> literals, List<String> placeholders) {
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+        this.literalsLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    /**
+     * Splits the source on its placeholders
+     *
+     * @param source url or body containing {name} placeholders
+     * @return the tokenized source
+     */
+    public static TemplateSource parse(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+
+        int literalStart = 0;
+        int open = source.indexOf('{');
+        while (open >= 0) {
+            int close = source.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+
+            // a brace opened again before closing starts the placeholder over, as nested braces can't be names
+            int reopen = source.lastIndexOf('{', close);
+            if (close > reopen + 1) {
+                literals.add(source.substring(literalStart, reopen));
+                placeholders.add(source.substring(reopen + 1, close));
+                literalStart = close + 1;
+            }
+            open = source.indexOf('{', close + 1);
+        }
+        literals.add(source.substring(literalStart));
+
+        return new TemplateSource(literals, placeholders);
+    }
+
+    /**
+     * Renders the source, replacing every placeholder with its resolved value
+     *
+     * @param resolver gets the value of a placeholder name, null keeps the placeholder as it is
+     * @return the rendered source
+     */
+    public String render(Function<String, String> resolver) {
+        if (placeholders.length == 0) {
+            return literals[0];
+        }
+
+        StringBuilder builder = new StringBuilder(literalsLength + placeholders.length * 16);
+        for (int i = 0; i < placeholders.length; i++) {
+            builder.append(literals[i]);
+            String value = resolver.apply(placeholders[i]);
+            if (value != null) {
+                builder.append(value);
+            } else {
+                builder.append('{').append(placeholders[i]).append('}');
+            }
+        }
+        return builder.append(literals[placeholders.length]).toString();
+    }
+}
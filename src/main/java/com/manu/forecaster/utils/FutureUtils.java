@@ -0,0 +1,79 @@
+package com.manu.forecaster.utils;
+
+import com.manu.forecaster.exception.RestException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+public class FutureUtils {
+
+    private FutureUtils() {
+    }
+
+    /**
+     * Runs a remote call asynchronously on the provided executor, wrapping its checked exceptions
+     *
+     * @param supplier remote call to run
+     * @param executor executor to run the call on
+     * @return a future completed with the result of the call
+     */
+    public static <T> CompletableFuture<T> supplyAsync(RemoteSupplier<T> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return supplier.get();
+            } catch (IOException | RestException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits for the future and rethrows the original exception of the remote call, if any
+     *
+     * @param future future to wait
+     * @return the result of the future
+     * @throws IOException   when the remote call failed with an IOException
+     * @throws RestException when the remote call failed with a RestException
+     */
+    public static <T> T join(CompletableFuture<T> future) throws IOException, RestException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RestException restException) {
+                throw restException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for a future whose task can't throw checked exceptions, rethrowing its original runtime exception
+     *
+     * @param future future to wait
+     * @return the result of the future
+     */
+    public static <T> T joinUnchecked(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RemoteSupplier<T> {
+        T get() throws IOException, RestException;
+    }
+}
@@ -0,0 +1,180 @@
+package com.manu.forecaster.utils;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class HtmlUtils {
+
+    // same window jsoup looks into for the meta charset
+    private static final int CHARSET_SNIFF_SIZE = 5 * 1024;
+    // <meta charset="x"> and <meta http-equiv="Content-Type" content="text/html; charset=x">
+    private static final Pattern META_CHARSET = Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    private HtmlUtils() {
+    }
+
+    /**
+     * Opens a reader on an html page, detecting its charset the way jsoup does:
+     * the byte order mark first, then the charset declared by the response, then the meta charset of the page.
+     * Only the first bytes of the page are read ahead, the rest is decoded while it is read.
+     *
+     * @param input           bytes of the page
+     * @param declaredCharset charset of the response content type, null if missing
+     * @return a reader of the page, without the byte order mark
+     * @throws IOException when the first bytes of the page can't be read
+     */
+    public static Reader openReader(InputStream input, Charset declaredCharset) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input, CHARSET_SNIFF_SIZE);
+        bufferedInput.mark(CHARSET_SNIFF_SIZE);
+        byte[] head = bufferedInput.readNBytes(CHARSET_SNIFF_SIZE);
+        bufferedInput.reset();
+
+        // the byte order mark wins over any declaration, and must not reach the parser
+        if (startsWith(head, 0xEF, 0xBB, 0xBF)) {
+            bufferedInput.skipNBytes(3);
+            return new InputStreamReader(bufferedInput, StandardCharsets.UTF_8);
+        }
+        if (startsWith(head, 0xFE, 0xFF)) {
+            bufferedInput.skipNBytes(2);
+            return new InputStreamReader(bufferedInput, StandardCharsets.UTF_16BE);
+        }
+        if (startsWith(head, 0xFF, 0xFE)) {
+            bufferedInput.skipNBytes(2);
+            return new InputStreamReader(bufferedInput, StandardCharsets.UTF_16LE);
+        }
+
+        if (declaredCharset != null) {
+            return new InputStreamReader(bufferedInput, declaredCharset);
+        }
+
+        // the meta declaration is ascii, whatever the charset it declares
+        Matcher matcher = META_CHARSET.matcher(new String(head, StandardCharsets.ISO_8859_1));
+        if (matcher.find()) {
+            Charset metaCharset = toCharset(matcher.group(1));
+            if (metaCharset != null) {
+                return new InputStreamReader(bufferedInput, metaCharset);
+            }
+        }
+
+        return new InputStreamReader(bufferedInput, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a page only until an element matching every selector has been read whole, then stops reading the input.
+     * The elements that end outside of the matched subtrees are emptied as soon as they end, they are kept
+     * in the document without their content so that positional selectors still count them.
+     * The selectors are also evaluated on the ancestors still being parsed, so they must not depend on
+     * the content or the siblings that follow the element.
+     * Closing an http body before its end drops the connection instead of returning it to the pool:
+     * callers reading from a pooled connection should skip a short remainder themselves, a long one is
+     * cheaper to drop than to receive.
+     *
+     * @param streamParser parser of the page, already fed with the input
+     * @param selectors    selectors of the subtrees to keep, the first match of each one is kept
+     * @return the partial document, with the path from the root to the first match of every selector
+     * @throws IOException when the input can't be read
+     */
+    public static Document parseUntil(StreamParser streamParser, List<String> selectors) throws IOException {
+        Document document = streamParser.document();
+
+        List<Evaluator> pending = new ArrayList<>();
+        for (var selector : selectors) {
+            pending.add(QueryParser.parse(selector));
+        }
+        List<Element> matches = new ArrayList<>();
+        // whether the elements still being parsed match a pending selector, they are the ancestors of many elements
+        Map<Element, Boolean> openMatches = new IdentityHashMap<>();
+
+        try {
+            // elements are emitted when they end, children before their parents
+            Iterator<Element> iterator = streamParser.iterator();
+            while (!pending.isEmpty() && iterator.hasNext()) {
+                Element element = iterator.next();
+                if (pending.removeIf(element::is)) {
+                    matches.add(element);
+                } else if (!isInsideAny(element, pending, openMatches) && !isAncestorOfAny(element, matches)) {
+                    element.empty();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // the rest of the page is never read
+        streamParser.stop();
+
+        return document;
+    }
+
+    /**
+     * Checks whether an ancestor of the element matches a pending selector, so the element may belong to a future match.
+     * Pending selectors are only ever removed, so a cached miss stays valid.
+     */
+    private static boolean isInsideAny(Element element, List<Evaluator> pending, Map<Element, Boolean> openMatches) {
+        for (Element parent = element.parent(); parent != null; parent = parent.parent()) {
+            boolean matched = openMatches.computeIfAbsent(parent, ancestor -> {
+                for (var evaluator : pending) {
+                    if (ancestor.is(evaluator)) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Charset toCharset(String name) {
+        try {
+            return Charset.isSupported(name) ? Charset.forName(name) : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+
+    private static boolean isAncestorOfAny(Element element, List<Element> descendants) {
+        for (var descendant : descendants) {
+            for (Element parent = descendant.parent(); parent != null; parent = parent.parent()) {
+                if (parent == element) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -1,171 +1,430 @@
 package com.manu.forecaster.utils;
 
-import com.manu.forecaster.dto.tile.TileBoundary;
+import com.manu.forecaster.constant.Resampling;
+import com.manu.forecaster.image.CompiledLegend;
+import com.manu.forecaster.image.LegendRaster;
+import com.manu.forecaster.image.PngDecoder;
 
-import java.awt.*;
-import java.awt.geom.AffineTransform;
-import java.awt.image.AffineTransformOp;
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.util.*;
-import java.util.List;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 public class ImageUtils {
 
+    private static final int SQUARE_COLOR = 0xFF000000;
+    // below this size splitting the blend across cores costs more than it saves
+    private static final int PARALLEL_COMPOSITE_PIXELS = 512 * 512;
+
     private ImageUtils() {
     }
 
     /**
-     * Extracts how many pixel in the source image within the search radius match the colors described in the legend
+     * Extracts how many pixel in the legend raster within the search radius match each legend entry
      *
-     * @param image        source image for the match
-     * @param legend       map of names and hex colors to match
+     * @param raster       legend classes of the source image
+     * @param legend       the legend used to build the raster
      * @param x            x pixel of the search point
      * @param y            y pixel of the search point
      * @param searchRadius pixels of search radius
-     * @return a map containing the names of the legend, and the amount of matched pixels
+     * @return a map containing the names of the legend, and the coverage% of matched pixels
      */
-    public static Map<String, Integer> getColorMatchCount(BufferedImage image, Map<String, String> legend, int x, int y, int searchRadius) {
+    public static Map<String, Integer> getColorMatchCount(LegendRaster raster, CompiledLegend legend, int x, int y, int searchRadius) {
 
-        // extract an RGB array, clamped to image bounds
+        // clamp the search window to raster bounds
         int startx = Math.max(0, x - searchRadius);
         int starty = Math.max(0, y - searchRadius);
-        int endx = Math.min(image.getWidth(), x + searchRadius);
-        int endy = Math.min(image.getHeight(), y + searchRadius);
-        int width = endx - startx;
-        int height = endy - starty;
-        int[] pixelColors = image.getRGB(startx, starty, width, height, null, 0, width);
-        List<Integer> pixelColorsList = Arrays.stream(pixelColors).boxed().toList();
+        int endx = Math.min(raster.getWidth(), x + searchRadius);
+        int endy = Math.min(raster.getHeight(), y + searchRadius);
+        int totalPixels = (endx - startx) * (endy - starty);
+
+        // count how many pixels there are for each legend class
+        int[] counts = new int[legend.getClassCount() + 1];
+        raster.countClasses(startx, starty, endx, endy, counts);
 
-        int totalPixels = width * height;
+        return toCoverage(legend, counts, totalPixels);
+    }
 
+    /**
+     * Converts the pixel count of every legend class into the coverage% of its weather name
+     *
+     * @param legend      legend of the classes
+     * @param counts      pixel count of every legend class
+     * @param totalPixels number of pixels of the counted area
+     * @return a map containing the names of the legend, and their coverage%
+     */
+    private static Map<String, Integer> toCoverage(CompiledLegend legend, int[] counts, int totalPixels) {
         Map<String, Integer> legendCounts = new HashMap<>();
 
-        // iterate legend and count how many pixels there are with the same color as each legend entry
-        for (var legendItem : legend.entrySet()) {
-            // convert hex value to ARGB int
-            int colorToSearch = hexToARGB(legendItem.getKey());
-            // count the color matches into the pixel array
-            int matches = Collections.frequency(pixelColorsList, colorToSearch);
-            // calculate the coverage% of the legend entry
-            int coverage = 100 * matches / totalPixels;
-            // save the coverage% for each legend entry on another map
-            legendCounts.put(legendItem.getValue(), coverage);
+        for (int legendClass = 1; legendClass <= legend.getClassCount(); legendClass++) {
+            int coverage = 100 * counts[legendClass] / totalPixels;
+            legendCounts.put(legend.getName(legendClass), coverage);
         }
 
         return legendCounts;
     }
 
+    public static String getWeatherMatchByColor(LegendRaster raster, CompiledLegend legend, int x, int y) {
 
-    public static String getWeatherMatchByColor(BufferedImage image, Map<String, String> legend, int x, int y) {
+        int legendClass = raster.classAt(x, y);
 
-        int pixelColor = image.getRGB(x, y);
+        // if nothing matches, the weather is clear
+        if (legendClass == CompiledLegend.NO_MATCH) {
+            return "clear";
+        }
 
-        // iterate legend to search the corresponding pixel color
-        for (var legendItem : legend.entrySet()) {
-            // convert hex value to ARGB int
-            int colorToSearch = hexToARGB(legendItem.getKey());
-            // if the color matches, return it
-            if (colorToSearch == pixelColor) {
-                return legendItem.getValue();
+        return legend.getName(legendClass);
+    }
+
+    /**
+     * Converts the image into a raster of legend classes, dropping the colors that are not part of the legend
+     *
+     * @param image  source image
+     * @param legend legend to classify the pixels with
+     * @return the legend raster of the image
+     */
+    public static LegendRaster toLegendRaster(BufferedImage image, CompiledLegend legend) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        byte[] classes = new byte[width * height];
+        int[] rowColors = new int[width];
+
+        // classify the image row by row, to avoid copying the whole image into an int array
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, rowColors, 0, width);
+            int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                classes[rowStart + x] = (byte) legend.classify(rowColors[x]);
             }
         }
 
-        // if nothing matches, the weather is clear
-        return "clear";
+        return LegendRaster.of(classes, width, height);
     }
 
-    public static BufferedImage drawSquare(BufferedImage image, int centroidX, int centroidY, int radius) {
-
-        int size = radius * 2 + 1;
-        int startx = centroidX - radius;
-        int starty = centroidY - radius;
+    /**
+     * Reads an image, the PNG flavours served by the radars are decoded without going through ImageIO
+     *
+     * @param imageBytes bytes of the image
+     * @return the image, or null if the bytes are not an image readable by ImageIO
+     * @throws IOException when the image is malformed
+     */
+    public static BufferedImage readImage(byte[] imageBytes) throws IOException {
+        PngDecoder decoder = PngDecoder.open(imageBytes);
+        if (decoder == null) {
+            return ImageIO.read(new ByteArrayInputStream(imageBytes));
+        }
 
-        Graphics2D graph = image.createGraphics();
-        graph.setColor(Color.BLACK);
-        graph.drawRect(startx, starty, size, size);
-        graph.dispose();
+        int width = decoder.getWidth();
+        BufferedImage image = new BufferedImage(width, decoder.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
 
+        // copy the decoded rows straight into the pixels of the image
+        decoder.decode((y, argb) -> System.arraycopy(argb, 0, pixels, y * width, width));
         return image;
     }
 
     /**
-     * Sets the opacity of the overlayImage to the value provided and draws it on top of the baseImage
+     * Reads an image into a raster of legend classes, the PNG flavours served by the radars are classified
+     * while they are decoded, without building an intermediate image
+     *
+     * @param imageBytes bytes of the image
+     * @param legend     legend to classify the pixels with
+     * @return the legend raster of the image, or null if the bytes are not an image readable by ImageIO
+     * @throws IOException when the image is malformed
+     */
+    public static LegendRaster readLegendRaster(byte[] imageBytes, CompiledLegend legend) throws IOException {
+        return readLegendRaster(imageBytes, legend, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a window of rows of an image into a raster of legend classes.
+     * The PNG flavours served by the radars stop decoding after the last row of the window and leave the other rows clear,
+     * images read by ImageIO are classified whole.
+     *
+     * @param imageBytes bytes of the image
+     * @param legend     legend to classify the pixels with
+     * @param startRow   first row to classify, inclusive
+     * @param endRow     last row to classify, exclusive
+     * @return the legend raster of the image, or null if the bytes are not an image readable by ImageIO
+     * @throws IOException when the image is malformed
+     */
+    public static LegendRaster readLegendRaster(byte[] imageBytes, CompiledLegend legend, int startRow, int endRow) throws IOException {
+        PngDecoder decoder = PngDecoder.open(imageBytes);
+        if (decoder == null) {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            return image == null ? null : toLegendRaster(image, legend);
+        }
+
+        int width = decoder.getWidth();
+        int height = decoder.getHeight();
+        byte[] classes = new byte[width * height];
+
+        // palette images are classified once per palette entry, then every pixel is a table lookup
+        if (decoder.isIndexed()) {
+            byte[] paletteClasses = legend.classifyPalette(decoder.getPalette());
+            decoder.decodeIndexRows(startRow, endRow, (y, indexes, offset) -> {
+                int rowStart = y * width;
+                for (int x = 0; x < width; x++) {
+                    classes[rowStart + x] = paletteClasses[indexes[offset + x] & 0xFF];
+                }
+            });
+            return LegendRaster.of(classes, width, height);
+        }
+
+        decoder.decodeRows(startRow, endRow, (y, argb) -> {
+            int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                classes[rowStart + x] = (byte) legend.classify(argb[x]);
+            }
+        });
+
+        return LegendRaster.of(classes, width, height);
+    }
+
+    /**
+     * Sets the opacity of the overlayImage to the value provided and draws it on top of the baseImage,
+     * then draws the black outline of a square on top of both, in the same pass over the pixels
      *
      * @param baseImage    image at full opacity
      * @param overlayImage image with reduced opacity to overlay
      * @param opacity      opacity of overlayImage
-     * @return BufferedImage of overlapped images
+     * @param centroidX    x pixel of the center of the square
+     * @param centroidY    y pixel of the center of the square
+     * @param radius       distance in pixels between the center and the sides of the square
+     * @return BufferedImage of overlapped images, with the square drawn
      */
-    public static BufferedImage overlayImage(BufferedImage baseImage, BufferedImage overlayImage, float opacity) {
+    public static BufferedImage overlayImage(BufferedImage baseImage, BufferedImage overlayImage, float opacity,
+                                             int centroidX, int centroidY, int radius) {
+        return composite(baseImage, overlayImage, opacity, Square.of(centroidX, centroidY, radius));
+    }
 
-        // create a new ARGB image, if skipped a jpg baseimage can mess with color channels
-        BufferedImage newBaseImage = new BufferedImage(baseImage.getWidth(), baseImage.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        newBaseImage.getGraphics().drawImage(baseImage, 0, 0, null);
+    /**
+     * Crops a window of the source image and scales it to the output size in a single pass over the pixels,
+     * mapping every output pixel back to the source. Nearest neighbour keeps the source colors exact.
+     *
+     * @param source       image to crop
+     * @param sourceX      left edge of the window, in source pixels
+     * @param sourceY      top edge of the window, in source pixels
+     * @param sourceWidth  width of the window, in source pixels
+     * @param sourceHeight height of the window, in source pixels
+     * @param width        width of the output image
+     * @param height       height of the output image
+     * @param resampling   filter used to compute the output pixels
+     * @return a new ARGB image with the window of the source, cropped and scaled
+     */
+    public static BufferedImage cropAndScale(BufferedImage source, double sourceX, double sourceY, double sourceWidth,
+                                             double sourceHeight, int width, int height, Resampling resampling) {
+
+        int[] sourcePixels = getPixels(source);
+        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] outputPixels = getPixels(output);
+
+        double scaleX = sourceWidth / width;
+        double scaleY = sourceHeight / height;
 
-        // create a 2D graphics canvas
-        Graphics2D g = newBaseImage.createGraphics();
+        if (resampling == Resampling.NEAREST) {
+            // the source column of every output column is the same for every row
+            int[] columns = new int[width];
+            for (int x = 0; x < width; x++) {
+                columns[x] = clamp((int) Math.floor(sourceX + (x + 0.5) * scaleX), source.getWidth() - 1);
+            }
+            for (int y = 0; y < height; y++) {
+                int sourceRow = clamp((int) Math.floor(sourceY + (y + 0.5) * scaleY), source.getHeight() - 1) * source.getWidth();
+                int outputRow = y * width;
+                for (int x = 0; x < width; x++) {
+                    outputPixels[outputRow + x] = sourcePixels[sourceRow + columns[x]];
+                }
+            }
+            return output;
+        }
 
-        // set the alpha composition to "overlay" the second image
-        AlphaComposite ac = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity);
-        g.setComposite(ac);
+        // the two source columns and the 8 bits weight of the right one, for every output column
+        int[] leftColumns = new int[width];
+        int[] rightColumns = new int[width];
+        int[] rightWeights = new int[width];
+        for (int x = 0; x < width; x++) {
+            double position = clamp(sourceX + (x + 0.5) * scaleX - 0.5, source.getWidth() - 1);
+            leftColumns[x] = (int) position;
+            rightColumns[x] = Math.min(leftColumns[x] + 1, source.getWidth() - 1);
+            rightWeights[x] = (int) ((position - leftColumns[x]) * 256);
+        }
 
-        // draw the overlay
-        g.drawImage(overlayImage, 0, 0, null);
+        for (int y = 0; y < height; y++) {
+            double position = clamp(sourceY + (y + 0.5) * scaleY - 0.5, source.getHeight() - 1);
+            int topRow = (int) position;
+            int bottomWeight = (int) ((position - topRow) * 256);
+            int top = topRow * source.getWidth();
+            int bottom = Math.min(topRow + 1, source.getHeight() - 1) * source.getWidth();
+            int outputRow = y * width;
+
+            for (int x = 0; x < width; x++) {
+                int upper = interpolate(sourcePixels[top + leftColumns[x]], sourcePixels[top + rightColumns[x]], rightWeights[x]);
+                int lower = interpolate(sourcePixels[bottom + leftColumns[x]], sourcePixels[bottom + rightColumns[x]], rightWeights[x]);
+                outputPixels[outputRow + x] = interpolate(upper, lower, bottomWeight);
+            }
+        }
 
-        g.dispose();
-        return newBaseImage;
+        return output;
     }
 
     /**
-     * Crops the source image to the provided boundary and scales is
+     * Blends the overlay on top of a copy of the base image with the SRC_OVER rule, working on the int pixels.
+     * Large images are split in bands of rows, blended in parallel.
      *
-     * @param source   image to crop
-     * @param boundary boundaries for crop
-     * @param scale    scale of the output image
-     * @return the source image, cropped and scaled
+     * @param square square to draw on top of the blended pixels
      */
-    public static BufferedImage cropAndScale(BufferedImage source, TileBoundary boundary, double scale) {
+    private static BufferedImage composite(BufferedImage baseImage, BufferedImage overlayImage, float opacity, Square square) {
+
+        int width = baseImage.getWidth();
+        int height = baseImage.getHeight();
+
+        // create a new ARGB image, if skipped a jpg baseimage can mess with color channels
+        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] outputPixels = getPixels(output);
+        System.arraycopy(getPixels(baseImage), 0, outputPixels, 0, width * height);
+
+        int[] overlayPixels = getPixels(overlayImage);
+        int overlayWidth = overlayImage.getWidth();
+        int overlayHeight = overlayImage.getHeight();
+        int overlayOpacity = Math.round(Math.max(0, Math.min(opacity, 1)) * 255);
+
+        if ((long) width * height < PARALLEL_COMPOSITE_PIXELS) {
+            compositeRows(outputPixels, width, 0, height, overlayPixels, overlayWidth, overlayHeight, overlayOpacity, square);
+            return output;
+        }
+
+        int bands = Math.min(height, Runtime.getRuntime().availableProcessors());
+        IntStream.range(0, bands).parallel().forEach(band -> compositeRows(
+                outputPixels, width, height * band / bands, height * (band + 1) / bands,
+                overlayPixels, overlayWidth, overlayHeight, overlayOpacity, square
+        ));
+        return output;
+    }
+
+    private static void compositeRows(int[] output, int width, int startRow, int endRow, int[] overlay,
+                                      int overlayWidth, int overlayHeight, int opacity, Square square) {
 
-        int width = boundary.getBottomRightXPixel() - boundary.getTopLeftXPixel();
-        int height = boundary.getBottomRightYPixel() - boundary.getTopLeftYPixel();
+        int blendedColumns = Math.min(width, overlayWidth);
+
+        for (int y = startRow; y < endRow; y++) {
+            int outputRow = y * width;
+
+            if (y < overlayHeight && opacity > 0) {
+                int overlayRow = y * overlayWidth;
+                for (int x = 0; x < blendedColumns; x++) {
+                    int source = overlay[overlayRow + x];
+                    // fully transparent radar pixels leave the base untouched
+                    if (source >>> 24 != 0) {
+                        output[outputRow + x] = blend(output[outputRow + x], source, opacity);
+                    }
+                }
+            }
+
+            if (y >= square.top() && y <= square.bottom()) {
+                int startColumn = Math.max(0, square.left());
+                int endColumn = Math.min(width - 1, square.right());
+                for (int x = startColumn; x <= endColumn; x++) {
+                    if (square.isOutline(x, y)) {
+                        output[outputRow + x] = SQUARE_COLOR;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Blends a non-premultiplied ARGB color on top of another, as AlphaComposite.SRC_OVER does
+     *
+     * @param destination color below
+     * @param source      color on top
+     * @param opacity     extra opacity of the source, from 0 to 255
+     * @return the blended color
+     */
+    private static int blend(int destination, int source, int opacity) {
+        int sourceAlpha = ((source >>> 24) * opacity + 127) / 255;
+        if (sourceAlpha == 0) {
+            return destination;
+        }
 
-        // calculate the resampled image size
-        int scaledWidth = (int) (width * scale);
-        int scaledHeigth = (int) (height * scale);
+        int destinationAlpha = destination >>> 24;
+        // weight of the destination color in the result, on a 255 * 255 scale
+        int destinationWeight = destinationAlpha * (255 - sourceAlpha);
+        int outputAlpha = sourceAlpha + (destinationWeight + 127) / 255;
+        int divisor = sourceAlpha * 255 + destinationWeight;
+
+        int result = outputAlpha << 24;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int sourceChannel = (source >>> shift) & 0xFF;
+            int destinationChannel = (destination >>> shift) & 0xFF;
+            int channel = (sourceChannel * sourceAlpha * 255 + destinationChannel * destinationWeight + divisor / 2) / divisor;
+            result |= channel << shift;
+        }
+        return result;
+    }
 
-        // crop the image
-        BufferedImage cropped = source.getSubimage(boundary.getTopLeftXPixel(), boundary.getTopLeftYPixel(), width, height);
+    /**
+     * Gets the ARGB pixels of an image, without copying them when the image is already a plain ARGB int image.
+     * In that case the returned array is the buffer of the image, writes on it change the image.
+     *
+     * @param image image to read
+     * @return the ARGB pixels of the image, row by row
+     */
+    public static int[] getPixels(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        // sub images share the buffer of their parent, and can't be used directly
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB
+                && image.getRaster().getSampleModelTranslateX() == 0 && image.getRaster().getSampleModelTranslateY() == 0
+                && image.getRaster().getDataBuffer().getSize() == width * height) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
 
-        // scale the image by resampling with bilinear filter
-        BufferedImage after = new BufferedImage(scaledWidth, scaledHeigth, BufferedImage.TYPE_INT_ARGB);
-        AffineTransform at = new AffineTransform();
-        at.scale(scale, scale);
-        AffineTransformOp scaleOp = new AffineTransformOp(at, AffineTransformOp.TYPE_BILINEAR);
-        return scaleOp.filter(cropped, after);
+        return image.getRGB(0, 0, width, height, null, 0, width);
     }
 
     /**
-     * Scales the provided image
+     * Linearly interpolates every channel of two ARGB colors
      *
-     * @param source   image to crop
-     * @param scale    scale of the output image
-     * @return the source image scaled
+     * @param first  first color
+     * @param second second color
+     * @param weight weight of the second color, from 0 to 256
+     * @return the interpolated color
      */
-    public static BufferedImage scale(BufferedImage source, double scale) {
+    private static int interpolate(int first, int second, int weight) {
+        if (first == second || weight == 0) {
+            return first;
+        }
+
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int firstChannel = (first >>> shift) & 0xFF;
+            int secondChannel = (second >>> shift) & 0xFF;
+            result |= (firstChannel + (((secondChannel - firstChannel) * weight) >> 8)) << shift;
+        }
+        return result;
+    }
 
-        // calculate the resampled image size
-        int scaledWidth = (int) (source.getWidth() * scale);
-        int scaledHeigth = (int) (source.getHeight() * scale);
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
 
-        // scale the image by resampling with bilinear filter
-        BufferedImage after = new BufferedImage(scaledWidth, scaledHeigth, BufferedImage.TYPE_INT_ARGB);
-        AffineTransform at = new AffineTransform();
-        at.scale(scale, scale);
-        AffineTransformOp scaleOp = new AffineTransformOp(at, AffineTransformOp.TYPE_BILINEAR);
-        return scaleOp.filter(source, after);
+    private static double clamp(double value, int max) {
+        return Math.max(0, Math.min(value, max));
     }
 
-    private static int hexToARGB(String hexColor) {
+    /**
+     * Converts an hex color (#RRGGBB or #AARRGGBB) into an ARGB int, missing transparency is considered opaque
+     *
+     * @param hexColor hex color to convert
+     * @return the ARGB int of the color
+     */
+    public static int hexToARGB(String hexColor) {
 
         // remove # to get only the hex
         if (hexColor.startsWith("#")) {
@@ -183,4 +442,20 @@ public class ImageUtils {
         return (int) Long.parseLong(hexColor, 16);
     }
 
+    /**
+     * Square outline, the sides are included in the bounds
+     */
+    private record Square(int left, int top, int right, int bottom) {
+
+        static Square of(int centroidX, int centroidY, int radius) {
+            int size = radius * 2 + 1;
+            int left = centroidX - radius;
+            int top = centroidY - radius;
+            return new Square(left, top, left + size, top + size);
+        }
+
+        boolean isOutline(int x, int y) {
+            return y == top || y == bottom || x == left || x == right;
+        }
+    }
 }
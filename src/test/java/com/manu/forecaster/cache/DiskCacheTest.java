@@ -0,0 +1,193 @@
+package com.manu.forecaster.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskCacheTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-08T12:00:00Z");
+    private static final Instant LATER = NOW.plusSeconds(300);
+
+    @TempDir
+    Path directory;
+
+    private DiskCache open(long maxSize, int segmentSize) throws Exception {
+        return new DiskCache(directory, maxSize, segmentSize, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private long countSegmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    // ── get / put ──
+
+    @Test
+    void get_missingKey_returnsNull() throws Exception {
+        DiskCache cache = open(4096, 1024);
+
+        assertNull(cache.get("missing"));
+    }
+
+    @Test
+    void put_thenGet_returnsValueAndExpiration() throws Exception {
+        DiskCache cache = open(4096, 1024);
+
+        cache.put("tile", new byte[]{1, 2, 3}, LATER);
+        DiskCache.Entry entry = cache.get("tile");
+
+        assertArrayEquals(new byte[]{1, 2, 3}, entry.value());
+        assertEquals(LATER, entry.expiresAt());
+    }
+
+    @Test
+    void put_sameKeyTwice_returnsNewestValue() throws Exception {
+        DiskCache cache = open(4096, 1024);
+
+        cache.put("tile", new byte[]{1}, LATER);
+        cache.put("tile", new byte[]{2}, LATER);
+
+        assertArrayEquals(new byte[]{2}, cache.get("tile").value());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void put_expiredValue_isNotReturned() throws Exception {
+        DiskCache cache = open(4096, 1024);
+
+        cache.put("tile", new byte[]{1}, NOW);
+
+        assertNull(cache.get("tile"));
+    }
+
+    @Test
+    void put_valueBiggerThanSegment_isNotStored() throws Exception {
+        DiskCache cache = open(4096, 1024);
+
+        cache.put("tile", new byte[2000], LATER);
+
+        assertNull(cache.get("tile"));
+    }
+
+    @Test
+    void put_keyWithCredentials_isNotWrittenInPlainText() throws Exception {
+        DiskCache cache = open(4096, 1024);
+        String key = "GET https://radar.example.com/tile.png?apikey=secret-token";
+
+        cache.put(key, new byte[]{1}, LATER);
+        cache.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+                assertFalse(content.contains("secret-token"));
+                assertFalse(content.contains("radar.example.com"));
+            }
+        }
+        assertArrayEquals(new byte[]{1}, open(4096, 1024).get(key).value());
+    }
+
+    // ── budget ──
+
+    @Test
+    void put_overBudget_dropsOldestSegment() throws Exception {
+        DiskCache cache = open(2048, 1024);
+
+        // four records fill a segment, twelve records need three segments
+        for (int i = 0; i < 12; i++) {
+            cache.put("tile" + i, new byte[200], LATER);
+        }
+
+        assertEquals(2, cache.getSegmentCount());
+        assertEquals(2, countSegmentFiles());
+        assertNull(cache.get("tile0"));
+        assertNotNull(cache.get("tile11"));
+    }
+
+    @Test
+    void put_manySegmentsDropped_newestStayReadable() throws Exception {
+        DiskCache cache = open(2048, 1024);
+
+        // the dropped segments are truncated while their buffers are still mapped
+        for (int i = 0; i < 100; i++) {
+            cache.put("tile" + i, new byte[]{(byte) i}, LATER);
+        }
+
+        assertEquals(2, countSegmentFiles());
+        assertArrayEquals(new byte[]{99}, cache.get("tile99").value());
+    }
+
+    @Test
+    void constructor_budgetSmallerThanSegment_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> open(512, 1024));
+    }
+
+    // ── reload ──
+
+    @Test
+    void reopen_restoresStoredValues() throws Exception {
+        DiskCache cache = open(4096, 1024);
+        cache.put("tile1", new byte[]{1, 2}, LATER);
+        cache.put("tile2", new byte[]{3}, LATER);
+        cache.close();
+
+        DiskCache reopened = open(4096, 1024);
+
+        assertEquals(2, reopened.size());
+        assertArrayEquals(new byte[]{1, 2}, reopened.get("tile1").value());
+        assertEquals(LATER, reopened.get("tile2").expiresAt());
+    }
+
+    @Test
+    void reopen_invalidatedValue_staysRemoved() throws Exception {
+        DiskCache cache = open(4096, 1024);
+        cache.put("tile", new byte[]{1}, LATER);
+        cache.invalidate("tile");
+        cache.close();
+
+        DiskCache reopened = open(4096, 1024);
+
+        assertNull(reopened.get("tile"));
+    }
+
+    @Test
+    void reopen_appendsAfterExistingRecords() throws Exception {
+        DiskCache cache = open(4096, 1024);
+        cache.put("tile1", new byte[]{1}, LATER);
+        cache.close();
+
+        DiskCache reopened = open(4096, 1024);
+        reopened.put("tile2", new byte[]{2}, LATER);
+        reopened.close();
+
+        DiskCache again = open(4096, 1024);
+        assertArrayEquals(new byte[]{1}, again.get("tile1").value());
+        assertArrayEquals(new byte[]{2}, again.get("tile2").value());
+    }
+
+    @Test
+    void reopen_lowerBudget_dropsOldestSegments() throws Exception {
+        DiskCache cache = open(4096, 1024);
+        for (int i = 0; i < 12; i++) {
+            cache.put("tile" + i, new byte[200], LATER);
+        }
+        cache.close();
+
+        DiskCache reopened = open(1024, 1024);
+
+        assertEquals(1, reopened.getSegmentCount());
+        assertNull(reopened.get("tile0"));
+        assertNotNull(reopened.get("tile11"));
+    }
+}
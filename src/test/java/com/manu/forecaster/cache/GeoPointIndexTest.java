@@ -0,0 +1,105 @@
+package com.manu.forecaster.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoPointIndexTest {
+
+    // ── findNearest ──
+
+    @Test
+    void findNearest_emptyIndex_returnsNull() {
+        GeoPointIndex<String> index = new GeoPointIndex<>(1000);
+
+        assertNull(index.findNearest(45.4642, 9.19));
+    }
+
+    @Test
+    void findNearest_pointWithinRadius_returnsItsValue() {
+        GeoPointIndex<String> index = new GeoPointIndex<>(1000);
+        index.put(45.4642, 9.19, "milan");
+
+        // ~500m north
+        assertEquals("milan", index.findNearest(45.4687, 9.19));
+    }
+
+    @Test
+    void findNearest_pointOutsideRadius_returnsNull() {
+        GeoPointIndex<String> index = new GeoPointIndex<>(1000);
+        index.put(45.4642, 9.19, "milan");
+
+        // ~2km east
+        assertNull(index.findNearest(45.4642, 9.2156));
+    }
+
+    @Test
+    void findNearest_manyPointsWithinRadius_returnsTheNearest() {
+        GeoPointIndex<String> index = new GeoPointIndex<>(1000);
+        index.put(45.4642, 9.19, "center");
+        index.put(45.4700, 9.19, "north");
+
+        assertEquals("north", index.findNearest(45.4690, 9.19));
+        assertEquals("center", index.findNearest(45.4650, 9.19));
+    }
+
+    @Test
+    void findNearest_pointOnNeighbourCell_returnsItsValue() {
+        GeoPointIndex<String> index = new GeoPointIndex<>(1000);
+        index.put(45.0, 9.0, "west");
+
+        // the cells are as big as the radius, ~800m east and north lands on another cell
+        assertEquals("west", index.findNearest(45.005, 9.007));
+    }
+
+    @Test
+    void findNearest_highLatitude_searchesTheNarrowerCells() {
+        GeoPointIndex<String> index = new GeoPointIndex<>(1000);
+        index.put(78.22, 15.60, "longyearbyen");
+
+        // ~900m east, at this latitude it spans several cells of longitude
+        assertEquals("longyearbyen", index.findNearest(78.22, 15.64));
+    }
+
+    @Test
+    void findNearest_acrossTheAntimeridian_returnsItsValue() {
+        GeoPointIndex<String> index = new GeoPointIndex<>(1000);
+        index.put(-16.5, 179.999, "east");
+
+        assertEquals("east", index.findNearest(-16.5, -179.999));
+    }
+
+    @Test
+    void findNearest_zeroRadius_matchesOnlyTheSamePoint() {
+        GeoPointIndex<String> index = new GeoPointIndex<>(0);
+        index.put(45.4642, 9.19, "milan");
+
+        assertEquals("milan", index.findNearest(45.4642, 9.19));
+        assertNull(index.findNearest(45.4643, 9.19));
+    }
+
+    // ── put ──
+
+    @Test
+    void put_samePoint_replacesTheValue() {
+        GeoPointIndex<String> index = new GeoPointIndex<>(1000);
+        index.put(45.4642, 9.19, "old");
+        index.put(45.4642, 9.19, "new");
+
+        assertEquals("new", index.findNearest(45.4642, 9.19));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void constructor_negativeRadius_throws() {
+        assertThrows(IllegalArgumentException.class, () -> new GeoPointIndex<String>(-1));
+        assertThrows(IllegalArgumentException.class, () -> new GeoPointIndex<String>(Double.NaN));
+    }
+
+    // ── distanceMeters ──
+
+    @Test
+    void distanceMeters_oneDegreeOfLatitude_isAbout111Km() {
+        assertEquals(111_195, GeoPointIndex.distanceMeters(45, 9, 46, 9), 10);
+    }
+}
@@ -0,0 +1,88 @@
+package com.manu.forecaster.cache;
+
+import com.manu.forecaster.exception.RestException;
+import com.manu.forecaster.utils.FutureUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Test
+    void execute_singleCaller_returnsResult() throws Exception {
+        assertEquals("result", singleFlight.execute("key", () -> "result"));
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void execute_concurrentCallersSameKey_runsCallOnce() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 20;
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            futures.add(FutureUtils.supplyAsync(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                // keep the flight open until every caller had the chance to join it
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                return "result";
+            }), executor));
+        }
+
+        // wait for the leader to start, then give the other callers time to join
+        while (calls.get() == 0) {
+            Thread.onSpinWait();
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        for (var future : futures) {
+            assertEquals("result", FutureUtils.join(future));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void execute_differentKeys_runsEveryCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute("key1", () -> String.valueOf(calls.incrementAndGet()));
+        singleFlight.execute("key2", () -> String.valueOf(calls.incrementAndGet()));
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void execute_callFails_propagatesAndAllowsRetry() throws Exception {
+        assertThrows(IOException.class, () -> singleFlight.execute("key", () -> {
+            throw new IOException("connection failed");
+        }));
+        assertThrows(RestException.class, () -> singleFlight.execute("key", () -> {
+            throw new RestException("bad response");
+        }));
+
+        // a failed flight is not remembered
+        assertEquals("result", singleFlight.execute("key", () -> "result"));
+    }
+}
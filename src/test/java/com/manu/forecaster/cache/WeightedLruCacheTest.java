@@ -0,0 +1,109 @@
+package com.manu.forecaster.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedLruCacheTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-08T12:00:00Z");
+
+    private static class MutableClock extends Clock {
+        private Instant instant = NOW;
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+    private final MutableClock clock = new MutableClock();
+    private final WeightedLruCache<String, byte[]> cache = new WeightedLruCache<>(10, bytes -> bytes.length, clock);
+
+    @Test
+    void get_missingKey_returnsNull() {
+        assertNull(cache.get("missing"));
+    }
+
+    @Test
+    void put_thenGet_returnsValueAndTracksWeight() {
+        byte[] value = new byte[4];
+        cache.put("a", value, NOW.plusSeconds(60));
+
+        assertSame(value, cache.get("a"));
+        assertEquals(4, cache.getWeight());
+    }
+
+    @Test
+    void put_overBudget_evictsLeastRecentlyUsed() {
+        cache.put("a", new byte[4], NOW.plusSeconds(60));
+        cache.put("b", new byte[4], NOW.plusSeconds(60));
+        // touch "a" so that "b" becomes the least recently used
+        cache.get("a");
+        cache.put("c", new byte[4], NOW.plusSeconds(60));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(8, cache.getWeight());
+    }
+
+    @Test
+    void put_valueBiggerThanBudget_isNotCached() {
+        cache.put("a", new byte[4], NOW.plusSeconds(60));
+        cache.put("huge", new byte[11], NOW.plusSeconds(60));
+
+        assertNull(cache.get("huge"));
+        assertNotNull(cache.get("a"));
+    }
+
+    @Test
+    void put_sameKey_replacesWeight() {
+        cache.put("a", new byte[4], NOW.plusSeconds(60));
+        cache.put("a", new byte[2], NOW.plusSeconds(60));
+
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getWeight());
+    }
+
+    @Test
+    void get_afterExpiration_returnsNullAndReleasesWeight() {
+        cache.put("a", new byte[4], NOW.plusSeconds(60));
+
+        clock.advance(Duration.ofSeconds(60));
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    void invalidateAll_emptiesCache() {
+        cache.put("a", new byte[4], NOW.plusSeconds(60));
+        cache.put("b", new byte[4], NOW.plusSeconds(60));
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+}
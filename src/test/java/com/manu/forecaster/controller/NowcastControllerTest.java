@@ -1,11 +1,17 @@
 package com.manu.forecaster.controller;
 
 import com.manu.forecaster.dto.nowcast.*;
+import com.manu.forecaster.exception.GeneralDataException;
 import com.manu.forecaster.service.NowcastService;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -58,15 +64,30 @@ class NowcastControllerTest {
     }
 
     @Test
-    void radarImage_delegatesToServiceAndReturns200() {
-        byte[] imageBytes = new byte[]{1, 2, 3};
-        when(nowcastService.getImage("45.0", "9.0", "radar1")).thenReturn(imageBytes);
-
-        ResponseEntity<?> response = controller.radarImage("45.0", "9.0", "radar1");
+    void radarImage_delegatesToServiceAndReturns200() throws IOException {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        when(nowcastService.getNowcastImage("45.0", "9.0", "radar1")).thenReturn(image);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(new byte[]{1, 2, 3});
+            return null;
+        }).when(nowcastService).writeImage(eq(image), any(OutputStream.class));
+
+        ResponseEntity<StreamingResponseBody> response = controller.radarImage("45.0", "9.0", "radar1");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertSame(imageBytes, response.getBody());
-        verify(nowcastService).getImage("45.0", "9.0", "radar1");
+        assertArrayEquals(new byte[]{1, 2, 3}, outputStream.toByteArray());
+        verify(nowcastService).getNowcastImage("45.0", "9.0", "radar1");
+    }
+
+    @Test
+    void radarImage_renderFails_throwsBeforeStreaming() throws IOException {
+        when(nowcastService.getNowcastImage("45.0", "9.0", "radar1"))
+                .thenThrow(new GeneralDataException(HttpStatus.EXPECTATION_FAILED, "radar down"));
+
+        assertThrows(GeneralDataException.class, () -> controller.radarImage("45.0", "9.0", "radar1"));
+        verify(nowcastService, never()).writeImage(any(), any());
     }
 
     @Test
@@ -79,4 +100,20 @@ class NowcastControllerTest {
         assertEquals(200, response.getStatusCode().value());
         verify(nowcastService).getNowcastsRaw("-33.87", "151.21");
     }
+
+    @Test
+    void batchWeatherMatch_delegatesToServiceAndReturns200() {
+        BatchNowcastRequest request = BatchNowcastRequest.builder()
+                .points(List.of())
+                .weatherTypes(List.of("rain"))
+                .build();
+        BatchWeatherMatchedNowcast expected = BatchWeatherMatchedNowcast.builder().results(List.of()).build();
+        when(nowcastService.getNowcastsMatchBatch(request)).thenReturn(expected);
+
+        ResponseEntity<BatchWeatherMatchedNowcast> response = controller.batchWeatherMatch(request);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertSame(expected, response.getBody());
+        verify(nowcastService).getNowcastsMatchBatch(request);
+    }
 }
@@ -0,0 +1,49 @@
+package com.manu.forecaster.image;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColorClassMapTest {
+
+    @Test
+    void get_storedColor_returnsClass() {
+        ColorClassMap map = new ColorClassMap(2);
+        map.putIfAbsent(0xFFFF0000, 1);
+        map.putIfAbsent(0xFF0000FF, 255);
+
+        assertEquals(1, map.get(0xFFFF0000));
+        assertEquals(255, map.get(0xFF0000FF));
+    }
+
+    @Test
+    void get_missingColor_returnsZero() {
+        ColorClassMap map = new ColorClassMap(1);
+        map.putIfAbsent(0xFFFF0000, 1);
+
+        assertEquals(0, map.get(0xFF00FF00));
+        assertEquals(0, map.get(0));
+    }
+
+    @Test
+    void putIfAbsent_existingColor_keepsFirstClass() {
+        ColorClassMap map = new ColorClassMap(2);
+        map.putIfAbsent(0xFFFF0000, 1);
+        map.putIfAbsent(0xFFFF0000, 2);
+
+        assertEquals(1, map.get(0xFFFF0000));
+    }
+
+    @Test
+    void get_manyCollidingColors_allRetrievable() {
+        ColorClassMap map = new ColorClassMap(200);
+        for (int i = 0; i < 200; i++) {
+            // colors differing only in the high bits
+            map.putIfAbsent(i << 24, i % 255 + 1);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i % 255 + 1, map.get(i << 24));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.manu.forecaster.image;
+
+import com.manu.forecaster.exception.ConfigurationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledLegendTest {
+
+    @Test
+    void classify_legendColor_returnsItsClass() {
+        Map<String, String> legend = new LinkedHashMap<>();
+        legend.put("#FF0000", "rain-1");
+        legend.put("#0000FF", "snow-1");
+
+        CompiledLegend compiledLegend = new CompiledLegend(legend);
+
+        int rainClass = compiledLegend.classify(0xFFFF0000);
+        int snowClass = compiledLegend.classify(0xFF0000FF);
+        assertNotEquals(CompiledLegend.NO_MATCH, rainClass);
+        assertNotEquals(CompiledLegend.NO_MATCH, snowClass);
+        assertEquals("rain-1", compiledLegend.getName(rainClass));
+        assertEquals("snow-1", compiledLegend.getName(snowClass));
+    }
+
+    @Test
+    void classify_unknownColor_returnsNoMatch() {
+        CompiledLegend compiledLegend = new CompiledLegend(Map.of("#FF0000", "rain-1"));
+
+        assertEquals(CompiledLegend.NO_MATCH, compiledLegend.classify(0xFF00FF00));
+        // same color, but transparent, is not a legend color
+        assertEquals(CompiledLegend.NO_MATCH, compiledLegend.classify(0x00FF0000));
+    }
+
+    @Test
+    void getClassCount_returnsLegendSize() {
+        CompiledLegend compiledLegend = new CompiledLegend(Map.of("#FF0000", "rain-1", "#0000FF", "snow-1"));
+
+        assertEquals(2, compiledLegend.getClassCount());
+    }
+
+    @Test
+    void classify_colorsSharingWeatherName_shareTheClass() {
+        Map<String, String> legend = new LinkedHashMap<>();
+        legend.put("#FF0000", "rain");
+        legend.put("#0000FF", "snow");
+        legend.put("#00FF00", "rain");
+
+        CompiledLegend compiledLegend = new CompiledLegend(legend);
+
+        assertEquals(2, compiledLegend.getClassCount());
+        assertEquals(compiledLegend.classify(0xFFFF0000), compiledLegend.classify(0xFF00FF00));
+        assertNotEquals(compiledLegend.classify(0xFFFF0000), compiledLegend.classify(0xFF0000FF));
+    }
+
+    @Test
+    void constructor_manyColorsFewNames_isValid() {
+        Map<String, String> legend = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            legend.put(String.format("#%06X", i), i % 2 == 0 ? "rain" : "snow");
+        }
+
+        CompiledLegend compiledLegend = new CompiledLegend(legend);
+
+        assertEquals(2, compiledLegend.getClassCount());
+        assertEquals("rain", compiledLegend.getName(compiledLegend.classify(0xFF000000 | 998)));
+        assertEquals("snow", compiledLegend.getName(compiledLegend.classify(0xFF000000 | 999)));
+    }
+
+    @Test
+    void constructor_tooManyWeatherNames_throwsConfigurationException() {
+        Map<String, String> legend = new HashMap<>();
+        for (int i = 0; i < 256; i++) {
+            legend.put(String.format("#%06X", i), "rain-" + i);
+        }
+
+        assertThrows(ConfigurationException.class, () -> new CompiledLegend(legend));
+    }
+
+    @Test
+    void classifyPalette_classifiesEveryEntry() {
+        CompiledLegend legend = new CompiledLegend(Map.of("#FF0000", "rain", "#00FF00", "snow"));
+
+        byte[] paletteClasses = legend.classifyPalette(new int[]{0xFF00FF00, 0xFF123456, 0xFFFF0000});
+
+        assertEquals(legend.classify(0xFF00FF00), paletteClasses[0]);
+        assertEquals(CompiledLegend.NO_MATCH, paletteClasses[1]);
+        assertEquals(legend.classify(0xFFFF0000), paletteClasses[2]);
+    }
+}
@@ -0,0 +1,89 @@
+package com.manu.forecaster.image;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LegendRasterTest {
+
+    private static byte[] createClasses(int width, int height, int legendClass, int startX, int endX) {
+        byte[] classes = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = startX; x < endX; x++) {
+                classes[y * width + x] = (byte) legendClass;
+            }
+        }
+        return classes;
+    }
+
+    // ── of ──
+
+    @Test
+    void of_mostlyClearTile_isRunLengthEncoded() {
+        byte[] classes = createClasses(100, 100, 1, 10, 20);
+
+        LegendRaster raster = LegendRaster.of(classes, 100, 100);
+
+        assertInstanceOf(RunLengthLegendRaster.class, raster);
+        assertTrue(raster.getSizeInBytes() < 100 * 100);
+    }
+
+    @Test
+    void of_noisyTile_isDense() {
+        byte[] classes = new byte[100 * 100];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = (byte) (i % 3);
+        }
+
+        LegendRaster raster = LegendRaster.of(classes, 100, 100);
+
+        assertInstanceOf(DenseLegendRaster.class, raster);
+        assertEquals(100 * 100, raster.getSizeInBytes());
+    }
+
+    // ── classAt ──
+
+    @Test
+    void classAt_bothRepresentations_returnSameClasses() {
+        byte[] classes = createClasses(50, 50, 200, 10, 20);
+        LegendRaster dense = new DenseLegendRaster(classes, 50, 50);
+        LegendRaster runLength = RunLengthLegendRaster.encode(classes, 50, 50, 50);
+
+        for (int y = 0; y < 50; y++) {
+            for (int x = 0; x < 50; x++) {
+                assertEquals(dense.classAt(x, y), runLength.classAt(x, y));
+            }
+        }
+        // classes above 127 must not come back as negative bytes
+        assertEquals(200, runLength.classAt(15, 15));
+        assertEquals(CompiledLegend.NO_MATCH, runLength.classAt(25, 15));
+    }
+
+    @Test
+    void classAt_outsideRaster_throws() {
+        LegendRaster raster = LegendRaster.of(new byte[4], 2, 2);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> raster.classAt(2, 0));
+    }
+
+    // ── countClasses ──
+
+    @Test
+    void countClasses_bothRepresentations_returnSameCounts() {
+        byte[] classes = createClasses(50, 50, 1, 10, 20);
+        classes[30 * 50 + 15] = 2;
+        LegendRaster dense = new DenseLegendRaster(classes, 50, 50);
+        LegendRaster runLength = RunLengthLegendRaster.encode(classes, 50, 50, 52);
+
+        int[] denseCounts = new int[3];
+        int[] runLengthCounts = new int[3];
+        dense.countClasses(5, 5, 16, 40, denseCounts);
+        runLength.countClasses(5, 5, 16, 40, runLengthCounts);
+
+        assertArrayEquals(denseCounts, runLengthCounts);
+        // 6 columns of class 1 over 35 rows, minus the single class 2 pixel
+        assertEquals(6 * 35 - 1, denseCounts[1]);
+        assertEquals(1, denseCounts[2]);
+        assertEquals(11 * 35 - 6 * 35, denseCounts[CompiledLegend.NO_MATCH]);
+    }
+}
@@ -0,0 +1,78 @@
+package com.manu.forecaster.image;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteQuantizerTest {
+
+    @Test
+    void quantize_fewColors_keepsEveryColor() {
+        int[] argb = {0xFFFF0000, 0xFF00FF00, 0xFFFF0000, 0x00000000, 0xFF00FF00};
+
+        PaletteQuantizer.Quantized quantized = PaletteQuantizer.quantize(argb, 256);
+
+        assertEquals(3, quantized.palette().length);
+        for (int i = 0; i < argb.length; i++) {
+            assertEquals(argb[i], quantized.palette()[quantized.indexes()[i] & 0xFF]);
+        }
+    }
+
+    @Test
+    void quantize_repeatedColors_countsEveryPixel() {
+        // runs and scattered repeats of 200 colors, the palette keeps them all and stays sorted
+        int[] argb = new int[5000];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = i < 2500 ? 0xFF000000 | (i / 25) * 0x010305 : 0x80000000 | (i * 7919 % 100) * 0x030201;
+        }
+
+        PaletteQuantizer.Quantized quantized = PaletteQuantizer.quantize(argb, 256);
+
+        assertEquals(200, quantized.palette().length);
+        for (int i = 1; i < quantized.palette().length; i++) {
+            assertTrue(quantized.palette()[i - 1] < quantized.palette()[i]);
+        }
+        for (int i = 0; i < argb.length; i++) {
+            assertEquals(argb[i], quantized.palette()[quantized.indexes()[i] & 0xFF]);
+        }
+    }
+
+    @Test
+    void quantize_moreColorsThanPalette_limitsPaletteSize() {
+        int[] argb = new int[1024];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = 0xFF000000 | i * 0x010203;
+        }
+
+        PaletteQuantizer.Quantized quantized = PaletteQuantizer.quantize(argb, 16);
+
+        assertEquals(16, quantized.palette().length);
+        assertEquals(argb.length, quantized.indexes().length);
+        for (byte index : quantized.indexes()) {
+            assertTrue((index & 0xFF) < 16);
+        }
+    }
+
+    @Test
+    void quantize_twoClusters_splitsBetweenThem() {
+        // dark and bright pixels with small variations, two entries must separate them
+        int[] argb = new int[200];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = i < 100 ? 0xFF000000 | i % 5 : 0xFFFFFFF0 | i % 5;
+        }
+
+        PaletteQuantizer.Quantized quantized = PaletteQuantizer.quantize(argb, 2);
+
+        int dark = quantized.indexes()[0] & 0xFF;
+        int bright = quantized.indexes()[199] & 0xFF;
+        assertNotEquals(dark, bright);
+        assertEquals(0xFF000002, quantized.palette()[dark]);
+        assertTrue((quantized.palette()[bright] & 0xFF) >= 0xF0);
+    }
+
+    @Test
+    void quantize_invalidPaletteSize_throws() {
+        assertThrows(IllegalArgumentException.class, () -> PaletteQuantizer.quantize(new int[1], 0));
+        assertThrows(IllegalArgumentException.class, () -> PaletteQuantizer.quantize(new int[1], 257));
+    }
+}
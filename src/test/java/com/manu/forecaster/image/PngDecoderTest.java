@@ -0,0 +1,259 @@
+package com.manu.forecaster.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PngDecoderTest {
+
+    private static final byte[] RED = {0, (byte) 255, 0, 0};
+    private static final byte[] GREEN = {0, 0, (byte) 255, 0};
+    private static final byte[] BLUE = {0, 0, 0, (byte) 255};
+    private static final byte[] ALPHA = {0, (byte) 255, (byte) 128, (byte) 255};
+
+    private static byte[] toPng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static BufferedImage fillNoisy(BufferedImage image) {
+        // mix of gradients and noise, so that the encoder picks every filter type
+        Random random = new Random(42);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int argb = x * y % 7 == 0 ? random.nextInt() : 0xC0000000 | (x * 3) << 16 | (y * 2) << 8 | (x + y);
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+
+    private static void assertSameAsImageIO(byte[] png) throws IOException {
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(png));
+        PngDecoder decoder = PngDecoder.open(png);
+
+        assertNotNull(decoder);
+        assertEquals(expected.getWidth(), decoder.getWidth());
+        assertEquals(expected.getHeight(), decoder.getHeight());
+
+        int[] decodedRows = {0};
+        decoder.decode((y, argb) -> {
+            int[] expectedRow = expected.getRGB(0, y, expected.getWidth(), 1, null, 0, expected.getWidth());
+            assertArrayEquals(expectedRow, Arrays.copyOf(argb, expected.getWidth()), "row " + y);
+            decodedRows[0]++;
+        });
+        assertEquals(expected.getHeight(), decodedRows[0]);
+    }
+
+    // ── supported flavours ──
+
+    @Test
+    void decode_rgba_sameAsImageIO() throws IOException {
+        assertSameAsImageIO(toPng(fillNoisy(new BufferedImage(67, 45, BufferedImage.TYPE_INT_ARGB))));
+    }
+
+    @Test
+    void decode_rgb_sameAsImageIO() throws IOException {
+        assertSameAsImageIO(toPng(fillNoisy(new BufferedImage(67, 45, BufferedImage.TYPE_INT_RGB))));
+    }
+
+    @Test
+    void decode_palette_sameAsImageIO() throws IOException {
+        assertSameAsImageIO(toPng(fillNoisy(new BufferedImage(67, 45, BufferedImage.TYPE_BYTE_INDEXED))));
+    }
+
+    @Test
+    void decode_paletteWithTransparency_sameAsImageIO() throws IOException {
+        IndexColorModel colorModel = new IndexColorModel(8, 4, RED, GREEN, BLUE, ALPHA);
+        BufferedImage image = new BufferedImage(30, 20, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 30; x++) {
+                image.getRaster().setSample(x, y, 0, (x + y) % 4);
+            }
+        }
+
+        assertSameAsImageIO(toPng(image));
+    }
+
+    @Test
+    void decode_narrowAfterWide_reusedBuffersSameAsImageIO() throws IOException {
+        // the narrow decodes get the longer pooled rows of the wide one, with its last rows still in them
+        assertSameAsImageIO(toPng(fillNoisy(new BufferedImage(300, 45, BufferedImage.TYPE_INT_ARGB))));
+        assertSameAsImageIO(toPng(fillNoisy(new BufferedImage(67, 45, BufferedImage.TYPE_INT_ARGB))));
+        assertSameAsImageIO(toPng(fillNoisy(new BufferedImage(41, 30, BufferedImage.TYPE_INT_RGB))));
+    }
+
+    // ── decodeRows ──
+
+    @Test
+    void decodeRows_window_handsOnlyWindowRows() throws IOException {
+        byte[] png = toPng(fillNoisy(new BufferedImage(67, 45, BufferedImage.TYPE_INT_ARGB)));
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(png));
+        List<Integer> rows = new ArrayList<>();
+
+        PngDecoder.open(png).decodeRows(10, 20, (y, argb) -> {
+            rows.add(y);
+            assertArrayEquals(expected.getRGB(0, y, 67, 1, null, 0, 67), Arrays.copyOf(argb, 67));
+        });
+
+        assertEquals(List.of(10, 11, 12, 13, 14, 15, 16, 17, 18, 19), rows);
+    }
+
+    @Test
+    void decodeRows_endAfterHeight_isClamped() throws IOException {
+        byte[] png = toPng(fillNoisy(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB)));
+        List<Integer> rows = new ArrayList<>();
+
+        PngDecoder.open(png).decodeRows(8, 100, (y, argb) -> rows.add(y));
+
+        assertEquals(List.of(8, 9), rows);
+    }
+
+    @Test
+    void decodeRows_stopsInflatingAfterWindow() throws IOException {
+        BufferedImage image = fillNoisy(new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB));
+        byte[] png = toPng(image);
+        // keep the whole header, so that the missing data is found only while inflating
+        byte[] truncated = Arrays.copyOf(png, png.length - png.length / 3);
+        int[] decodedRows = {0};
+
+        PngDecoder.open(withEnd(truncated)).decodeRows(0, 5, (y, argb) -> decodedRows[0]++);
+
+        assertEquals(5, decodedRows[0]);
+        // the rows after the window are really missing
+        assertThrows(IOException.class, () -> PngDecoder.open(withEnd(truncated)).decode((y, argb) -> {
+        }));
+    }
+
+    /**
+     * Cuts the last IDAT chunk at the end of the bytes and appends an IEND, simulating a stream with missing rows
+     */
+    private static byte[] withEnd(byte[] truncated) {
+        // find the last IDAT chunk and fix its length to what's left
+        int lastChunk = -1;
+        for (int i = 8; i + 8 <= truncated.length; ) {
+            int length = (truncated[i] & 0xFF) << 24 | (truncated[i + 1] & 0xFF) << 16 | (truncated[i + 2] & 0xFF) << 8 | truncated[i + 3] & 0xFF;
+            lastChunk = i;
+            i += 12 + length;
+        }
+        int available = truncated.length - lastChunk - 8;
+        byte[] fixed = Arrays.copyOf(truncated, truncated.length + 4 + 12);
+        fixed[lastChunk] = (byte) (available >>> 24);
+        fixed[lastChunk + 1] = (byte) (available >>> 16);
+        fixed[lastChunk + 2] = (byte) (available >>> 8);
+        fixed[lastChunk + 3] = (byte) available;
+        // crc of the cut chunk, then an empty IEND chunk
+        int end = truncated.length + 4;
+        fixed[end + 4] = 'I';
+        fixed[end + 5] = 'E';
+        fixed[end + 6] = 'N';
+        fixed[end + 7] = 'D';
+        return fixed;
+    }
+
+    // ── palette indexes ──
+
+    @Test
+    void decodeIndexRows_palette_handsRawIndexes() throws IOException {
+        IndexColorModel colorModel = new IndexColorModel(8, 4, RED, GREEN, BLUE, ALPHA);
+        BufferedImage image = new BufferedImage(30, 20, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 30; x++) {
+                image.getRaster().setSample(x, y, 0, (x + y) % 4);
+            }
+        }
+        PngDecoder decoder = PngDecoder.open(toPng(image));
+        int[] palette = decoder.getPalette();
+
+        // the writer may reorder the palette entries, the indexes must point to the same colors
+        assertTrue(decoder.isIndexed());
+        int[] decodedRows = {0};
+        decoder.decodeIndexRows(0, 20, (y, indexes, offset) -> {
+            for (int x = 0; x < 30; x++) {
+                assertEquals(colorModel.getRGB((x + y) % 4), palette[indexes[offset + x] & 0xFF]);
+            }
+            decodedRows[0]++;
+        });
+        assertEquals(20, decodedRows[0]);
+    }
+
+    @Test
+    void getPalette_appliesTransparency() throws IOException {
+        IndexColorModel colorModel = new IndexColorModel(8, 4, RED, GREEN, BLUE, ALPHA);
+        BufferedImage image = new BufferedImage(4, 1, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+        for (int x = 0; x < 4; x++) {
+            image.getRaster().setSample(x, 0, 0, x);
+        }
+
+        PngDecoder decoder = PngDecoder.open(toPng(image));
+        int[] palette = decoder.getPalette();
+
+        // the writer may reorder the palette entries, so they are looked up through the pixel indexes
+        int[] colors = new int[4];
+        decoder.decodeIndexRows(0, 1, (y, indexes, offset) -> {
+            for (int x = 0; x < 4; x++) {
+                colors[x] = palette[indexes[offset + x] & 0xFF];
+            }
+        });
+        assertEquals(0x00000000, colors[0]);
+        assertEquals(0xFFFF0000, colors[1]);
+        assertEquals(0x8000FF00, colors[2]);
+        assertEquals(0xFF0000FF, colors[3]);
+    }
+
+    @Test
+    void decodeIndexRows_notPalette_throwsIllegalStateException() throws IOException {
+        PngDecoder decoder = PngDecoder.open(toPng(new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB)));
+
+        assertFalse(decoder.isIndexed());
+        assertNull(decoder.getPalette());
+        assertThrows(IllegalStateException.class, () -> decoder.decodeIndexRows(0, 4, (y, indexes, offset) -> {
+        }));
+    }
+
+    // ── unsupported flavours ──
+
+    @Test
+    void open_lowBitDepthPalette_returnsNull() throws IOException {
+        IndexColorModel colorModel = new IndexColorModel(2, 4, RED, GREEN, BLUE, ALPHA);
+        BufferedImage image = new BufferedImage(30, 20, BufferedImage.TYPE_BYTE_BINARY, colorModel);
+
+        assertNull(PngDecoder.open(toPng(image)));
+    }
+
+    @Test
+    void open_grayscale_returnsNull() throws IOException {
+        assertNull(PngDecoder.open(toPng(new BufferedImage(30, 20, BufferedImage.TYPE_BYTE_GRAY))));
+    }
+
+    @Test
+    void open_notPng_returnsNull() throws IOException {
+        assertNull(PngDecoder.open("<html>not found</html>".getBytes()));
+    }
+
+    // ── malformed data ──
+
+    @Test
+    void decode_truncatedData_throwsIOException() throws IOException {
+        byte[] png = toPng(fillNoisy(new BufferedImage(67, 45, BufferedImage.TYPE_INT_ARGB)));
+        byte[] truncated = Arrays.copyOf(png, png.length / 2);
+
+        assertThrows(IOException.class, () -> {
+            PngDecoder decoder = PngDecoder.open(truncated);
+            decoder.decode((y, argb) -> {
+            });
+        });
+    }
+}
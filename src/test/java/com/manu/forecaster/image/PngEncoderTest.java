@@ -0,0 +1,209 @@
+package com.manu.forecaster.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PngEncoderTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    private static int[] gradient(int alpha) {
+        // mix of gradients and noise, so that every filter type gets picked
+        Random random = new Random(42);
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int rgb = x * y % 7 == 0 ? random.nextInt() & 0xFFFFFF : (x * 3) << 16 | (y * 2) << 8 | (x + y);
+                argb[y * WIDTH + x] = alpha << 24 | rgb;
+            }
+        }
+        return argb;
+    }
+
+    private static int[] fewColors() {
+        int[] colors = {0xFFFF0000, 0xFF00FF00, 0x800000FF, 0x00000000, 0xFFFFFFFF};
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = colors[(i / 5 + i / WIDTH) % colors.length];
+        }
+        return argb;
+    }
+
+    private static BufferedImage read(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull(image);
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+        return image;
+    }
+
+    private static void assertSamePixels(int[] expected, BufferedImage image) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int expectedColor = expected[y * WIDTH + x];
+                int actualColor = image.getRGB(x, y);
+                // the color of fully transparent pixels doesn't matter
+                if (expectedColor >>> 24 != 0 || actualColor >>> 24 != 0) {
+                    assertEquals(expectedColor, actualColor, "pixel " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    // ── truecolor ──
+
+    @Test
+    void encode_truecolorOpaque_losslessWithoutAlpha() throws IOException {
+        int[] argb = gradient(0xFF);
+
+        BufferedImage image = read(new PngEncoder(6, false).encode(argb, WIDTH, HEIGHT));
+
+        assertFalse(image.getColorModel().hasAlpha());
+        assertSamePixels(argb, image);
+    }
+
+    @Test
+    void encode_truecolorTranslucent_losslessWithAlpha() throws IOException {
+        int[] argb = gradient(0x80);
+
+        BufferedImage image = read(new PngEncoder(6, false).encode(argb, WIDTH, HEIGHT));
+
+        assertTrue(image.getColorModel().hasAlpha());
+        assertSamePixels(argb, image);
+    }
+
+    @Test
+    void encode_everyCompressionLevel_decodable() throws IOException {
+        int[] argb = gradient(0xFF);
+
+        for (int level = 0; level <= 9; level++) {
+            assertSamePixels(argb, read(new PngEncoder(level, false).encode(argb, WIDTH, HEIGHT)));
+        }
+    }
+
+    @Test
+    void encode_higherCompressionLevel_notBigger() {
+        int[] argb = gradient(0xFF);
+
+        byte[] fastest = new PngEncoder(1, false).encode(argb, WIDTH, HEIGHT);
+        byte[] smallest = new PngEncoder(9, false).encode(argb, WIDTH, HEIGHT);
+
+        assertTrue(smallest.length <= fastest.length);
+    }
+
+    // ── palette ──
+
+    @Test
+    void encode_paletteFewColors_lossless() throws IOException {
+        int[] argb = fewColors();
+
+        BufferedImage image = read(new PngEncoder(6, true).encode(argb, WIDTH, HEIGHT));
+
+        assertInstanceOf(IndexColorModel.class, image.getColorModel());
+        assertSamePixels(argb, image);
+    }
+
+    @Test
+    void encode_paletteFewColors_sameAsDecoder() throws IOException {
+        byte[] png = new PngEncoder(6, true).encode(fewColors(), WIDTH, HEIGHT);
+        BufferedImage expected = read(png);
+        PngDecoder decoder = PngDecoder.open(png);
+
+        assertNotNull(decoder);
+        assertTrue(decoder.isIndexed());
+        decoder.decode((y, argb) -> {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(expected.getRGB(x, y), argb[x]);
+            }
+        });
+    }
+
+    @Test
+    void encode_paletteManyColors_approximatesPixels() throws IOException {
+        int[] argb = gradient(0xFF);
+
+        BufferedImage image = read(new PngEncoder(6, true).encode(argb, WIDTH, HEIGHT));
+
+        assertInstanceOf(IndexColorModel.class, image.getColorModel());
+        assertTrue(((IndexColorModel) image.getColorModel()).getMapSize() <= 256);
+        // the gradients are smooth, most pixels stay close to the source
+        int close = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int expected = argb[y * WIDTH + x];
+                int actual = image.getRGB(x, y);
+                int distance = 0;
+                for (int shift = 0; shift < 24; shift += 8) {
+                    distance = Math.max(distance, Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF)));
+                }
+                if (distance <= 32) {
+                    close++;
+                }
+            }
+        }
+        assertTrue(close > WIDTH * HEIGHT * 3 / 4);
+    }
+
+    // ── streaming ──
+
+    @Test
+    void encode_stream_sameBytesAsArray() throws IOException {
+        PngEncoder encoder = new PngEncoder(6, false);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        encoder.encode(gradient(0x80), WIDTH, HEIGHT, outputStream);
+
+        assertArrayEquals(encoder.encode(gradient(0x80), WIDTH, HEIGHT), outputStream.toByteArray());
+    }
+
+    @Test
+    void encode_largeImage_splitsDataInChunks() throws IOException {
+        // noise doesn't compress, the data exceeds a single chunk
+        Random random = new Random(7);
+        int[] argb = new int[256 * 256];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = random.nextInt();
+        }
+
+        byte[] png = new PngEncoder(1, false).encode(argb, 256, 256);
+
+        int dataChunks = 0;
+        for (int position = 8; position < png.length; ) {
+            int length = ByteBuffer.wrap(png, position, 4).getInt();
+            if (new String(png, position + 4, 4, StandardCharsets.US_ASCII).equals("IDAT")) {
+                dataChunks++;
+            }
+            position += length + 12;
+        }
+        assertTrue(dataChunks > 1);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(argb[256 * 100 + 17], image.getRGB(17, 100));
+    }
+
+    // ── validation ──
+
+    @Test
+    void constructor_invalidCompressionLevel_throws() {
+        assertThrows(IllegalArgumentException.class, () -> new PngEncoder(10, false));
+        assertThrows(IllegalArgumentException.class, () -> new PngEncoder(-1, true));
+    }
+
+    @Test
+    void encode_pixelsSmallerThanImage_throws() {
+        PngEncoder encoder = new PngEncoder(6, false);
+
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(new int[10], WIDTH, HEIGHT));
+    }
+}
@@ -0,0 +1,105 @@
+package com.manu.forecaster.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SummedAreaLegendRasterTest {
+
+    private static byte[] createRandomClasses(int width, int height, int classCount, long seed) {
+        Random random = new Random(seed);
+        byte[] classes = new byte[width * height];
+        for (int i = 0; i < classes.length; i++) {
+            // about half of the pixels are clear
+            classes[i] = (byte) (random.nextBoolean() ? 0 : 1 + random.nextInt(classCount));
+        }
+        return classes;
+    }
+
+    // ── countClasses ──
+
+    @Test
+    void countClasses_anyWindow_matchesBaseRaster() {
+        byte[] classes = createRandomClasses(40, 30, 4, 42);
+        LegendRaster base = new DenseLegendRaster(classes, 40, 30);
+        LegendRaster indexed = SummedAreaLegendRaster.index(base);
+
+        int[][] windows = {{0, 0, 40, 30}, {5, 3, 17, 29}, {39, 29, 40, 30}, {10, 10, 10, 20}, {0, 12, 40, 13}};
+        for (int[] window : windows) {
+            int[] expected = new int[5];
+            int[] actual = new int[5];
+            base.countClasses(window[0], window[1], window[2], window[3], expected);
+            indexed.countClasses(window[0], window[1], window[2], window[3], actual);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void countClasses_runLengthBase_matchesBaseRaster() {
+        byte[] classes = new byte[60 * 60];
+        for (int y = 20; y < 40; y++) {
+            for (int x = 5; x < 50; x++) {
+                classes[y * 60 + x] = (byte) (x < 30 ? 3 : 200);
+            }
+        }
+        LegendRaster base = RunLengthLegendRaster.encode(classes, 60, 60, 40);
+        LegendRaster indexed = SummedAreaLegendRaster.index(base);
+
+        int[] expected = new int[256];
+        int[] actual = new int[256];
+        base.countClasses(10, 15, 45, 35, expected);
+        indexed.countClasses(10, 15, 45, 35, actual);
+
+        assertArrayEquals(expected, actual);
+        assertEquals(20 * 15, actual[3]);
+        assertEquals(15 * 15, actual[200]);
+    }
+
+    @Test
+    void countClasses_addsToExistingCounts() {
+        LegendRaster indexed = SummedAreaLegendRaster.index(new DenseLegendRaster(new byte[]{1, 0, 1, 1}, 2, 2));
+        int[] counts = {1, 1};
+
+        indexed.countClasses(0, 0, 2, 2, counts);
+
+        assertArrayEquals(new int[]{2, 4}, counts);
+    }
+
+    // ── classAt ──
+
+    @Test
+    void classAt_delegatesToBaseRaster() {
+        byte[] classes = createRandomClasses(20, 20, 3, 7);
+        LegendRaster base = new DenseLegendRaster(classes, 20, 20);
+        LegendRaster indexed = SummedAreaLegendRaster.index(base);
+
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 20; x++) {
+                assertEquals(base.classAt(x, y), indexed.classAt(x, y));
+            }
+        }
+    }
+
+    // ── getSizeInBytes ──
+
+    @Test
+    void getSizeInBytes_onlyPresentClassesHaveTables() {
+        byte[] classes = new byte[10 * 10];
+        classes[0] = 1;
+        classes[55] = 7;
+        LegendRaster base = new DenseLegendRaster(classes, 10, 10);
+
+        LegendRaster indexed = SummedAreaLegendRaster.index(base);
+
+        assertEquals(base.getSizeInBytes() + 2L * 11 * 11 * Integer.BYTES, indexed.getSizeInBytes());
+    }
+
+    @Test
+    void getSizeInBytes_clearTile_hasNoTables() {
+        LegendRaster base = new DenseLegendRaster(new byte[16], 4, 4);
+
+        assertEquals(base.getSizeInBytes(), SummedAreaLegendRaster.index(base).getSizeInBytes());
+    }
+}
@@ -5,16 +5,21 @@ import com.manu.forecaster.dto.configuration.WeatherSourcesConfig;
 import com.manu.forecaster.dto.configuration.WebScraperConfig;
 import com.manu.forecaster.dto.configuration.WebScrapersConfig;
 import com.manu.forecaster.dto.forecast.*;
+import com.manu.forecaster.exception.GeneralDataException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
 
 import java.lang.reflect.Field;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -51,6 +56,12 @@ class ForecastServiceTest {
         list.addAll(services);
     }
 
+    private GenericForecastServiceInterface mockForecastService() {
+        GenericForecastServiceInterface mockService = mock(GenericForecastServiceInterface.class);
+        when(mockService.getDeadline()).thenReturn(Duration.ofSeconds(10));
+        return mockService;
+    }
+
     // --- getForecastRaw tests ---
 
     @Test
@@ -65,7 +76,7 @@ class ForecastServiceTest {
                 .forecasts(List.of(forecast))
                 .build();
 
-        GenericForecastServiceInterface mockService = mock(GenericForecastServiceInterface.class);
+        GenericForecastServiceInterface mockService = mockForecastService();
         when(mockService.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenReturn(source);
 
         injectForecastServices(List.of(mockService));
@@ -89,8 +100,8 @@ class ForecastServiceTest {
                 .forecasts(List.of(Forecast.builder().date(Instant.now()).weatherCondition("cloudy").build()))
                 .build();
 
-        GenericForecastServiceInterface mock1 = mock(GenericForecastServiceInterface.class);
-        GenericForecastServiceInterface mock2 = mock(GenericForecastServiceInterface.class);
+        GenericForecastServiceInterface mock1 = mockForecastService();
+        GenericForecastServiceInterface mock2 = mockForecastService();
         when(mock1.getForecasts(Timeframe.TOMORROW, "40.0", "10.0")).thenReturn(source1);
         when(mock2.getForecasts(Timeframe.TOMORROW, "40.0", "10.0")).thenReturn(source2);
 
@@ -113,6 +124,94 @@ class ForecastServiceTest {
         assertTrue(result.getSources().isEmpty());
     }
 
+    @Test
+    void getForecastRaw_sourceFails_otherSourcesStillReturned() throws Exception {
+        ForecastSource source = ForecastSource.builder()
+                .name("Source2")
+                .forecasts(List.of(Forecast.builder().date(Instant.now()).weatherCondition("sunny").build()))
+                .build();
+
+        GenericForecastServiceInterface failing = mockForecastService();
+        GenericForecastServiceInterface working = mockForecastService();
+        when(failing.getName()).thenReturn("Source1");
+        when(failing.getForecasts(Timeframe.TODAY, "45.0", "9.0"))
+                .thenThrow(new GeneralDataException(HttpStatus.EXPECTATION_FAILED, "page not found"));
+        when(working.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenReturn(source);
+
+        injectForecastServices(List.of(failing, working));
+
+        RawForecast result = forecastService.getForecastRaw("45.0", "9.0", Timeframe.TODAY);
+
+        assertEquals(2, result.getSources().size());
+        assertEquals("Source1", result.getSources().get(0).getName());
+        assertEquals("page not found", result.getSources().get(0).getError());
+        assertTrue(result.getSources().get(0).getForecasts().isEmpty());
+        assertEquals("Source2", result.getSources().get(1).getName());
+        assertNull(result.getSources().get(1).getError());
+        assertEquals(1, result.getSources().get(1).getForecasts().size());
+    }
+
+    @Test
+    void getForecastRaw_sourceMissesDeadline_reportedAsTimedOut() throws Exception {
+        GenericForecastServiceInterface slow = mockForecastService();
+        when(slow.getName()).thenReturn("Slow");
+        when(slow.getDeadline()).thenReturn(Duration.ofMillis(100));
+        when(slow.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenAnswer(inv -> {
+            Thread.sleep(5000);
+            return ForecastSource.builder().name("Slow").forecasts(List.of()).build();
+        });
+
+        injectForecastServices(List.of(slow));
+
+        long start = System.nanoTime();
+        RawForecast result = forecastService.getForecastRaw("45.0", "9.0", Timeframe.TODAY);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 2000, "the request waited for the slow source: " + elapsedMillis + " ms");
+        assertEquals("Slow", result.getSources().get(0).getName());
+        assertEquals("The source did not answer within 100 ms", result.getSources().get(0).getError());
+        assertTrue(result.getSources().get(0).getForecasts().isEmpty());
+    }
+
+    @Test
+    void getForecastRaw_multipleSources_queriedConcurrently() throws Exception {
+        GenericForecastServiceInterface mock1 = mockForecastService();
+        GenericForecastServiceInterface mock2 = mockForecastService();
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        for (var mockService : List.of(mock1, mock2)) {
+            when(mockService.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenAnswer(inv -> {
+                // each source waits for the other one, sequential calls would time out here
+                bothStarted.countDown();
+                assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+                return ForecastSource.builder().name("Source").forecasts(List.of()).build();
+            });
+        }
+
+        injectForecastServices(List.of(mock1, mock2));
+
+        RawForecast result = forecastService.getForecastRaw("45.0", "9.0", Timeframe.TODAY);
+
+        assertNull(result.getSources().get(0).getError());
+        assertNull(result.getSources().get(1).getError());
+    }
+
+    @Test
+    void getForecastRaw_zeroDeadline_waitsForTheSource() throws Exception {
+        GenericForecastServiceInterface mockService = mockForecastService();
+        when(mockService.getDeadline()).thenReturn(Duration.ZERO);
+        when(mockService.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenAnswer(inv -> {
+            Thread.sleep(50);
+            return ForecastSource.builder().name("Source").forecasts(List.of()).build();
+        });
+
+        injectForecastServices(List.of(mockService));
+
+        RawForecast result = forecastService.getForecastRaw("45.0", "9.0", Timeframe.TODAY);
+
+        assertNull(result.getSources().get(0).getError());
+        assertEquals("Source", result.getSources().get(0).getName());
+    }
+
     // --- getForecastMatch tests ---
 
     @Test
@@ -123,7 +222,7 @@ class ForecastServiceTest {
                 .forecasts(List.of(Forecast.builder().date(date).weatherCondition("rain").build()))
                 .build();
 
-        GenericForecastServiceInterface mockService = mock(GenericForecastServiceInterface.class);
+        GenericForecastServiceInterface mockService = mockForecastService();
         when(mockService.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenReturn(source);
         injectForecastServices(List.of(mockService));
 
@@ -141,7 +240,7 @@ class ForecastServiceTest {
                 .forecasts(List.of(Forecast.builder().date(Instant.now()).weatherCondition("sunny").build()))
                 .build();
 
-        GenericForecastServiceInterface mockService = mock(GenericForecastServiceInterface.class);
+        GenericForecastServiceInterface mockService = mockForecastService();
         when(mockService.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenReturn(source);
         injectForecastServices(List.of(mockService));
 
@@ -159,7 +258,7 @@ class ForecastServiceTest {
                 .forecasts(List.of(Forecast.builder().date(Instant.now()).weatherCondition(null).build()))
                 .build();
 
-        GenericForecastServiceInterface mockService = mock(GenericForecastServiceInterface.class);
+        GenericForecastServiceInterface mockService = mockForecastService();
         when(mockService.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenReturn(source);
         injectForecastServices(List.of(mockService));
 
@@ -180,7 +279,7 @@ class ForecastServiceTest {
                 ))
                 .build();
 
-        GenericForecastServiceInterface mockService = mock(GenericForecastServiceInterface.class);
+        GenericForecastServiceInterface mockService = mockForecastService();
         when(mockService.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenReturn(source);
         injectForecastServices(List.of(mockService));
 
@@ -198,7 +297,7 @@ class ForecastServiceTest {
                 .forecasts(List.of(Forecast.builder().date(date).weatherCondition("rain").build()))
                 .build();
 
-        GenericForecastServiceInterface mockService = mock(GenericForecastServiceInterface.class);
+        GenericForecastServiceInterface mockService = mockForecastService();
         when(mockService.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenReturn(source);
         injectForecastServices(List.of(mockService));
 
@@ -217,7 +316,7 @@ class ForecastServiceTest {
                 .forecasts(List.of(Forecast.builder().date(Instant.now()).weatherCondition("heavy rain").build()))
                 .build();
 
-        GenericForecastServiceInterface mockService = mock(GenericForecastServiceInterface.class);
+        GenericForecastServiceInterface mockService = mockForecastService();
         when(mockService.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenReturn(source);
         injectForecastServices(List.of(mockService));
 
@@ -240,8 +339,8 @@ class ForecastServiceTest {
                 .forecasts(List.of(Forecast.builder().date(date2).weatherCondition("rain").build()))
                 .build();
 
-        GenericForecastServiceInterface mock1 = mock(GenericForecastServiceInterface.class);
-        GenericForecastServiceInterface mock2 = mock(GenericForecastServiceInterface.class);
+        GenericForecastServiceInterface mock1 = mockForecastService();
+        GenericForecastServiceInterface mock2 = mockForecastService();
         when(mock1.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenReturn(source1);
         when(mock2.getForecasts(Timeframe.TODAY, "45.0", "9.0")).thenReturn(source2);
         injectForecastServices(List.of(mock1, mock2));
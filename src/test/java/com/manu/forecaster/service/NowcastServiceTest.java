@@ -2,11 +2,18 @@ package com.manu.forecaster.service;
 
 import com.manu.forecaster.dto.configuration.WeatherSourcesConfig;
 import com.manu.forecaster.dto.nowcast.*;
+import com.manu.forecaster.dto.tile.Coordinate;
+import com.manu.forecaster.exception.ConfigurationException;
 import com.manu.forecaster.exception.GeneralDataException;
+import com.manu.forecaster.exception.RestException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
 
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
@@ -26,7 +33,7 @@ class NowcastServiceTest {
 		WeatherSourcesConfig config = new WeatherSourcesConfig();
 		config.setTileRadars(Collections.emptyList());
 
-		nowcastService = new NowcastService(config, new RestService(), new SpelService());
+		nowcastService = new NowcastService(config, new RestService(), new SpelService(), new TileCacheService(config));
 
 		radarService1 = mock(TileRadarService.class);
 		radarService2 = mock(TileRadarService.class);
@@ -48,7 +55,7 @@ class NowcastServiceTest {
 				.pointWeatherCondition("rain")
 				.areaWeatherCoinditions(Map.of("rain", 5))
 				.build();
-		when(radarService1.getNowcasts(any(BigDecimal.class), any(BigDecimal.class)))
+		when(radarService1.getNowcasts(anyDouble(), anyDouble()))
 				.thenReturn(List.of(nowcast));
 		injectRadarServices(radarService1);
 
@@ -64,9 +71,9 @@ class NowcastServiceTest {
 	void getNowcastsRaw_multipleRadars_returnsAllSources() throws Exception {
 		when(radarService1.getName()).thenReturn("radar1");
 		when(radarService2.getName()).thenReturn("radar2");
-		when(radarService1.getNowcasts(any(BigDecimal.class), any(BigDecimal.class)))
+		when(radarService1.getNowcasts(anyDouble(), anyDouble()))
 				.thenReturn(List.of(Nowcast.builder().imageryName("img1").areaWeatherCoinditions(Map.of()).build()));
-		when(radarService2.getNowcasts(any(BigDecimal.class), any(BigDecimal.class)))
+		when(radarService2.getNowcasts(anyDouble(), anyDouble()))
 				.thenReturn(List.of(Nowcast.builder().imageryName("img2").areaWeatherCoinditions(Map.of()).build()));
 		injectRadarServices(radarService1, radarService2);
 
@@ -78,12 +85,51 @@ class NowcastServiceTest {
 	}
 
 	@Test
-	void getNowcastsRaw_radarThrowsIOException_throwsGeneralDataException() throws Exception {
-		when(radarService1.getNowcasts(any(BigDecimal.class), any(BigDecimal.class)))
+	void getNowcastsRaw_nonFiniteCoordinate_throwsNumberFormatException() throws Exception {
+		injectRadarServices(radarService1);
+
+		assertThrows(NumberFormatException.class, () -> nowcastService.getNowcastsRaw("NaN", "9.0"));
+		assertThrows(NumberFormatException.class, () -> nowcastService.getNowcastsRaw("45.0", "Infinity"));
+	}
+
+	@Test
+	void getNowcastsRaw_radarThrowsIOException_returnsSourceWithError() throws Exception {
+		when(radarService1.getName()).thenReturn("radar1");
+		when(radarService1.getNowcasts(anyDouble(), anyDouble()))
 				.thenThrow(new IOException("connection failed"));
 		injectRadarServices(radarService1);
 
-		assertThrows(GeneralDataException.class, () -> nowcastService.getNowcastsRaw("45.0", "9.0"));
+		RawNowcast result = nowcastService.getNowcastsRaw("45.0", "9.0");
+
+		assertEquals(1, result.getSources().size());
+		assertEquals("radar1", result.getSources().get(0).getSourceName());
+		assertEquals("connection failed", result.getSources().get(0).getError());
+		assertTrue(result.getSources().get(0).getNowcast().isEmpty());
+	}
+
+	@Test
+	void getNowcastsRaw_oneRadarFails_otherRadarsStillReturned() throws Exception {
+		when(radarService1.getName()).thenReturn("radar1");
+		when(radarService2.getName()).thenReturn("radar2");
+		when(radarService1.getNowcasts(anyDouble(), anyDouble()))
+				.thenThrow(new RestException("bad response"));
+		when(radarService2.getNowcasts(anyDouble(), anyDouble()))
+				.thenReturn(List.of(Nowcast.builder().imageryName("img2").areaWeatherCoinditions(Map.of()).build()));
+		injectRadarServices(radarService1, radarService2);
+
+		RawNowcast result = nowcastService.getNowcastsRaw("45.0", "9.0");
+
+		assertEquals(2, result.getSources().size());
+		assertEquals("bad response", result.getSources().get(0).getError());
+		assertNull(result.getSources().get(1).getError());
+		assertEquals("img2", result.getSources().get(1).getNowcast().get(0).getImageryName());
+	}
+
+	@Test
+	void getNowcastsRaw_invalidLatitude_throwsNumberFormatException() throws Exception {
+		injectRadarServices(radarService1);
+
+		assertThrows(NumberFormatException.class, () -> nowcastService.getNowcastsRaw("not-a-number", "9.0"));
 	}
 
 	@Test
@@ -94,7 +140,7 @@ class NowcastServiceTest {
 				.pointWeatherCondition(null)
 				.areaWeatherCoinditions(Map.of("heavy rain", 10))
 				.build();
-		when(radarService1.getNowcasts(any(BigDecimal.class), any(BigDecimal.class)))
+		when(radarService1.getNowcasts(anyDouble(), anyDouble()))
 				.thenReturn(List.of(nowcast));
 		injectRadarServices(radarService1);
 
@@ -115,7 +161,7 @@ class NowcastServiceTest {
 				.pointWeatherCondition("light rain")
 				.areaWeatherCoinditions(Map.of("rain", 3))
 				.build();
-		when(radarService1.getNowcasts(any(BigDecimal.class), any(BigDecimal.class)))
+		when(radarService1.getNowcasts(anyDouble(), anyDouble()))
 				.thenReturn(List.of(nowcast));
 		injectRadarServices(radarService1);
 
@@ -134,7 +180,7 @@ class NowcastServiceTest {
 				.pointWeatherCondition("clear")
 				.areaWeatherCoinditions(Map.of("sunny", 5))
 				.build();
-		when(radarService1.getNowcasts(any(BigDecimal.class), any(BigDecimal.class)))
+		when(radarService1.getNowcasts(anyDouble(), anyDouble()))
 				.thenReturn(List.of(nowcast));
 		injectRadarServices(radarService1);
 
@@ -154,7 +200,7 @@ class NowcastServiceTest {
 				.pointWeatherCondition("snow")
 				.areaWeatherCoinditions(Map.of("snow", 8, "rain", 0, "hail", 2))
 				.build();
-		when(radarService1.getNowcasts(any(BigDecimal.class), any(BigDecimal.class)))
+		when(radarService1.getNowcasts(anyDouble(), anyDouble()))
 				.thenReturn(List.of(nowcast));
 		injectRadarServices(radarService1);
 
@@ -174,25 +220,186 @@ class NowcastServiceTest {
 	}
 
 	@Test
-	void getImage_validName_returnsByteArray() throws Exception {
+	void getNowcastsMatch_oneRadarFails_reportsItsError() throws Exception {
+		when(radarService1.getName()).thenReturn("radar1");
+		when(radarService2.getName()).thenReturn("radar2");
+		when(radarService1.getNowcasts(anyDouble(), anyDouble())).thenThrow(new IOException("timeout"));
+		when(radarService2.getNowcasts(anyDouble(), anyDouble()))
+				.thenReturn(List.of(Nowcast.builder().imageryName("img2").areaWeatherCoinditions(Map.of("sunny", 5)).build()));
+		injectRadarServices(radarService1, radarService2);
+
+		WeatherMatchedNowcast result = nowcastService.getNowcastsMatch("45.0", "9.0", List.of("rain"));
+
+		assertFalse(result.getMatches().get("rain").isAreaMatched());
+		assertEquals(Map.of("radar1", "timeout"), result.getErrors());
+	}
+
+	@Test
+	void getNowcastsMatch_everyRadarFails_throwsExpectationFailed() throws Exception {
+		when(radarService1.getName()).thenReturn("radar1");
+		when(radarService2.getName()).thenReturn("radar2");
+		when(radarService1.getNowcasts(anyDouble(), anyDouble())).thenThrow(new IOException("timeout"));
+		when(radarService2.getNowcasts(anyDouble(), anyDouble())).thenThrow(new RestException("bad response"));
+		injectRadarServices(radarService1, radarService2);
+
+		GeneralDataException exception = assertThrows(GeneralDataException.class,
+				() -> nowcastService.getNowcastsMatch("45.0", "9.0", List.of("rain")));
+		assertEquals(HttpStatus.EXPECTATION_FAILED, exception.getHttpStatus());
+	}
+
+	@Test
+	void getNowcastImage_validName_returnsRadarImage() throws Exception {
 		when(radarService1.getName()).thenReturn("radar1");
 		BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
-		when(radarService1.getNowcastImage(any(BigDecimal.class), any(BigDecimal.class), eq("radar1")))
+		when(radarService1.getNowcastImage(anyDouble(), anyDouble(), eq("radar1")))
 				.thenReturn(image);
 		injectRadarServices(radarService1);
 
-		byte[] result = nowcastService.getImage("45.0", "9.0", "radar1");
+		BufferedImage result = nowcastService.getNowcastImage("45.0", "9.0", "radar1");
+
+		assertSame(image, result);
+	}
+
+	@Test
+	void writeImage_writesDecodablePng() throws Exception {
+		BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(3, 4, 0xFFFF0000);
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		nowcastService.writeImage(image, outputStream);
+
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+		assertEquals(10, decoded.getWidth());
+		assertEquals(0xFFFF0000, decoded.getRGB(3, 4));
+	}
+
+	@Test
+	void getNowcastImage_radarFails_throwsGeneralDataException() throws Exception {
+		when(radarService1.getName()).thenReturn("radar1");
+		when(radarService1.getNowcastImage(anyDouble(), anyDouble(), eq("radar1")))
+				.thenThrow(new IOException("connection failed"));
+		injectRadarServices(radarService1);
+
+		assertThrows(GeneralDataException.class, () -> nowcastService.getNowcastImage("45.0", "9.0", "radar1"));
+	}
+
+	@Test
+	void constructor_invalidCompressionLevel_throwsConfigurationException() {
+		WeatherSourcesConfig config = new WeatherSourcesConfig();
+		config.setTileRadars(Collections.emptyList());
+		config.getRadarImage().setCompressionLevel(12);
+
+		assertThrows(ConfigurationException.class,
+				() -> new NowcastService(config, new RestService(), new SpelService(), new TileCacheService(config)));
+	}
+
+	@Test
+	void getNowcastImage_noMatchingService_throwsNoSuchElementException() throws Exception {
+		when(radarService1.getName()).thenReturn("radar1");
+		injectRadarServices(radarService1);
 
-		assertNotNull(result);
-		assertTrue(result.length > 0);
+		assertThrows(NoSuchElementException.class, () -> nowcastService.getNowcastImage("45.0", "9.0", "unknown"));
 	}
 
+
+	// ── getNowcastsMatchBatch ──
+
 	@Test
-	void getImage_noMatchingService_throwsNoSuchElementException() throws Exception {
+	void getNowcastsMatchBatch_matchesEveryPointInOrder() throws Exception {
 		when(radarService1.getName()).thenReturn("radar1");
+		when(radarService1.getNowcasts(anyList())).thenReturn(List.of(
+				List.of(Nowcast.builder().imageryName("img1").pointWeatherCondition("rain").areaWeatherCoinditions(Map.of("rain", 30)).build()),
+				List.of(Nowcast.builder().imageryName("img1").pointWeatherCondition("clear").areaWeatherCoinditions(Map.of("rain", 0)).build())
+		));
 		injectRadarServices(radarService1);
 
-		assertThrows(NoSuchElementException.class, () -> nowcastService.getImage("45.0", "9.0", "unknown"));
+		BatchNowcastRequest request = BatchNowcastRequest.builder()
+				.points(List.of(
+						new Coordinate(new BigDecimal("9.0"), new BigDecimal("45.0")),
+						new Coordinate(new BigDecimal("15.0"), new BigDecimal("40.0"))
+				))
+				.weatherTypes(List.of("rain"))
+				.build();
+
+		BatchWeatherMatchedNowcast result = nowcastService.getNowcastsMatchBatch(request);
+
+		assertEquals(2, result.getResults().size());
+		NowcastMatch first = result.getResults().get(0).getMatches().get("rain");
+		assertTrue(first.isAreaMatched());
+		assertTrue(first.isPointMatched());
+		assertEquals(List.of("radar1 - img1"), first.getMatchedForecasts());
+		NowcastMatch second = result.getResults().get(1).getMatches().get("rain");
+		assertFalse(second.isAreaMatched());
+		assertFalse(second.isPointMatched());
 	}
 
+	@Test
+	void getNowcastsMatchBatch_failingRadar_otherRadarsStillMatch() throws Exception {
+		when(radarService1.getName()).thenReturn("radar1");
+		when(radarService2.getName()).thenReturn("radar2");
+		when(radarService1.getNowcasts(anyList())).thenThrow(new IOException("timeout"));
+		when(radarService2.getNowcasts(anyList())).thenReturn(List.of(
+				List.of(Nowcast.builder().imageryName("img2").pointWeatherCondition("rain").areaWeatherCoinditions(Map.of("rain", 10)).build())
+		));
+		injectRadarServices(radarService1, radarService2);
+
+		BatchNowcastRequest request = BatchNowcastRequest.builder()
+				.points(List.of(new Coordinate(new BigDecimal("9.0"), new BigDecimal("45.0"))))
+				.weatherTypes(List.of("rain"))
+				.build();
+
+		BatchWeatherMatchedNowcast result = nowcastService.getNowcastsMatchBatch(request);
+
+		NowcastMatch match = result.getResults().get(0).getMatches().get("rain");
+		assertTrue(match.isAreaMatched());
+		assertEquals(List.of("radar2 - img2"), match.getMatchedForecasts());
+		assertEquals(Map.of("radar1", "timeout"), result.getResults().get(0).getErrors());
+	}
+
+	@Test
+	void getNowcastsMatchBatch_everyRadarFails_throwsExpectationFailed() throws Exception {
+		when(radarService1.getName()).thenReturn("radar1");
+		when(radarService1.getNowcasts(anyList())).thenThrow(new IOException("timeout"));
+		injectRadarServices(radarService1);
+
+		BatchNowcastRequest request = BatchNowcastRequest.builder()
+				.points(List.of(new Coordinate(new BigDecimal("9.0"), new BigDecimal("45.0"))))
+				.weatherTypes(List.of("rain"))
+				.build();
+
+		GeneralDataException exception = assertThrows(GeneralDataException.class,
+				() -> nowcastService.getNowcastsMatchBatch(request));
+		assertEquals(HttpStatus.EXPECTATION_FAILED, exception.getHttpStatus());
+	}
+
+	@Test
+	void getNowcastsMatchBatch_pointWithoutLatitude_throwsBadRequest() {
+		BatchNowcastRequest request = BatchNowcastRequest.builder()
+				.points(List.of(Coordinate.builder().longitude(new BigDecimal("9.0")).build()))
+				.weatherTypes(List.of("rain"))
+				.build();
+
+		GeneralDataException exception = assertThrows(GeneralDataException.class,
+				() -> nowcastService.getNowcastsMatchBatch(request));
+		assertEquals(400, exception.getHttpStatus().value());
+	}
+
+	@Test
+	void getNowcastsMatchBatch_tooManyPoints_throwsBadRequest() {
+		WeatherSourcesConfig config = new WeatherSourcesConfig();
+		config.setTileRadars(Collections.emptyList());
+		config.setMaxBatchPoints(1);
+		NowcastService limitedService = new NowcastService(config, new RestService(), new SpelService(), new TileCacheService(config));
+		BatchNowcastRequest request = BatchNowcastRequest.builder()
+				.points(List.of(
+						new Coordinate(new BigDecimal("9.0"), new BigDecimal("45.0")),
+						new Coordinate(new BigDecimal("15.0"), new BigDecimal("40.0"))
+				))
+				.weatherTypes(List.of("rain"))
+				.build();
+
+		GeneralDataException exception = assertThrows(GeneralDataException.class,
+				() -> limitedService.getNowcastsMatchBatch(request));
+		assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+	}
 }
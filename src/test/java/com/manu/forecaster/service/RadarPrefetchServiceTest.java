@@ -0,0 +1,128 @@
+package com.manu.forecaster.service;
+
+import com.manu.forecaster.dto.configuration.PrefetchRegionConfig;
+import com.manu.forecaster.dto.configuration.WeatherSourcesConfig;
+import com.manu.forecaster.exception.RestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RadarPrefetchServiceTest {
+
+    private WeatherSourcesConfig config;
+    private NowcastService nowcastService;
+    private TileRadarService radarService;
+
+    @BeforeEach
+    void setUp() {
+        config = new WeatherSourcesConfig();
+        nowcastService = mock(NowcastService.class);
+        radarService = mock(TileRadarService.class);
+        when(radarService.getName()).thenReturn("radar1");
+        when(radarService.getZoomLevel()).thenReturn(6);
+        when(nowcastService.getTileRadarServices()).thenReturn(List.of(radarService));
+    }
+
+    private PrefetchRegionConfig createRegion(String north, String south, String west, String east) {
+        PrefetchRegionConfig region = new PrefetchRegionConfig();
+        region.setName("region");
+        region.setNorth(new BigDecimal(north));
+        region.setSouth(new BigDecimal(south));
+        region.setWest(new BigDecimal(west));
+        region.setEast(new BigDecimal(east));
+        return region;
+    }
+
+    // ── prefetchRegions ──
+
+    @Test
+    void prefetchRegions_regionOnTwoTiles_prefetchesBoth() throws Exception {
+        config.getPrefetch().setRegions(List.of(createRegion("44.5", "44.0", "9.0", "15.0")));
+        RadarPrefetchService service = new RadarPrefetchService(config, nowcastService);
+
+        service.prefetchRegions();
+
+        verify(radarService).prefetch(33, 23);
+        verify(radarService).prefetch(34, 23);
+        verify(radarService, times(2)).prefetch(anyInt(), anyInt());
+    }
+
+    @Test
+    void prefetchRegions_regionAcrossAntimeridian_prefetchesBothSides() throws Exception {
+        config.getPrefetch().setRegions(List.of(createRegion("44.5", "44.0", "175.0", "-175.0")));
+        RadarPrefetchService service = new RadarPrefetchService(config, nowcastService);
+
+        service.prefetchRegions();
+
+        verify(radarService).prefetch(63, 23);
+        verify(radarService).prefetch(0, 23);
+        verify(radarService, times(2)).prefetch(anyInt(), anyInt());
+    }
+
+    @Test
+    void prefetchRegions_tooManyTiles_skipsRegion() throws Exception {
+        config.getPrefetch().setMaxTilesPerRegion(1);
+        config.getPrefetch().setRegions(List.of(createRegion("44.5", "44.0", "9.0", "15.0")));
+        RadarPrefetchService service = new RadarPrefetchService(config, nowcastService);
+
+        service.prefetchRegions();
+
+        verify(radarService, never()).prefetch(anyInt(), anyInt());
+    }
+
+    @Test
+    void prefetchRegions_zoomLevelNotListed_skipsRadar() throws Exception {
+        PrefetchRegionConfig region = createRegion("44.5", "44.0", "9.0", "9.2");
+        region.setZoomLevels(List.of(8));
+        config.getPrefetch().setRegions(List.of(region));
+        RadarPrefetchService service = new RadarPrefetchService(config, nowcastService);
+
+        service.prefetchRegions();
+
+        verify(radarService, never()).prefetch(anyInt(), anyInt());
+    }
+
+    @Test
+    void prefetchRegions_failingTile_continuesWithNextTiles() throws Exception {
+        config.getPrefetch().setRegions(List.of(createRegion("44.5", "44.0", "9.0", "15.0")));
+        doThrow(new IOException("timeout")).when(radarService).prefetch(33, 23);
+        doThrow(new RestException("bad response")).when(radarService).prefetch(34, 23);
+        RadarPrefetchService service = new RadarPrefetchService(config, nowcastService);
+
+        assertDoesNotThrow(service::prefetchRegions);
+
+        verify(radarService, times(2)).prefetch(anyInt(), anyInt());
+    }
+
+    // ── configureTasks ──
+
+    @Test
+    void configureTasks_disabled_registersNothing() {
+        config.getPrefetch().setRegions(List.of(createRegion("44.5", "44.0", "9.0", "9.2")));
+        RadarPrefetchService service = new RadarPrefetchService(config, nowcastService);
+        ScheduledTaskRegistrar registrar = new ScheduledTaskRegistrar();
+
+        service.configureTasks(registrar);
+
+        assertTrue(registrar.getFixedDelayTaskList().isEmpty());
+    }
+
+    @Test
+    void configureTasks_enabled_registersPoller() {
+        config.getPrefetch().setEnabled(true);
+        config.getPrefetch().setRegions(List.of(createRegion("44.5", "44.0", "9.0", "9.2")));
+        RadarPrefetchService service = new RadarPrefetchService(config, nowcastService);
+        ScheduledTaskRegistrar registrar = new ScheduledTaskRegistrar();
+
+        service.configureTasks(registrar);
+
+        assertEquals(1, registrar.getFixedDelayTaskList().size());
+    }
+}
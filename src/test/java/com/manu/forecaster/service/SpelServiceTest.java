@@ -1,12 +1,27 @@
 package com.manu.forecaster.service;
 
 import com.manu.forecaster.dto.tile.TileRapresentation;
+import com.manu.forecaster.template.CompiledTemplates;
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class SpelServiceTest {
 
@@ -66,6 +81,93 @@ class SpelServiceTest {
 		assertEquals("7/8/9", result);
 	}
 
+	@Test
+	void applyTemplates_nullTemplates_onlyReplacesTile() {
+		TileRapresentation tile = TileRapresentation.builder().x(7).y(8).z(9).build();
+		String result = spelService.applyTemplates("{x}/{y}/{z}/{timestamp}", null, tile);
+		assertEquals("7/8/9/{timestamp}", result);
+	}
+
+	@Test
+	void applyTemplates_sameBucket_reusesTemplateValue() {
+		SpelService fixedClockService = new SpelService(
+				Clock.fixed(Instant.parse("2026-03-08T12:00:00Z"), ZoneOffset.UTC), Duration.ofSeconds(1)
+		);
+		Map<String, String> templates = Map.of("now", "T(java.lang.System).nanoTime()");
+
+		String url = fixedClockService.applyTemplates("https://radar.com/{now}", templates, null);
+		String body = fixedClockService.applyTemplates("{\"time\": {now}}", templates, null);
+
+		assertEquals(url.substring("https://radar.com/".length()), body.substring(9, body.length() - 1));
+	}
+
+	@Test
+	void applyTemplates_nextBucket_evaluatesAgain() throws InterruptedException {
+		SpelService shortBucketService = new SpelService(Clock.systemUTC(), Duration.ofMillis(1));
+		Map<String, String> templates = Map.of("now", "T(java.lang.System).nanoTime()");
+
+		String first = shortBucketService.applyTemplates("{now}", templates, null);
+		Thread.sleep(5);
+		String second = shortBucketService.applyTemplates("{now}", templates, null);
+
+		assertNotEquals(first, second);
+	}
+
+	@Test
+	void compileTemplates_equalTemplates_parsedOnce() {
+		CompiledTemplates first = spelService.compileTemplates(Map.of("result", "1+1"));
+		CompiledTemplates second = spelService.compileTemplates(new HashMap<>(Map.of("result", "1+1")));
+		assertSame(first, second);
+	}
+
+	@Test
+	void applyTemplates_concurrentCallers_renderSameValues() throws Exception {
+		// one millisecond buckets keep the threads evaluating the template concurrently
+		SpelService evaluatingService = new SpelService(Clock.systemUTC(), Duration.ofMillis(1));
+		Map<String, String> templates = Map.of(
+				"time", "T(java.time.LocalDate).of(2026, 3, 8).format(T(java.time.format.DateTimeFormatter).ofPattern('yyyyMMdd'))"
+		);
+		TileRapresentation tile = TileRapresentation.builder().x(3).y(4).z(5).build();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Set<String>>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> {
+					Set<String> results = new HashSet<>();
+					for (int j = 0; j < 500; j++) {
+						results.add(evaluatingService.applyTemplates("{z}/{x}/{y}/{time}", templates, tile));
+					}
+					return results;
+				}));
+			}
+
+			for (var future : futures) {
+				assertEquals(Set.of("5/3/4/20260308"), future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void parseSpel_concurrentCallers_evaluateIndependently() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				int value = i;
+				futures.add(executor.submit(() -> spelService.parseSpel("T(java.lang.Math).max(" + value + ", 0)")));
+			}
+
+			for (int i = 0; i < futures.size(); i++) {
+				assertEquals(String.valueOf(i), futures.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	@Test
 	void parseSpel_simpleArithmetic_returnsResult() {
 		String result = spelService.parseSpel("1+1");
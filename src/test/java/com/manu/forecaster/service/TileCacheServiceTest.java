@@ -0,0 +1,384 @@
+package com.manu.forecaster.service;
+
+import com.manu.forecaster.dto.configuration.TileCacheConfig;
+import com.manu.forecaster.image.LegendRaster;
+import com.manu.forecaster.image.SummedAreaLegendRaster;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileCacheServiceTest {
+
+    @TempDir
+    Path diskCacheDirectory;
+
+    private TileCacheService createService(Instant now) {
+        TileCacheConfig config = new TileCacheConfig();
+        config.setFrameInterval(Duration.ofMinutes(5));
+        return new TileCacheService(config, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void getTileBytes_sameTile_loadsOnce() throws Exception {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:01:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        byte[] first = service.getTileBytes("GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1, 2, 3};
+        });
+        byte[] second = service.getTileBytes("GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return new byte[]{4, 5, 6};
+        });
+
+        assertEquals(1, loads.get());
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void getTileBytes_differentResolvedUrl_loadsAgain() throws Exception {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:01:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        service.getTileBytes("GET", "https://radar.com/20260308_1155/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1};
+        });
+        service.getTileBytes("GET", "https://radar.com/20260308_1200/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1};
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getTileBytes_differentBody_loadsAgain() throws Exception {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:01:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        service.getTileBytes("POST", "https://radar.com/tile", "{\"layer\":\"rain\"}", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1};
+        });
+        service.getTileBytes("POST", "https://radar.com/tile", "{\"layer\":\"snow\"}", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1};
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void evictTileBytes_forcesReload() throws Exception {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:01:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        service.getTileBytes("GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1};
+        });
+        service.evictTileBytes("GET", "https://radar.com/1/2/3", "");
+        service.getTileBytes("GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1};
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getFrameExpiration_alignsToNextFrameBoundary() {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:01:30Z"));
+
+        assertEquals(Instant.parse("2026-03-08T12:05:00Z"), service.getFrameExpiration());
+    }
+
+    @Test
+    void getFrameExpiration_onBoundary_expiresAtNextFrame() {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:05:00Z"));
+
+        assertEquals(Instant.parse("2026-03-08T12:10:00Z"), service.getFrameExpiration());
+    }
+
+    @Test
+    void getLegendRaster_sameTileAndRadar_loadsOnce() throws Exception {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:01:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        LegendRaster first = service.getLegendRaster("radar", "GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return LegendRaster.of(new byte[4], 2, 2);
+        });
+        LegendRaster second = service.getLegendRaster("radar", "GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return LegendRaster.of(new byte[4], 2, 2);
+        });
+
+        assertEquals(1, loads.get());
+        assertSame(first, second);
+    }
+
+    @Test
+    void getLegendRaster_sameTileDifferentRadar_loadsAgain() throws Exception {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:01:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        service.getLegendRaster("radar1", "GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return LegendRaster.of(new byte[4], 2, 2);
+        });
+        service.getLegendRaster("radar2", "GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return LegendRaster.of(new byte[4], 2, 2);
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getLegendRaster_summedAreaTablesEnabled_indexesLoadedRaster() throws Exception {
+        TileCacheConfig config = new TileCacheConfig();
+        config.setSummedAreaTables(true);
+        TileCacheService service = new TileCacheService(config, Clock.systemUTC());
+
+        LegendRaster raster = service.getLegendRaster("radar", "GET", "https://radar.com/1/2/3", "",
+                () -> LegendRaster.of(new byte[]{1, 0, 0, 1}, 2, 2));
+
+        assertInstanceOf(SummedAreaLegendRaster.class, raster);
+        assertEquals(1, raster.classAt(1, 1));
+    }
+
+    @Test
+    void getLegendRaster_summedAreaTablesByDefault_cachesLoadedRaster() throws Exception {
+        TileCacheService service = new TileCacheService(new TileCacheConfig(), Clock.systemUTC());
+        LegendRaster loaded = LegendRaster.of(new byte[]{1, 0, 0, 1}, 2, 2);
+
+        LegendRaster raster = service.getLegendRaster("radar", "GET", "https://radar.com/1/2/3", "", () -> loaded);
+
+        assertSame(loaded, raster);
+    }
+
+    // ── base map tier ──
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+    private TileCacheService createBaseMapService(MutableClock clock) {
+        TileCacheConfig config = new TileCacheConfig();
+        config.setFrameInterval(Duration.ofMinutes(5));
+        config.setBaseMapTtl(Duration.ofDays(7));
+        return new TileCacheService(config, clock);
+    }
+
+    @Test
+    void getBaseMapBytes_sameTile_loadsOnce() throws Exception {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:01:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        byte[] first = service.getBaseMapBytes("https://basemap.com/8/1/2", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1, 2, 3};
+        });
+        byte[] second = service.getBaseMapBytes("https://basemap.com/8/1/2", () -> {
+            loads.incrementAndGet();
+            return new byte[]{4, 5, 6};
+        });
+
+        assertEquals(1, loads.get());
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void getBaseMapBytes_nextRadarFrame_staysCached() throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-03-08T12:01:00Z"));
+        TileCacheService service = createBaseMapService(clock);
+        AtomicInteger loads = new AtomicInteger();
+
+        service.getBaseMapBytes("https://basemap.com/8/1/2", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1};
+        });
+        clock.advance(Duration.ofHours(1));
+        byte[] bytes = service.getBaseMapBytes("https://basemap.com/8/1/2", () -> {
+            loads.incrementAndGet();
+            return new byte[]{2};
+        });
+
+        assertEquals(1, loads.get());
+        assertArrayEquals(new byte[]{1}, bytes);
+    }
+
+    @Test
+    void getBaseMapBytes_afterTtl_loadsAgain() throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2026-03-08T12:01:00Z"));
+        TileCacheService service = createBaseMapService(clock);
+        AtomicInteger loads = new AtomicInteger();
+
+        service.getBaseMapBytes("https://basemap.com/8/1/2", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1};
+        });
+        clock.advance(Duration.ofDays(7));
+        byte[] bytes = service.getBaseMapBytes("https://basemap.com/8/1/2", () -> {
+            loads.incrementAndGet();
+            return new byte[]{2};
+        });
+
+        assertEquals(2, loads.get());
+        assertArrayEquals(new byte[]{2}, bytes);
+    }
+
+    @Test
+    void getBaseMapBytes_separateFromTileBytes() throws Exception {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:01:00Z"));
+        service.getTileBytes("GET", "https://basemap.com/8/1/2", null, () -> new byte[]{1});
+
+        byte[] bytes = service.getBaseMapBytes("https://basemap.com/8/1/2", () -> new byte[]{2});
+
+        assertArrayEquals(new byte[]{2}, bytes);
+    }
+
+    @Test
+    void evictBaseMapBytes_forcesReload() throws Exception {
+        TileCacheService service = createService(Instant.parse("2026-03-08T12:01:00Z"));
+        service.getBaseMapBytes("https://basemap.com/8/1/2", () -> new byte[]{1});
+        service.evictBaseMapBytes("https://basemap.com/8/1/2");
+
+        byte[] bytes = service.getBaseMapBytes("https://basemap.com/8/1/2", () -> new byte[]{2});
+
+        assertArrayEquals(new byte[]{2}, bytes);
+    }
+
+    // ── disk tier ──
+
+    private TileCacheService createDiskService(Instant now) {
+        TileCacheConfig config = new TileCacheConfig();
+        config.getDisk().setEnabled(true);
+        config.getDisk().setDirectory(diskCacheDirectory.toString());
+        return new TileCacheService(config, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void getTileBytes_diskEnabled_restartLoadsFromDisk() throws Exception {
+        TileCacheService service = createDiskService(Instant.parse("2026-03-08T12:01:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        service.getTileBytes("GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1, 2, 3};
+        });
+        service.close();
+
+        TileCacheService restarted = createDiskService(Instant.parse("2026-03-08T12:02:00Z"));
+        byte[] bytes = restarted.getTileBytes("GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return new byte[]{4, 5, 6};
+        });
+
+        assertEquals(1, loads.get());
+        assertArrayEquals(new byte[]{1, 2, 3}, bytes);
+    }
+
+    @Test
+    void getBaseMapBytes_diskEnabled_restartLoadsFromDisk() throws Exception {
+        TileCacheService service = createDiskService(Instant.parse("2026-03-08T12:01:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        service.getBaseMapBytes("https://basemap.com/8/1/2", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1, 2, 3};
+        });
+        service.close();
+
+        // a radar frame later the base map is still valid
+        TileCacheService restarted = createDiskService(Instant.parse("2026-03-08T13:00:00Z"));
+        byte[] bytes = restarted.getBaseMapBytes("https://basemap.com/8/1/2", () -> {
+            loads.incrementAndGet();
+            return new byte[]{4, 5, 6};
+        });
+
+        assertEquals(1, loads.get());
+        assertArrayEquals(new byte[]{1, 2, 3}, bytes);
+    }
+
+    @Test
+    void evictBaseMapBytes_diskEnabled_restartLoadsAgain() throws Exception {
+        TileCacheService service = createDiskService(Instant.parse("2026-03-08T12:01:00Z"));
+        service.getBaseMapBytes("https://basemap.com/8/1/2", () -> new byte[]{1});
+        service.evictBaseMapBytes("https://basemap.com/8/1/2");
+        service.close();
+
+        TileCacheService restarted = createDiskService(Instant.parse("2026-03-08T12:02:00Z"));
+        byte[] bytes = restarted.getBaseMapBytes("https://basemap.com/8/1/2", () -> new byte[]{2});
+
+        assertArrayEquals(new byte[]{2}, bytes);
+    }
+
+    @Test
+    void getTileBytes_diskEnabled_expiredFrameLoadsAgain() throws Exception {
+        TileCacheService service = createDiskService(Instant.parse("2026-03-08T12:01:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        service.getTileBytes("GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return new byte[]{1};
+        });
+        service.close();
+
+        TileCacheService restarted = createDiskService(Instant.parse("2026-03-08T12:06:00Z"));
+        restarted.getTileBytes("GET", "https://radar.com/1/2/3", "", () -> {
+            loads.incrementAndGet();
+            return new byte[]{2};
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void evictTileBytes_diskEnabled_removesFromDisk() throws Exception {
+        TileCacheService service = createDiskService(Instant.parse("2026-03-08T12:01:00Z"));
+        service.getTileBytes("GET", "https://radar.com/1/2/3", "", () -> new byte[]{1});
+        service.evictTileBytes("GET", "https://radar.com/1/2/3", "");
+        service.close();
+
+        TileCacheService restarted = createDiskService(Instant.parse("2026-03-08T12:02:00Z"));
+        byte[] bytes = restarted.getTileBytes("GET", "https://radar.com/1/2/3", "", () -> new byte[]{2});
+
+        assertArrayEquals(new byte[]{2}, bytes);
+    }
+}
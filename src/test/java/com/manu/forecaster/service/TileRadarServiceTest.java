@@ -1,24 +1,32 @@
 package com.manu.forecaster.service;
 
+import com.manu.forecaster.dto.configuration.TileCacheConfig;
 import com.manu.forecaster.dto.configuration.TileRadarConfig;
 import com.manu.forecaster.dto.configuration.TileRadarImageryConfig;
 import com.manu.forecaster.dto.nowcast.Nowcast;
+import com.manu.forecaster.dto.tile.Coordinate;
 import com.manu.forecaster.dto.tile.TileRapresentation;
 import com.manu.forecaster.exception.ConfigurationException;
 import com.manu.forecaster.exception.RestException;
+import com.manu.forecaster.utils.TileUtils;
 import okhttp3.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -30,6 +38,8 @@ class TileRadarServiceTest {
 
     private RestService restService;
     private SpelService spelService;
+    private TileCacheService tileCacheService;
+    private final Executor executor = Executors.newVirtualThreadPerTaskExecutor();
     private TileRadarConfig tileRadarConfig;
     private byte[] pngBytes;
 
@@ -37,6 +47,7 @@ class TileRadarServiceTest {
     void setUp() throws IOException {
         restService = mock(RestService.class);
         spelService = mock(SpelService.class);
+        tileCacheService = new TileCacheService(new TileCacheConfig(), Clock.systemUTC());
         tileRadarConfig = new TileRadarConfig();
         tileRadarConfig.setName("test-radar");
         tileRadarConfig.setZoomLevel(6);
@@ -93,7 +104,7 @@ class TileRadarServiceTest {
     @Test
     void getName_returnsConfigName() {
         TileRadarService service = new TileRadarService(
-                tileRadarConfig, restService, spelService, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
         );
 
         assertEquals("test-radar", service.getName());
@@ -106,10 +117,10 @@ class TileRadarServiceTest {
         setupMocksForImageFetch();
 
         TileRadarService service = new TileRadarService(
-                tileRadarConfig, restService, spelService, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
         );
 
-        List<Nowcast> nowcasts = service.getNowcasts(new BigDecimal("45.0"), new BigDecimal("9.0"));
+        List<Nowcast> nowcasts = service.getNowcasts(45.0, 9.0);
 
         assertEquals(1, nowcasts.size());
         assertEquals("precip", nowcasts.get(0).getImageryName());
@@ -124,10 +135,10 @@ class TileRadarServiceTest {
         setupMocksForImageFetch();
 
         TileRadarService service = new TileRadarService(
-                tileRadarConfig, restService, spelService, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
         );
 
-        List<Nowcast> nowcasts = service.getNowcasts(new BigDecimal("45.0"), new BigDecimal("9.0"));
+        List<Nowcast> nowcasts = service.getNowcasts(45.0, 9.0);
 
         assertEquals(2, nowcasts.size());
         assertEquals("precip", nowcasts.get(0).getImageryName());
@@ -140,11 +151,11 @@ class TileRadarServiceTest {
         tileRadarConfig.setImagery(List.of());
 
         TileRadarService service = new TileRadarService(
-                tileRadarConfig, restService, spelService, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
         );
 
         assertThrows(ConfigurationException.class,
-                () -> service.getNowcastImage(new BigDecimal("45.0"), new BigDecimal("9.0"), "precip"));
+                () -> service.getNowcastImage(45.0, 9.0, "precip"));
     }
 
     @Test
@@ -154,11 +165,11 @@ class TileRadarServiceTest {
         tileRadarConfig.setImagery(List.of(imagery));
 
         TileRadarService service = new TileRadarService(
-                tileRadarConfig, restService, spelService, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
         );
 
         assertThrows(NoSuchElementException.class,
-                () -> service.getNowcastImage(new BigDecimal("45.0"), new BigDecimal("9.0"), "nonexistent"));
+                () -> service.getNowcastImage(45.0, 9.0, "nonexistent"));
     }
 
     @Test
@@ -169,10 +180,10 @@ class TileRadarServiceTest {
         setupMocksForImageFetch();
 
         TileRadarService service = new TileRadarService(
-                tileRadarConfig, restService, spelService, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
         );
 
-        BufferedImage result = service.getNowcastImage(new BigDecimal("45.0"), new BigDecimal("9.0"), "precip");
+        BufferedImage result = service.getNowcastImage(45.0, 9.0, "precip");
 
         assertNotNull(result);
         assertTrue(result.getWidth() > 0);
@@ -187,12 +198,15 @@ class TileRadarServiceTest {
         setupMocksForImageFetch();
 
         TileRadarService service = new TileRadarService(
-                tileRadarConfig, restService, spelService, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
         );
 
-        BufferedImage result = service.getNowcastImage(new BigDecimal("45.0"), new BigDecimal("9.0"), "precip");
+        BufferedImage result = service.getNowcastImage(45.0, 9.0, "precip");
 
         assertNotNull(result);
+        // the radar window is scaled to the base map size
+        assertEquals(256, result.getWidth());
+        assertEquals(256, result.getHeight());
     }
 
     @Test
@@ -205,11 +219,120 @@ class TileRadarServiceTest {
         when(restService.executeRequest(any(Request.class))).thenThrow(new IOException("connection failed"));
 
         TileRadarService service = new TileRadarService(
-                tileRadarConfig, restService, spelService, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
         );
 
         assertThrows(IOException.class,
-                () -> service.getNowcasts(new BigDecimal("45.0"), new BigDecimal("9.0")));
+                () -> service.getNowcasts(45.0, 9.0));
+    }
+
+    @Test
+    void getNowcasts_rasterCacheDisabled_decodesWindowOnEveryRequest() throws Exception {
+        TileRadarImageryConfig imagery = createImagery("precip", "https://radar.com/{z}/{x}/{y}", "GET");
+        tileRadarConfig.setImagery(List.of(imagery));
+        setupMocksForImageFetch();
+        TileCacheConfig tileCacheConfig = new TileCacheConfig();
+        tileCacheConfig.setRasterMaxSize(DataSize.ofBytes(0));
+        TileCacheService bytesOnlyCache = new TileCacheService(tileCacheConfig, Clock.systemUTC());
+
+        TileRadarService service = new TileRadarService(
+                tileRadarConfig, restService, spelService, bytesOnlyCache, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+        );
+
+        List<Nowcast> first = service.getNowcasts(45.0, 9.0);
+        List<Nowcast> second = service.getNowcasts(45.0, 9.0);
+
+        // the tile bytes are still cached
+        verify(restService, times(1)).executeRequest(any(Request.class));
+        assertEquals("clear", first.get(0).getPointWeatherCondition());
+        assertEquals(first.get(0).getAreaWeatherCoinditions(), second.get(0).getAreaWeatherCoinditions());
+    }
+
+    @Test
+    void getNowcasts_invalidImage_throwsRestExceptionAndEvictsTile() throws Exception {
+        TileRadarImageryConfig imagery = createImagery("precip", "https://radar.com/{z}/{x}/{y}", "GET");
+        tileRadarConfig.setImagery(List.of(imagery));
+        setupMocksForImageFetch();
+        when(restService.validateResponse(any(Response.class)))
+                .thenAnswer(inv -> ResponseBody.create("not an image", MediaType.parse("text/plain")));
+
+        TileRadarService service = new TileRadarService(
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+        );
+
+        assertThrows(RestException.class,
+                () -> service.getNowcasts(45.0, 9.0));
+        assertThrows(RestException.class,
+                () -> service.getNowcasts(45.0, 9.0));
+
+        // the broken tile is not served from the cache
+        verify(restService, times(2)).executeRequest(any(Request.class));
+    }
+
+    @Test
+    void getNowcastImage_radarCacheDisabled_fetchesBaseMapOnce() throws Exception {
+        tileRadarConfig.setZoomLevel(8);
+        TileRadarImageryConfig imagery = createImagery("precip", "https://radar.com/{z}/{x}/{y}", "GET");
+        tileRadarConfig.setImagery(List.of(imagery));
+        setupMocksForImageFetch();
+        TileCacheConfig tileCacheConfig = new TileCacheConfig();
+        tileCacheConfig.setMaxSize(DataSize.ofBytes(0));
+        TileCacheService baseMapOnlyCache = new TileCacheService(tileCacheConfig, Clock.systemUTC());
+
+        TileRadarService service = new TileRadarService(
+                tileRadarConfig, restService, spelService, baseMapOnlyCache, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+        );
+
+        service.getNowcastImage(45.0, 9.0, "precip");
+        service.getNowcastImage(45.0, 9.0, "precip");
+
+        // the radar tile is fetched on every request, the base map tile comes from its own cache
+        verify(restService, times(3)).executeRequest(any(Request.class));
+    }
+
+    @Test
+    void getNowcastImage_baseMapFetchFails_propagates() throws Exception {
+        tileRadarConfig.setZoomLevel(8);
+        TileRadarImageryConfig imagery = createImagery("precip", "https://radar.com/{z}/{x}/{y}", "GET");
+        tileRadarConfig.setImagery(List.of(imagery));
+        setupMocksForImageFetch();
+        when(restService.executeRequest(any(Request.class))).thenAnswer(inv -> {
+            Request request = inv.getArgument(0);
+            if (request.url().host().equals("basemap.com")) {
+                throw new IOException("Base map unreachable");
+            }
+            return buildOkHttpResponse();
+        });
+
+        TileRadarService service = new TileRadarService(
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+        );
+
+        IOException exception = assertThrows(IOException.class,
+                () -> service.getNowcastImage(45.0, 9.0, "precip"));
+        assertEquals("Base map unreachable", exception.getMessage());
+    }
+
+    @Test
+    void getNowcastImage_radarFetchFails_cancelsBaseMapFetch() throws Exception {
+        tileRadarConfig.setZoomLevel(8);
+        TileRadarImageryConfig imagery = createImagery("precip", "https://radar.com/{z}/{x}/{y}", "GET");
+        tileRadarConfig.setImagery(List.of(imagery));
+        setupMocksForImageFetch();
+        when(restService.executeRequest(any(Request.class))).thenThrow(new IOException("Radar unreachable"));
+        // the base map fetch is held until the radar fetch has failed
+        List<Runnable> heldTasks = new ArrayList<>();
+
+        TileRadarService service = new TileRadarService(
+                tileRadarConfig, restService, spelService, tileCacheService, heldTasks::add, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+        );
+
+        IOException exception = assertThrows(IOException.class,
+                () -> service.getNowcastImage(45.0, 9.0, "precip"));
+        heldTasks.forEach(Runnable::run);
+
+        assertEquals("Radar unreachable", exception.getMessage());
+        verify(restService, times(1)).executeRequest(any(Request.class));
     }
 
     @Test
@@ -222,13 +345,123 @@ class TileRadarServiceTest {
         setupMocksForImageFetch();
 
         TileRadarService service = new TileRadarService(
-                tileRadarConfig, restService, spelService, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
         );
 
-        BufferedImage result = service.getNowcastImage(new BigDecimal("45.0"), new BigDecimal("9.0"), "precip");
+        BufferedImage result = service.getNowcastImage(45.0, 9.0, "precip");
 
         assertNotNull(result);
         // 2 calls: one for radar image, one for base map
         verify(restService, times(2)).executeRequest(any(Request.class));
     }
+
+    @Test
+    void getNowcasts_sameTileTwice_fetchesOnlyOnce() throws Exception {
+        TileRadarImageryConfig imagery = createImagery("precip", "https://radar.com/{z}/{x}/{y}", "GET");
+        tileRadarConfig.setImagery(List.of(imagery));
+        setupMocksForImageFetch();
+
+        TileRadarService service = new TileRadarService(
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+        );
+
+        service.getNowcasts(45.0, 9.0);
+        service.getNowcasts(45.0, 9.0);
+
+        verify(restService, times(1)).executeRequest(any(Request.class));
+    }
+
+    @Test
+    void prefetch_thenNowcast_servedFromRasterCache() throws Exception {
+        TileRadarImageryConfig imagery = createImagery("precip", "https://radar.com/{z}/{x}/{y}", "GET");
+        tileRadarConfig.setImagery(List.of(imagery));
+        setupMocksForImageFetch();
+        TileRapresentation tile = TileUtils.latlongToTile(45.0, 9.0, 6, 256);
+
+        TileRadarService service = new TileRadarService(
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+        );
+
+        service.prefetch(tile.getX(), tile.getY());
+        List<Nowcast> nowcasts = service.getNowcasts(45.0, 9.0);
+
+        verify(restService, times(1)).executeRequest(any(Request.class));
+        assertEquals("clear", nowcasts.get(0).getPointWeatherCondition());
+    }
+
+    @Test
+    void prefetch_rasterCacheDisabled_cachesTheBytes() throws Exception {
+        TileRadarImageryConfig imagery = createImagery("precip", "https://radar.com/{z}/{x}/{y}", "GET");
+        tileRadarConfig.setImagery(List.of(imagery));
+        setupMocksForImageFetch();
+        TileCacheConfig tileCacheConfig = new TileCacheConfig();
+        tileCacheConfig.setRasterMaxSize(DataSize.ofBytes(0));
+        TileCacheService bytesOnlyCache = new TileCacheService(tileCacheConfig, Clock.systemUTC());
+        TileRapresentation tile = TileUtils.latlongToTile(45.0, 9.0, 6, 256);
+
+        TileRadarService service = new TileRadarService(
+                tileRadarConfig, restService, spelService, bytesOnlyCache, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+        );
+
+        service.prefetch(tile.getX(), tile.getY());
+        service.getNowcasts(45.0, 9.0);
+
+        verify(restService, times(1)).executeRequest(any(Request.class));
+    }
+
+    @Test
+    void getNowcastsBatch_pointsOnSameTile_fetchEachTileOnce() throws Exception {
+        TileRadarImageryConfig imagery = createImagery("precip", "https://radar.com/{z}/{x}/{y}", "GET");
+        tileRadarConfig.setImagery(List.of(imagery));
+        setupMocksForImageFetch();
+        // resolve the tile xyz, so that different tiles have different urls
+        when(spelService.applyTemplates(anyString(), anyMap(), any(TileRapresentation.class)))
+                .thenAnswer(inv -> {
+                    String s = inv.getArgument(0);
+                    TileRapresentation tile = inv.getArgument(2);
+                    return s.replace("{x}", String.valueOf(tile.getX())).replace("{y}", String.valueOf(tile.getY()));
+                });
+
+        TileRadarService service = new TileRadarService(
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+        );
+
+        List<List<Nowcast>> nowcasts = service.getNowcasts(List.of(
+                new Coordinate(new BigDecimal("9.0"), new BigDecimal("45.0")),
+                new Coordinate(new BigDecimal("15.0"), new BigDecimal("40.0")),
+                new Coordinate(new BigDecimal("9.01"), new BigDecimal("45.01"))
+        ));
+
+        // three points on two distinct tiles, 45.0/9.0 and 45.01/9.01 share the zoom 8 tile x=134 y=92
+        verify(restService, times(2)).executeRequest(any(Request.class));
+        assertEquals(3, nowcasts.size());
+        for (var pointNowcasts : nowcasts) {
+            assertEquals(1, pointNowcasts.size());
+            assertEquals("precip", pointNowcasts.get(0).getImageryName());
+            assertEquals("clear", pointNowcasts.get(0).getPointWeatherCondition());
+        }
+    }
+
+    @Test
+    void getNowcastsBatch_multipleImagery_keepsImageryOrderForEveryPoint() throws Exception {
+        TileRadarImageryConfig imagery1 = createImagery("precip", "https://radar.com/1/{z}/{x}/{y}", "GET");
+        TileRadarImageryConfig imagery2 = createImagery("wind", "https://radar.com/2/{z}/{x}/{y}", "GET");
+        tileRadarConfig.setImagery(List.of(imagery1, imagery2));
+        setupMocksForImageFetch();
+
+        TileRadarService service = new TileRadarService(
+                tileRadarConfig, restService, spelService, tileCacheService, executor, 8, 256, "https://basemap.com/{z}/{x}/{y}", "test-agent"
+        );
+
+        List<List<Nowcast>> nowcasts = service.getNowcasts(List.of(
+                new Coordinate(new BigDecimal("9.0"), new BigDecimal("45.0")),
+                new Coordinate(new BigDecimal("15.0"), new BigDecimal("40.0"))
+        ));
+
+        assertEquals(2, nowcasts.size());
+        for (var pointNowcasts : nowcasts) {
+            assertEquals("precip", pointNowcasts.get(0).getImageryName());
+            assertEquals("wind", pointNowcasts.get(1).getImageryName());
+        }
+    }
 }
@@ -5,6 +5,7 @@ import com.manu.forecaster.dto.configuration.WebScraperConfig;
 import com.manu.forecaster.dto.configuration.WebScraperForecastsConfig;
 import com.manu.forecaster.dto.forecast.ForecastSource;
 import com.manu.forecaster.exception.DisabledException;
+import com.manu.forecaster.service.RestService;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
@@ -27,7 +28,7 @@ class MeteblueScrapeServiceTest {
     @Test
     void getForecasts_whenDisabled_throwsDisabledException() {
         WebScraperConfig config = buildDisabledConfig();
-        MeteblueScrapeService service = new MeteblueScrapeService("test-agent", config);
+        MeteblueScrapeService service = new MeteblueScrapeService(new RestService(), "test-agent", config);
 
         DisabledException ex = assertThrows(DisabledException.class,
                 () -> service.getForecasts(Timeframe.TODAY, "45.0", "9.0"));
@@ -38,7 +39,7 @@ class MeteblueScrapeServiceTest {
     @Test
     void getForecasts_whenDisabled_exceptionHasBadRequestStatus() {
         WebScraperConfig config = buildDisabledConfig();
-        MeteblueScrapeService service = new MeteblueScrapeService("test-agent", config);
+        MeteblueScrapeService service = new MeteblueScrapeService(new RestService(), "test-agent", config);
 
         DisabledException ex = assertThrows(DisabledException.class,
                 () -> service.getForecasts(Timeframe.TODAY, "45.0", "9.0"));
@@ -3,15 +3,26 @@ package com.manu.forecaster.service.scrape;
 import com.manu.forecaster.constant.Timeframe;
 import com.manu.forecaster.dto.configuration.WebScraperConfig;
 import com.manu.forecaster.dto.configuration.WebScraperForecastsConfig;
+import com.manu.forecaster.exception.ConfigurationException;
 import com.manu.forecaster.exception.DisabledException;
+import com.manu.forecaster.exception.GeneralDataException;
+import com.manu.forecaster.exception.RestException;
 import com.manu.forecaster.service.RestService;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.mock;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 class MeteocielScrapeServiceTest {
 
@@ -51,4 +62,114 @@ class MeteocielScrapeServiceTest {
 
         assertEquals(org.springframework.http.HttpStatus.BAD_REQUEST, ex.getHttpStatus());
     }
+
+    // ── geolocation cache ──
+
+    private WebScraperConfig buildEnabledConfig() {
+        WebScraperConfig config = buildDisabledConfig();
+        config.setEnabled(true);
+        config.setGeolocationCacheRadius(1000);
+        return config;
+    }
+
+    private RestService mockGeolocation(String responseBody) throws IOException, RestException {
+        RestService restService = mock(RestService.class);
+        when(restService.executeRequest(any())).thenAnswer(invocation -> new Response.Builder()
+                .request(invocation.getArgument(0))
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(responseBody, MediaType.parse("text/plain")))
+                .build());
+        when(restService.validateResponse(any(Response.class))).thenAnswer(invocation -> ((Response) invocation.getArgument(0)).body());
+        return restService;
+    }
+
+    @Test
+    void getLocationId_returnsTheIdOfTheGeolocationResponse() throws Exception {
+        RestService restService = mockGeolocation("Milano|12345|0");
+        MeteocielScrapeService service = new MeteocielScrapeService(restService, "test-agent", buildEnabledConfig());
+
+        assertEquals("12345", service.getLocationId("45.4642", "9.19"));
+    }
+
+    @Test
+    void getLocationId_nearbyPoint_geolocatesOnce() throws Exception {
+        RestService restService = mockGeolocation("Milano|12345|0");
+        MeteocielScrapeService service = new MeteocielScrapeService(restService, "test-agent", buildEnabledConfig());
+
+        service.getLocationId("45.4642", "9.19");
+        // ~500m north
+        String locationId = service.getLocationId("45.4687", "9.19");
+
+        assertEquals("12345", locationId);
+        verify(restService, times(1)).executeRequest(any());
+    }
+
+    @Test
+    void getLocationId_farPoint_geolocatesAgain() throws Exception {
+        RestService restService = mockGeolocation("Milano|12345|0");
+        MeteocielScrapeService service = new MeteocielScrapeService(restService, "test-agent", buildEnabledConfig());
+
+        service.getLocationId("45.4642", "9.19");
+        // ~2km east
+        service.getLocationId("45.4642", "9.2156");
+
+        verify(restService, times(2)).executeRequest(any());
+    }
+
+    @Test
+    void getLocationId_cacheDisabled_geolocatesEveryTime() throws Exception {
+        WebScraperConfig config = buildEnabledConfig();
+        config.setGeolocationCacheMaxEntries(0);
+        RestService restService = mockGeolocation("Milano|12345|0");
+        MeteocielScrapeService service = new MeteocielScrapeService(restService, "test-agent", config);
+
+        service.getLocationId("45.4642", "9.19");
+        service.getLocationId("45.4642", "9.19");
+
+        verify(restService, times(2)).executeRequest(any());
+    }
+
+    @Test
+    void getLocationId_cacheFile_reusedAfterRestart(@TempDir Path tempDir) throws Exception {
+        WebScraperConfig config = buildEnabledConfig();
+        config.setGeolocationCacheFile(tempDir.resolve("meteociel").resolve("locations.tsv").toString());
+        new MeteocielScrapeService(mockGeolocation("Milano|12345|0"), "test-agent", config)
+                .getLocationId("45.4642", "9.19");
+
+        RestService restService = mockGeolocation("Milano|12345|0");
+        MeteocielScrapeService restarted = new MeteocielScrapeService(restService, "test-agent", config);
+
+        assertEquals("12345", restarted.getLocationId("45.4687", "9.19"));
+        verify(restService, never()).executeRequest(any());
+    }
+
+    @Test
+    void getLocationId_malformedResponse_throwsAndCachesNothing() throws Exception {
+        RestService restService = mockGeolocation("no location found");
+        MeteocielScrapeService service = new MeteocielScrapeService(restService, "test-agent", buildEnabledConfig());
+
+        assertThrows(GeneralDataException.class, () -> service.getLocationId("45.4642", "9.19"));
+        assertThrows(GeneralDataException.class, () -> service.getLocationId("45.4642", "9.19"));
+
+        verify(restService, times(2)).executeRequest(any());
+    }
+
+    @Test
+    void getLocationId_invalidCoordinate_throwsBadRequest() {
+        MeteocielScrapeService service = new MeteocielScrapeService(mock(RestService.class), "test-agent", buildEnabledConfig());
+
+        GeneralDataException ex = assertThrows(GeneralDataException.class, () -> service.getLocationId("north", "9.19"));
+
+        assertEquals(org.springframework.http.HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+    }
+
+    @Test
+    void constructor_negativeRadius_throwsConfigurationException() {
+        WebScraperConfig config = buildEnabledConfig();
+        config.setGeolocationCacheRadius(-1);
+
+        assertThrows(ConfigurationException.class, () -> new MeteocielScrapeService(mock(RestService.class), "test-agent", config));
+    }
 }
@@ -5,9 +5,24 @@ import com.manu.forecaster.dto.configuration.WebScraperConfig;
 import com.manu.forecaster.dto.configuration.WebScraperForecastsConfig;
 import com.manu.forecaster.dto.forecast.ForecastSource;
 import com.manu.forecaster.exception.GeneralDataException;
+import com.manu.forecaster.service.RestService;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.jsoup.nodes.Document;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -15,7 +30,15 @@ class ScrapeServiceTest {
 
 	private static class TestableScrapeService extends ScrapeService {
 		TestableScrapeService(WebScraperConfig config) {
-			super("test-agent", config);
+			super(new RestService(), "test-agent", config);
+		}
+
+		TestableScrapeService(WebScraperConfig config, Clock clock) {
+			super(new RestService(), "test-agent", config, clock);
+		}
+
+		TestableScrapeService(RestService restService, WebScraperConfig config) {
+			super(restService, "test-agent", config);
 		}
 
 		@Override
@@ -91,4 +114,210 @@ class ScrapeServiceTest {
 		assertEquals("https://example.com/{latitude}/{longitude}", originalConfig.getUrl());
 		assertEquals("https://example.com/45.0/9.0", result.getUrl());
 	}
+
+	@Test
+	void getDeadline_returnsConfiguredDeadline() {
+		WebScraperConfig config = buildConfig(List.of());
+		config.setDeadline(Duration.ofSeconds(3));
+		TestableScrapeService service = new TestableScrapeService(config);
+
+		assertEquals(Duration.ofSeconds(3), service.getDeadline());
+	}
+
+	@Test
+	void getDeadline_notConfigured_defaultsToTenSeconds() {
+		TestableScrapeService service = new TestableScrapeService(buildConfig(List.of()));
+
+		assertEquals(Duration.ofSeconds(10), service.getDeadline());
+	}
+
+	// ── forecast cache ──
+
+	private ForecastSource scrapeCounting(AtomicInteger scrapes) {
+		scrapes.incrementAndGet();
+		return ForecastSource.builder().name("test - today").forecasts(List.of()).build();
+	}
+
+	private TestableScrapeService createCachingService(WebScraperConfig config) {
+		return new TestableScrapeService(config, Clock.fixed(Instant.parse("2026-03-08T12:00:00Z"), ZoneOffset.UTC));
+	}
+
+	@Test
+	void getCachedForecasts_samePage_scrapesOnce() {
+		TestableScrapeService service = createCachingService(buildConfig(List.of()));
+		AtomicInteger scrapes = new AtomicInteger();
+
+		ForecastSource first = service.getCachedForecasts(Timeframe.TODAY, "https://example.com/45.12/9.34", () -> scrapeCounting(scrapes));
+		ForecastSource second = service.getCachedForecasts(Timeframe.TODAY, "https://example.com/45.12/9.34", () -> scrapeCounting(scrapes));
+
+		assertEquals(1, scrapes.get());
+		assertSame(first, second);
+	}
+
+	@Test
+	void getCachedForecasts_differentTimeframe_scrapesAgain() {
+		TestableScrapeService service = createCachingService(buildConfig(List.of()));
+		AtomicInteger scrapes = new AtomicInteger();
+
+		service.getCachedForecasts(Timeframe.TODAY, "https://example.com/45.12/9.34", () -> scrapeCounting(scrapes));
+		service.getCachedForecasts(Timeframe.TOMORROW, "https://example.com/45.12/9.34", () -> scrapeCounting(scrapes));
+
+		assertEquals(2, scrapes.get());
+	}
+
+	@Test
+	void getCachedForecasts_expiredTtl_scrapesAgain() {
+		WebScraperConfig config = buildConfig(List.of());
+		config.setCacheTtl(Duration.ZERO);
+		TestableScrapeService service = createCachingService(config);
+		AtomicInteger scrapes = new AtomicInteger();
+
+		service.getCachedForecasts(Timeframe.TODAY, "https://example.com/45.12/9.34", () -> scrapeCounting(scrapes));
+		service.getCachedForecasts(Timeframe.TODAY, "https://example.com/45.12/9.34", () -> scrapeCounting(scrapes));
+
+		assertEquals(2, scrapes.get());
+	}
+
+	@Test
+	void getCachedForecasts_cacheDisabled_scrapesEveryTime() {
+		WebScraperConfig config = buildConfig(List.of());
+		config.setCacheMaxEntries(0);
+		TestableScrapeService service = createCachingService(config);
+		AtomicInteger scrapes = new AtomicInteger();
+
+		service.getCachedForecasts(Timeframe.TODAY, "https://example.com/45.12/9.34", () -> scrapeCounting(scrapes));
+		service.getCachedForecasts(Timeframe.TODAY, "https://example.com/45.12/9.34", () -> scrapeCounting(scrapes));
+
+		assertEquals(2, scrapes.get());
+	}
+
+	@Test
+	void getCachedForecasts_scraperFails_propagatesAndCachesNothing() {
+		TestableScrapeService service = createCachingService(buildConfig(List.of()));
+		AtomicInteger scrapes = new AtomicInteger();
+
+		assertThrows(GeneralDataException.class, () -> service.getCachedForecasts(Timeframe.TODAY, "https://example.com", () -> {
+			throw new GeneralDataException(HttpStatus.EXPECTATION_FAILED, "page not found");
+		}));
+		service.getCachedForecasts(Timeframe.TODAY, "https://example.com", () -> scrapeCounting(scrapes));
+
+		assertEquals(1, scrapes.get());
+	}
+
+	@Test
+	void roundCoordinate_longerThanDecimals_rounded() {
+		TestableScrapeService service = new TestableScrapeService(buildConfig(List.of()));
+
+		assertEquals("45.47", service.roundCoordinate("45.4661"));
+		assertEquals("-9.19", service.roundCoordinate("-9.1859"));
+	}
+
+	@Test
+	void roundCoordinate_shorterThanDecimals_paddedWithZeros() {
+		TestableScrapeService service = new TestableScrapeService(buildConfig(List.of()));
+
+		assertEquals("45.00", service.roundCoordinate("45.0"));
+		assertEquals("9.00", service.roundCoordinate("9"));
+	}
+
+	@Test
+	void roundCoordinate_sameValueDifferentScale_sameString() {
+		TestableScrapeService service = new TestableScrapeService(buildConfig(List.of()));
+
+		assertEquals(service.roundCoordinate("45.10"), service.roundCoordinate("45.1"));
+	}
+
+	// ── getDocument ──
+
+	private RestService restServiceServing(int code, byte[] page, String contentType) {
+		return new RestService() {
+			@Override
+			public Response executeRequest(Request request) {
+				return new Response.Builder()
+						.request(request)
+						.protocol(Protocol.HTTP_1_1)
+						.code(code)
+						.message("test")
+						.body(ResponseBody.create(page, MediaType.parse(contentType)))
+						.build();
+			}
+		};
+	}
+
+	@Test
+	void getDocument_parsesThePageWithTheDeclaredCharset() {
+		byte[] page = "<html><body><p>Ensoleillé</p></body></html>".getBytes(StandardCharsets.ISO_8859_1);
+		RestService restService = restServiceServing(200, page, "text/html; charset=iso-8859-1");
+		TestableScrapeService service = new TestableScrapeService(restService, buildConfig(List.of()));
+
+		Document document = service.getDocument("https://example.com/forecast");
+
+		assertEquals("Ensoleillé", document.select("p").text());
+		assertEquals("https://example.com/forecast", document.location());
+	}
+
+	@Test
+	void getDocument_withSelectors_stopsAtTheMatches() {
+		byte[] page = "<html><body><table id=\"forecast\"><tr><td>1</td></tr></table><p>footer</p></body></html>".getBytes(StandardCharsets.UTF_8);
+		RestService restService = restServiceServing(200, page, "text/html");
+		TestableScrapeService service = new TestableScrapeService(restService, buildConfig(List.of()));
+
+		Document document = service.getDocument("https://example.com/forecast", "#forecast");
+
+		assertEquals("1", document.select("#forecast td").text());
+		assertFalse(document.text().contains("footer"));
+	}
+
+	private RestService restServiceServing(Buffer page) {
+		return new RestService() {
+			@Override
+			public Response executeRequest(Request request) {
+				return new Response.Builder()
+						.request(request)
+						.protocol(Protocol.HTTP_1_1)
+						.code(200)
+						.message("test")
+						.body(ResponseBody.create(page, MediaType.parse("text/html"), page.size()))
+						.build();
+			}
+		};
+	}
+
+	private Buffer pageWithFooter(int footerBytes) {
+		return new Buffer()
+				.writeUtf8("<html><body><table id=\"forecast\"><tr><td>1</td></tr></table><p>")
+				.writeUtf8("x".repeat(footerBytes))
+				.writeUtf8("</p></body></html>");
+	}
+
+	@Test
+	void getDocument_shortRemainder_isReadToTheEnd() {
+		Buffer page = pageWithFooter(60 * 1024);
+		TestableScrapeService service = new TestableScrapeService(restServiceServing(page), buildConfig(List.of()));
+
+		service.getDocument("https://example.com/forecast", "#forecast");
+
+		assertTrue(page.exhausted());
+	}
+
+	@Test
+	void getDocument_longRemainder_isLeftUnread() {
+		Buffer page = pageWithFooter(1024 * 1024);
+		TestableScrapeService service = new TestableScrapeService(restServiceServing(page), buildConfig(List.of()));
+
+		service.getDocument("https://example.com/forecast", "#forecast");
+
+		assertFalse(page.exhausted());
+	}
+
+	@Test
+	void getDocument_errorStatus_throwsGeneralDataException() {
+		RestService restService = restServiceServing(503, new byte[0], "text/html");
+		TestableScrapeService service = new TestableScrapeService(restService, buildConfig(List.of()));
+
+		GeneralDataException exception = assertThrows(GeneralDataException.class,
+				() -> service.getDocument("https://example.com/forecast"));
+
+		assertEquals(HttpStatus.EXPECTATION_FAILED, exception.getHttpStatus());
+	}
 }
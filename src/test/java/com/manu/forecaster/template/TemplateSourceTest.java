@@ -0,0 +1,56 @@
+package com.manu.forecaster.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TemplateSourceTest {
+
+    private static final Map<String, String> VALUES = Map.of("x", "10", "y", "20", "timestamp", "20260308/20260308_1200");
+
+    private String render(String source) {
+        return TemplateSource.parse(source).render(VALUES::get);
+    }
+
+    @Test
+    void render_noPlaceholders_returnsSource() {
+        assertEquals("https://radar.com/tile.png", render("https://radar.com/tile.png"));
+    }
+
+    @Test
+    void render_placeholders_replacesEveryOccurrence() {
+        assertEquals("https://radar.com/10/20/10.png", render("https://radar.com/{x}/{y}/{x}.png"));
+    }
+
+    @Test
+    void render_placeholdersAtEdges_replaced() {
+        assertEquals("10-20", render("{x}-{y}"));
+    }
+
+    @Test
+    void render_adjacentPlaceholders_replaced() {
+        assertEquals("1020", render("{x}{y}"));
+    }
+
+    @Test
+    void render_unknownPlaceholder_keptAsItIs() {
+        assertEquals("10/{missing}/20", render("{x}/{missing}/{y}"));
+    }
+
+    @Test
+    void render_jsonBody_keepsBraces() {
+        assertEquals("{\"time\": \"20260308/20260308_1200\"}", render("{\"time\": \"{timestamp}\"}"));
+    }
+
+    @Test
+    void render_emptyAndUnclosedBraces_keptAsLiterals() {
+        assertEquals("{}/10/{y", render("{}/{x}/{y"));
+    }
+
+    @Test
+    void render_nestedOpenBrace_usesInnermostPlaceholder() {
+        assertEquals("{a10", render("{a{x}"));
+    }
+}
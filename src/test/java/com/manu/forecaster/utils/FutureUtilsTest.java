@@ -0,0 +1,60 @@
+package com.manu.forecaster.utils;
+
+import com.manu.forecaster.exception.RestException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FutureUtilsTest {
+
+    private final Executor executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Test
+    void join_successfulCall_returnsResult() throws Exception {
+        CompletableFuture<String> future = FutureUtils.supplyAsync(() -> "result", executor);
+
+        assertEquals("result", FutureUtils.join(future));
+    }
+
+    @Test
+    void join_ioException_rethrowsOriginalException() {
+        CompletableFuture<String> future = FutureUtils.supplyAsync(() -> {
+            throw new IOException("connection failed");
+        }, executor);
+
+        IOException exception = assertThrows(IOException.class, () -> FutureUtils.join(future));
+        assertEquals("connection failed", exception.getMessage());
+    }
+
+    @Test
+    void join_restException_rethrowsOriginalException() {
+        CompletableFuture<String> future = FutureUtils.supplyAsync(() -> {
+            throw new RestException("bad response");
+        }, executor);
+
+        assertThrows(RestException.class, () -> FutureUtils.join(future));
+    }
+
+    @Test
+    void join_runtimeException_rethrowsOriginalException() {
+        CompletableFuture<String> future = FutureUtils.supplyAsync(() -> {
+            throw new IllegalStateException("broken");
+        }, executor);
+
+        assertThrows(IllegalStateException.class, () -> FutureUtils.join(future));
+    }
+
+    @Test
+    void joinUnchecked_runtimeException_rethrowsOriginalException() {
+        CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+            throw new IllegalStateException("broken");
+        }, executor);
+
+        assertThrows(IllegalStateException.class, () -> FutureUtils.joinUnchecked(future));
+    }
+}
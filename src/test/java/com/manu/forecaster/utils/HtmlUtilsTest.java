@@ -0,0 +1,187 @@
+package com.manu.forecaster.utils;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Elements;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HtmlUtilsTest {
+
+    private static final String PAGE = """
+            <html><body>
+            <div id="header"><p>menu</p><p>links</p></div>
+            <div id="content">
+              <b>GMT+1</b>
+              <table><tbody><tr><td>1</td></tr><tr><td>2</td></tr></tbody></table>
+            </div>
+            <div id="footer"><p>credits</p></div>
+            </body></html>
+            """;
+
+    private static StreamParser parse(Reader reader) {
+        return new StreamParser(Parser.htmlParser()).parse(reader, "");
+    }
+
+    @Test
+    void parseUntil_keepsTheMatchedSubtreeWhole() throws IOException {
+        try (StreamParser streamParser = parse(new StringReader(PAGE))) {
+            Document document = HtmlUtils.parseUntil(streamParser, List.of("#content"));
+
+            Elements rows = document.select("body > div:nth-child(2) > table > tbody > tr");
+            assertEquals(2, rows.size());
+            assertEquals("GMT+1", document.select("#content > b").text());
+        }
+    }
+
+    @Test
+    void parseUntil_emptiesTheElementsOutsideTheMatches() throws IOException {
+        try (StreamParser streamParser = parse(new StringReader(PAGE))) {
+            Document document = HtmlUtils.parseUntil(streamParser, List.of("#content"));
+
+            // still there, so that positional selectors count it
+            assertNotNull(document.selectFirst("#header"));
+            assertTrue(document.select("#header p").isEmpty());
+        }
+    }
+
+    @Test
+    void parseUntil_stopsAfterTheLastMatch() throws IOException {
+        try (StreamParser streamParser = parse(new StringReader(PAGE))) {
+            Document document = HtmlUtils.parseUntil(streamParser, List.of("#content > b", "#content > table"));
+
+            assertEquals(2, document.select("#content tr").size());
+            assertNull(document.selectFirst("#footer"));
+        }
+    }
+
+    @Test
+    void parseUntil_stopsReadingTheInput() throws IOException {
+        String page = "<html><body><div id=\"content\">forecast</div>" + "<p>filler</p>".repeat(100_000) + "</body></html>";
+        CountingReader reader = new CountingReader(page);
+
+        try (StreamParser streamParser = parse(reader)) {
+            HtmlUtils.parseUntil(streamParser, List.of("#content"));
+        }
+
+        assertTrue(reader.read < page.length() / 2, "read " + reader.read + " of " + page.length());
+    }
+
+    @Test
+    void parseUntil_noMatch_returnsTheDocumentWithoutMatches() throws IOException {
+        try (StreamParser streamParser = parse(new StringReader(PAGE))) {
+            Document document = HtmlUtils.parseUntil(streamParser, List.of("#missing"));
+
+            assertNotNull(document.body());
+            assertNull(document.selectFirst("#missing"));
+        }
+    }
+
+    @Test
+    void parseUntil_positionalSelector_matchesWhileTheParentIsOpen() throws IOException {
+        try (StreamParser streamParser = parse(new StringReader(PAGE))) {
+            Document document = HtmlUtils.parseUntil(streamParser, List.of("body > div:nth-child(2)"));
+
+            assertEquals(2, document.select("body > div:nth-child(2) > table > tbody > tr").size());
+        }
+    }
+
+    // ── openReader ──
+
+    private static String read(Reader reader) throws IOException {
+        try (reader) {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[1024];
+            for (int count; (count = reader.read(buffer)) != -1; ) {
+                builder.append(buffer, 0, count);
+            }
+            return builder.toString();
+        }
+    }
+
+    private static ByteArrayInputStream bytes(byte[]... parts) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (var part : parts) {
+            output.writeBytes(part);
+        }
+        return new ByteArrayInputStream(output.toByteArray());
+    }
+
+    @Test
+    void openReader_declaredCharset_decodesWithIt() throws IOException {
+        byte[] page = "<p>Ensoleillé</p>".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertEquals("<p>Ensoleillé</p>", read(HtmlUtils.openReader(bytes(page), StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    void openReader_metaCharset_decodesWithIt() throws IOException {
+        byte[] page = "<html><head><meta charset=\"iso-8859-1\"></head><body>Ensoleillé</body></html>".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertTrue(read(HtmlUtils.openReader(bytes(page), null)).contains("Ensoleillé"));
+    }
+
+    @Test
+    void openReader_httpEquivCharset_decodesWithIt() throws IOException {
+        byte[] page = "<meta http-equiv=\"Content-Type\" content=\"text/html; charset=windows-1252\"><p>Voilé</p>".getBytes(Charset.forName("windows-1252"));
+
+        assertTrue(read(HtmlUtils.openReader(bytes(page), null)).contains("Voilé"));
+    }
+
+    @Test
+    void openReader_declaredCharset_winsOverMeta() throws IOException {
+        byte[] page = "<meta charset=\"iso-8859-1\"><p>Mitigé</p>".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(read(HtmlUtils.openReader(bytes(page), StandardCharsets.UTF_8)).contains("Mitigé"));
+    }
+
+    @Test
+    void openReader_byteOrderMark_winsAndIsSkipped() throws IOException {
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        byte[] page = "<p>Nuageux é</p>".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("<p>Nuageux é</p>", read(HtmlUtils.openReader(bytes(bom, page), StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    void openReader_unknownMetaCharset_fallsBackToUtf8() throws IOException {
+        byte[] page = "<meta charset=\"not-a-charset\"><p>Neige é</p>".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(read(HtmlUtils.openReader(bytes(page), null)).contains("Neige é"));
+    }
+
+    @Test
+    void openReader_pageLongerThanTheSniffedHead_readsItWhole() throws IOException {
+        String page = "<meta charset=\"iso-8859-1\">" + "<p>Pluie é</p>".repeat(2_000);
+
+        assertEquals(page, read(HtmlUtils.openReader(bytes(page.getBytes(StandardCharsets.ISO_8859_1)), null)));
+    }
+
+    private static class CountingReader extends StringReader {
+        private int read = 0;
+
+        CountingReader(String s) {
+            super(s);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                read += count;
+            }
+            return count;
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.manu.forecaster.utils;
 
-import com.manu.forecaster.dto.tile.TileBoundary;
+import com.manu.forecaster.constant.Resampling;
+import com.manu.forecaster.image.CompiledLegend;
+import com.manu.forecaster.image.LegendRaster;
 import org.junit.jupiter.api.Test;
 
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,6 +26,16 @@ class ImageUtilsTest {
         return image;
     }
 
+    private static Map<String, Integer> getColorMatchCount(BufferedImage image, Map<String, String> legend, int x, int y, int searchRadius) {
+        CompiledLegend compiledLegend = new CompiledLegend(legend);
+        return ImageUtils.getColorMatchCount(ImageUtils.toLegendRaster(image, compiledLegend), compiledLegend, x, y, searchRadius);
+    }
+
+    private static String getWeatherMatchByColor(BufferedImage image, Map<String, String> legend, int x, int y) {
+        CompiledLegend compiledLegend = new CompiledLegend(legend);
+        return ImageUtils.getWeatherMatchByColor(ImageUtils.toLegendRaster(image, compiledLegend), compiledLegend, x, y);
+    }
+
     // ── getColorMatchCount ──
 
     @Test
@@ -32,7 +47,7 @@ class ImageUtilsTest {
         Map<String, String> legend = new HashMap<>();
         legend.put("#FF0000", "rain-1");
 
-        Map<String, Integer> result = ImageUtils.getColorMatchCount(image, legend, 5, 5, 5);
+        Map<String, Integer> result = getColorMatchCount(image, legend, 5, 5, 5);
 
         assertEquals(100, result.get("rain-1"));
     }
@@ -47,7 +62,7 @@ class ImageUtilsTest {
         legend.put("#FF0000", "rain-1");
         legend.put("#0000FF", "snow-1");
 
-        Map<String, Integer> result = ImageUtils.getColorMatchCount(image, legend, 5, 5, 5);
+        Map<String, Integer> result = getColorMatchCount(image, legend, 5, 5, 5);
 
         assertEquals(0, result.get("rain-1"));
         assertEquals(0, result.get("snow-1"));
@@ -69,7 +84,7 @@ class ImageUtilsTest {
         legend.put("#FF0000", "rain-1");
 
         // center (5,5) radius 5 → startx=0, endx=10, starty=0, endy=10 → full image
-        Map<String, Integer> result = ImageUtils.getColorMatchCount(image, legend, 5, 5, 5);
+        Map<String, Integer> result = getColorMatchCount(image, legend, 5, 5, 5);
 
         assertEquals(50, result.get("rain-1"));
     }
@@ -84,11 +99,33 @@ class ImageUtilsTest {
         legend.put("#FF0000", "rain-1");
 
         // searching from (0,0) with radius 20 → clamped to full image
-        Map<String, Integer> result = ImageUtils.getColorMatchCount(image, legend, 0, 0, 20);
+        Map<String, Integer> result = getColorMatchCount(image, legend, 0, 0, 20);
 
         assertEquals(100, result.get("rain-1"));
     }
 
+    @Test
+    void getColorMatchCount_colorsSharingWeatherName_areSummed() {
+        // 10x10 image: left half red, right half blue, both mapped to "rain"
+        int red = 0xFFFF0000;
+        int blue = 0xFF0000FF;
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                image.setRGB(x, y, x < 5 ? red : blue);
+            }
+        }
+
+        Map<String, String> legend = new HashMap<>();
+        legend.put("#FF0000", "rain");
+        legend.put("#0000FF", "rain");
+
+        Map<String, Integer> result = getColorMatchCount(image, legend, 5, 5, 5);
+
+        assertEquals(1, result.size());
+        assertEquals(100, result.get("rain"));
+    }
+
     // ── getWeatherMatchByColor ──
 
     @Test
@@ -100,7 +137,7 @@ class ImageUtilsTest {
         legend.put("#FF0000", "rain-1");
         legend.put("#0000FF", "snow-1");
 
-        String result = ImageUtils.getWeatherMatchByColor(image, legend, 2, 2);
+        String result = getWeatherMatchByColor(image, legend, 2, 2);
 
         assertEquals("rain-1", result);
     }
@@ -114,21 +151,124 @@ class ImageUtilsTest {
         legend.put("#FF0000", "rain-1");
         legend.put("#0000FF", "snow-1");
 
-        String result = ImageUtils.getWeatherMatchByColor(image, legend, 2, 2);
+        String result = getWeatherMatchByColor(image, legend, 2, 2);
 
         assertEquals("clear", result);
     }
 
-    // ── drawSquare ──
+    // ── legend raster ──
+
+    @Test
+    void toLegendRaster_classifiesLegendColors() {
+        int red = 0xFFFF0000;
+        int green = 0xFF00FF00;
+        BufferedImage image = createSolidImage(10, 10, green);
+        image.setRGB(3, 4, red);
+
+        CompiledLegend legend = new CompiledLegend(Map.of("#FF0000", "rain-1"));
+        LegendRaster raster = ImageUtils.toLegendRaster(image, legend);
+
+        assertEquals(10, raster.getWidth());
+        assertEquals(10, raster.getHeight());
+        assertEquals("rain-1", legend.getName(raster.classAt(3, 4)));
+        assertEquals(CompiledLegend.NO_MATCH, raster.classAt(4, 4));
+    }
+
+    // ── readImage / readLegendRaster ──
+
+    private static byte[] toPng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    void readImage_png_sameAsSource() throws IOException {
+        BufferedImage source = createSolidImage(10, 10, 0xFFFF0000);
+        source.setRGB(3, 4, 0x8000FF00);
+
+        BufferedImage image = ImageUtils.readImage(toPng(source));
+
+        assertEquals(10, image.getWidth());
+        assertEquals(0xFFFF0000, image.getRGB(0, 0));
+        assertEquals(0x8000FF00, image.getRGB(3, 4));
+    }
+
+    @Test
+    void readImage_unsupportedPng_fallsBackToImageIO() throws IOException {
+        BufferedImage source = new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY);
+        source.setRGB(2, 2, 0xFFFFFFFF);
+
+        BufferedImage image = ImageUtils.readImage(toPng(source));
+
+        assertEquals(0xFFFFFFFF, image.getRGB(2, 2));
+        assertEquals(0xFF000000, image.getRGB(0, 0));
+    }
+
+    @Test
+    void readImage_notAnImage_returnsNull() throws IOException {
+        assertNull(ImageUtils.readImage("not an image".getBytes()));
+    }
+
+    @Test
+    void readLegendRaster_png_sameAsToLegendRaster() throws IOException {
+        BufferedImage source = createSolidImage(20, 20, 0xFF000000);
+        for (int x = 5; x < 15; x++) {
+            source.setRGB(x, 8, 0xFFFF0000);
+            source.setRGB(x, 9, 0xFF00FF00);
+        }
+        CompiledLegend legend = new CompiledLegend(Map.of("#FF0000", "rain", "#00FF00", "snow"));
+
+        LegendRaster expected = ImageUtils.toLegendRaster(source, legend);
+        LegendRaster raster = ImageUtils.readLegendRaster(toPng(source), legend);
+
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 20; x++) {
+                assertEquals(expected.classAt(x, y), raster.classAt(x, y));
+            }
+        }
+    }
+
+    @Test
+    void readLegendRaster_window_leavesOtherRowsClear() throws IOException {
+        BufferedImage source = createSolidImage(10, 10, 0xFFFF0000);
+        CompiledLegend legend = new CompiledLegend(Map.of("#FF0000", "rain"));
+
+        LegendRaster raster = ImageUtils.readLegendRaster(toPng(source), legend, 3, 6);
+
+        int[] counts = new int[2];
+        raster.countClasses(0, 0, 10, 10, counts);
+        assertEquals(30, counts[1]);
+        assertEquals(1, raster.classAt(0, 3));
+        assertEquals(CompiledLegend.NO_MATCH, raster.classAt(0, 6));
+    }
 
     @Test
-    void drawSquare_returnsSameDimensions() {
-        BufferedImage image = createSolidImage(50, 50, 0xFFFFFFFF);
+    void readLegendRaster_palettePng_sameAsToLegendRaster() throws IOException {
+        BufferedImage source = new BufferedImage(20, 20, BufferedImage.TYPE_BYTE_INDEXED);
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 20; x++) {
+                source.setRGB(x, y, x < 10 ? 0xFFFF0000 : (y < 5 ? 0xFF00FF00 : 0xFF000000));
+            }
+        }
+        CompiledLegend legend = new CompiledLegend(Map.of("#FF0000", "rain", "#00FF00", "snow"));
 
-        BufferedImage result = ImageUtils.drawSquare(image, 25, 25, 10);
+        LegendRaster expected = ImageUtils.toLegendRaster(source, legend);
+        LegendRaster raster = ImageUtils.readLegendRaster(toPng(source), legend);
 
-        assertEquals(50, result.getWidth());
-        assertEquals(50, result.getHeight());
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 20; x++) {
+                assertEquals(expected.classAt(x, y), raster.classAt(x, y));
+            }
+        }
+        assertEquals(legend.classify(0xFFFF0000), raster.classAt(0, 0));
+    }
+
+    @Test
+    void readLegendRaster_notAnImage_returnsNull() throws IOException {
+        CompiledLegend legend = new CompiledLegend(Map.of("#FF0000", "rain"));
+
+        assertNull(ImageUtils.readLegendRaster("not an image".getBytes(), legend));
     }
 
     // ── overlayImage ──
@@ -138,7 +278,7 @@ class ImageUtilsTest {
         BufferedImage base = createSolidImage(20, 20, 0xFFFF0000);
         BufferedImage overlay = createSolidImage(20, 20, 0xFF0000FF);
 
-        BufferedImage result = ImageUtils.overlayImage(base, overlay, 0.5f);
+        BufferedImage result = ImageUtils.overlayImage(base, overlay, 0.5f, 5, 5, 2);
 
         assertEquals(20, result.getWidth());
         assertEquals(20, result.getHeight());
@@ -151,50 +291,170 @@ class ImageUtilsTest {
         BufferedImage base = createSolidImage(10, 10, red);
         BufferedImage overlay = createSolidImage(10, 10, 0xFF0000FF);
 
-        BufferedImage result = ImageUtils.overlayImage(base, overlay, 0f);
+        BufferedImage result = ImageUtils.overlayImage(base, overlay, 0f, 5, 5, 2);
 
         // with 0 opacity overlay is invisible, base colors should be preserved
         assertEquals(red, result.getRGB(5, 5));
     }
 
+    @Test
+    void overlayImage_transparentOverlay_preservesBaseColors() {
+        BufferedImage base = createSolidImage(10, 10, 0xFF336699);
+        BufferedImage overlay = createSolidImage(10, 10, 0x000000FF);
+
+        BufferedImage result = ImageUtils.overlayImage(base, overlay, 1f, 5, 5, 2);
+
+        assertEquals(0xFF336699, result.getRGB(5, 5));
+    }
+
+    @Test
+    void overlayImage_halfOpacity_blendsColors() {
+        BufferedImage base = createSolidImage(10, 10, 0xFFFF0000);
+        BufferedImage overlay = createSolidImage(10, 10, 0xFF0000FF);
+
+        BufferedImage result = ImageUtils.overlayImage(base, overlay, 0.5f, 5, 5, 2);
+
+        int color = result.getRGB(5, 5);
+        assertEquals(0xFF, color >>> 24);
+        assertEquals(0x80, (color >> 16) & 0xFF, 1);
+        assertEquals(0x00, (color >> 8) & 0xFF);
+        assertEquals(0x80, color & 0xFF, 1);
+    }
+
+    @Test
+    void overlayImage_doesNotModifyBase() {
+        BufferedImage base = createSolidImage(10, 10, 0xFFFF0000);
+        BufferedImage overlay = createSolidImage(10, 10, 0xFF0000FF);
+
+        ImageUtils.overlayImage(base, overlay, 1f, 5, 5, 2);
+
+        assertEquals(0xFFFF0000, base.getRGB(5, 5));
+        assertEquals(0xFFFF0000, base.getRGB(3, 3));
+    }
+
+    @Test
+    void overlayImage_smallerOverlay_blendsOnlyTheOverlap() {
+        BufferedImage base = createSolidImage(10, 10, 0xFFFF0000);
+        BufferedImage overlay = createSolidImage(5, 5, 0xFF0000FF);
+
+        BufferedImage result = ImageUtils.overlayImage(base, overlay, 1f, 5, 5, 2);
+
+        assertEquals(0xFF0000FF, result.getRGB(4, 4));
+        assertEquals(0xFFFF0000, result.getRGB(5, 5));
+    }
+
+    @Test
+    void overlayImage_drawsOnlyTheSquareOutline() {
+        BufferedImage base = createSolidImage(50, 50, 0xFFFFFFFF);
+        BufferedImage overlay = createSolidImage(50, 50, 0x00000000);
+
+        BufferedImage result = ImageUtils.overlayImage(base, overlay, 1f, 25, 25, 10);
+
+        assertEquals(0xFF000000, result.getRGB(15, 15));
+        assertEquals(0xFF000000, result.getRGB(36, 25));
+        assertEquals(0xFFFFFFFF, result.getRGB(25, 25));
+        assertEquals(0xFFFFFFFF, result.getRGB(14, 15));
+    }
+
+    @Test
+    void overlayImage_squarePartiallyOutside_drawsVisibleSides() {
+        BufferedImage base = createSolidImage(20, 20, 0xFFFFFFFF);
+        BufferedImage overlay = createSolidImage(20, 20, 0x00000000);
+
+        BufferedImage result = ImageUtils.overlayImage(base, overlay, 1f, 0, 0, 5);
+
+        assertEquals(0xFF000000, result.getRGB(6, 0));
+        assertEquals(0xFF000000, result.getRGB(0, 6));
+        assertEquals(0xFFFFFFFF, result.getRGB(0, 0));
+    }
+
+    @Test
+    void overlayImage_largeImage_blendsEveryRow() {
+        // big enough to be split across cores
+        BufferedImage base = createSolidImage(600, 600, 0xFFFF0000);
+        BufferedImage overlay = createSolidImage(600, 600, 0xFF0000FF);
+
+        BufferedImage result = ImageUtils.overlayImage(base, overlay, 1f, 300, 300, 50);
+
+        assertEquals(0xFF0000FF, result.getRGB(0, 0));
+        assertEquals(0xFF0000FF, result.getRGB(599, 599));
+        assertEquals(0xFF000000, result.getRGB(250, 250));
+        assertEquals(0xFF000000, result.getRGB(351, 351));
+    }
+
     // ── cropAndScale ──
 
     @Test
-    void cropAndScale_correctDimensions() {
-        BufferedImage source = createSolidImage(100, 100, 0xFFFF0000);
-        TileBoundary boundary = TileBoundary.builder()
-                .topLeftXPixel(10)
-                .topLeftYPixel(10)
-                .bottomRightXPixel(60)
-                .bottomRightYPixel(60)
-                .build();
+    void cropAndScale_window_correctDimensions() {
+        BufferedImage source = createSolidImage(256, 256, 0xFFFF0000);
 
-        BufferedImage result = ImageUtils.cropAndScale(source, boundary, 2.0);
+        BufferedImage result = ImageUtils.cropAndScale(source, 64, 128, 32, 32, 256, 256, Resampling.BILINEAR);
 
-        // crop is 50x50, scaled by 2 → 100x100
-        assertEquals(100, result.getWidth());
-        assertEquals(100, result.getHeight());
+        assertEquals(256, result.getWidth());
+        assertEquals(256, result.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_ARGB, result.getType());
     }
 
-    // ── scale ──
+    @Test
+    void cropAndScale_nearest_keepsColorsExact() {
+        // left half red, right half semi-transparent blue
+        BufferedImage source = createSolidImage(8, 8, 0xFFFF0000);
+        for (int x = 4; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                source.setRGB(x, y, 0x800000FF);
+            }
+        }
+
+        // the window covers columns 2 to 5, each source pixel becomes a 4x4 block
+        BufferedImage result = ImageUtils.cropAndScale(source, 2, 2, 4, 4, 16, 16, Resampling.NEAREST);
+
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                assertEquals(x < 8 ? 0xFFFF0000 : 0x800000FF, result.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    void cropAndScale_bilinear_blendsNeighbours() {
+        BufferedImage source = createSolidImage(2, 1, 0xFF000000);
+        source.setRGB(1, 0, 0xFFFFFFFF);
+
+        BufferedImage result = ImageUtils.cropAndScale(source, 0, 0, 2, 1, 8, 1, Resampling.BILINEAR);
+
+        // the edges keep the source colors, the middle is a gradient
+        assertEquals(0xFF000000, result.getRGB(0, 0));
+        assertEquals(0xFFFFFFFF, result.getRGB(7, 0));
+        int middle = result.getRGB(4, 0) & 0xFF;
+        assertTrue(middle > 0x40 && middle < 0xC0);
+    }
 
     @Test
-    void scale_doubleSize() {
-        BufferedImage source = createSolidImage(100, 100, 0xFFFF0000);
+    void cropAndScale_bilinear_solidImage_keepsColor() {
+        BufferedImage source = createSolidImage(64, 64, 0xC0123456);
 
-        BufferedImage result = ImageUtils.scale(source, 2.0);
+        BufferedImage result = ImageUtils.cropAndScale(source, 10.5, 20.25, 13, 7, 50, 30, Resampling.BILINEAR);
 
-        assertEquals(200, result.getWidth());
-        assertEquals(200, result.getHeight());
+        for (int x = 0; x < 50; x++) {
+            for (int y = 0; y < 30; y++) {
+                assertEquals(0xC0123456, result.getRGB(x, y));
+            }
+        }
     }
 
     @Test
-    void scale_halfSize() {
-        BufferedImage source = createSolidImage(100, 100, 0xFFFF0000);
+    void cropAndScale_subImage_readsOnlyTheSubImage() {
+        BufferedImage parent = createSolidImage(8, 8, 0xFFFF0000);
+        for (int x = 4; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                parent.setRGB(x, y, 0xFF00FF00);
+            }
+        }
+        BufferedImage source = parent.getSubimage(4, 0, 4, 8);
 
-        BufferedImage result = ImageUtils.scale(source, 0.5);
+        BufferedImage result = ImageUtils.cropAndScale(source, 0, 0, 4, 8, 4, 8, Resampling.NEAREST);
 
-        assertEquals(50, result.getWidth());
-        assertEquals(50, result.getHeight());
+        assertEquals(0xFF00FF00, result.getRGB(0, 0));
+        assertEquals(0xFF00FF00, result.getRGB(3, 7));
     }
 }
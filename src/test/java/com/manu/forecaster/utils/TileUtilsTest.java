@@ -1,11 +1,8 @@
 package com.manu.forecaster.utils;
 
-import com.manu.forecaster.dto.tile.TileBoundary;
 import com.manu.forecaster.dto.tile.TileRapresentation;
 import org.junit.jupiter.api.Test;
 
-import java.math.BigDecimal;
-
 import static org.junit.jupiter.api.Assertions.*;
 
 class TileUtilsTest {
@@ -14,8 +11,7 @@ class TileUtilsTest {
 
     @Test
     void latlongToTile_rome_zoom6_512() {
-        TileRapresentation tile = TileUtils.latlongToTile(
-                new BigDecimal("41.9028"), new BigDecimal("12.4964"), 6, 512);
+        TileRapresentation tile = TileUtils.latlongToTile(41.9028, 12.4964, 6, 512);
 
         assertEquals(34, tile.getX());
         assertEquals(23, tile.getY());
@@ -26,8 +22,7 @@ class TileUtilsTest {
 
     @Test
     void latlongToTile_equatorPrimeMeridian_zoom1() {
-        TileRapresentation tile = TileUtils.latlongToTile(
-                BigDecimal.ZERO, BigDecimal.ZERO, 1, 256);
+        TileRapresentation tile = TileUtils.latlongToTile(0.0, 0.0, 1, 256);
 
         assertEquals(1, tile.getX());
         assertEquals(1, tile.getY());
@@ -38,8 +33,7 @@ class TileUtilsTest {
 
     @Test
     void latlongToTile_equatorPrimeMeridian_zoom4() {
-        TileRapresentation tile = TileUtils.latlongToTile(
-                BigDecimal.ZERO, BigDecimal.ZERO, 4, 256);
+        TileRapresentation tile = TileUtils.latlongToTile(0.0, 0.0, 4, 256);
 
         assertEquals(8, tile.getX());
         assertEquals(8, tile.getY());
@@ -50,8 +44,7 @@ class TileUtilsTest {
 
     @Test
     void latlongToTile_negativeCoordinates_brasilia() {
-        TileRapresentation tile = TileUtils.latlongToTile(
-                new BigDecimal("-15.7797"), new BigDecimal("-47.9297"), 8, 256);
+        TileRapresentation tile = TileUtils.latlongToTile(-15.7797, -47.9297, 8, 256);
 
         assertEquals(93, tile.getX());
         assertEquals(139, tile.getY());
@@ -62,8 +55,7 @@ class TileUtilsTest {
 
     @Test
     void latlongToTile_highZoom_rome() {
-        TileRapresentation tile = TileUtils.latlongToTile(
-                new BigDecimal("41.9028"), new BigDecimal("12.4964"), 18, 256);
+        TileRapresentation tile = TileUtils.latlongToTile(41.9028, 12.4964, 18, 256);
 
         assertEquals(140171, tile.getX());
         assertEquals(97407, tile.getY());
@@ -72,102 +64,22 @@ class TileUtilsTest {
         assertEquals(125, tile.getYPixel());
     }
 
-    @Test
-    void latlongToTile_cornerCoordinatesAreComputed() {
-        TileRapresentation tile = TileUtils.latlongToTile(
-                new BigDecimal("41.9028"), new BigDecimal("12.4964"), 6, 512);
-
-        assertNotNull(tile.getTopLeftCorner());
-        assertNotNull(tile.getBottomRightCorner());
-        assertNotNull(tile.getTopLeftCorner().getLatitude());
-        assertNotNull(tile.getTopLeftCorner().getLongitude());
-        assertNotNull(tile.getBottomRightCorner().getLatitude());
-        assertNotNull(tile.getBottomRightCorner().getLongitude());
-    }
-
-    // ───────────────────────── getBoundaries tests ─────────────────────────
-
-    @Test
-    void getBoundaries_sameTile_pixelsPassThrough() {
-        TileRapresentation original = TileRapresentation.builder().x(5).y(5).build();
-        TileRapresentation topLeft = TileRapresentation.builder().x(5).y(5).xPixel(50).yPixel(30).build();
-        TileRapresentation bottomRight = TileRapresentation.builder().x(5).y(5).xPixel(200).yPixel(180).build();
-
-        TileBoundary boundary = TileUtils.getBoundaries(512, 512, original, topLeft, bottomRight);
-
-        assertEquals(50, boundary.getTopLeftXPixel());
-        assertEquals(30, boundary.getTopLeftYPixel());
-        assertEquals(200, boundary.getBottomRightXPixel());
-        assertEquals(180, boundary.getBottomRightYPixel());
-    }
-
-    @Test
-    void getBoundaries_topLeftSmallerX_correctedToZero() {
-        TileRapresentation original = TileRapresentation.builder().x(5).y(5).build();
-        TileRapresentation topLeft = TileRapresentation.builder().x(4).y(5).xPixel(100).yPixel(30).build();
-        TileRapresentation bottomRight = TileRapresentation.builder().x(5).y(5).xPixel(200).yPixel(180).build();
-
-        TileBoundary boundary = TileUtils.getBoundaries(512, 512, original, topLeft, bottomRight);
-
-        assertEquals(0, boundary.getTopLeftXPixel());
-        assertEquals(30, boundary.getTopLeftYPixel());
-        assertEquals(200, boundary.getBottomRightXPixel());
-        assertEquals(180, boundary.getBottomRightYPixel());
-    }
-
-    @Test
-    void getBoundaries_bottomRightLargerX_correctedToWidth() {
-        TileRapresentation original = TileRapresentation.builder().x(5).y(5).build();
-        TileRapresentation topLeft = TileRapresentation.builder().x(5).y(5).xPixel(50).yPixel(30).build();
-        TileRapresentation bottomRight = TileRapresentation.builder().x(6).y(5).xPixel(200).yPixel(180).build();
-
-        TileBoundary boundary = TileUtils.getBoundaries(512, 512, original, topLeft, bottomRight);
-
-        assertEquals(50, boundary.getTopLeftXPixel());
-        assertEquals(30, boundary.getTopLeftYPixel());
-        assertEquals(512, boundary.getBottomRightXPixel());
-        assertEquals(180, boundary.getBottomRightYPixel());
-    }
-
-    @Test
-    void getBoundaries_topLeftSmallerY_correctedToZero() {
-        TileRapresentation original = TileRapresentation.builder().x(5).y(5).build();
-        TileRapresentation topLeft = TileRapresentation.builder().x(5).y(4).xPixel(50).yPixel(100).build();
-        TileRapresentation bottomRight = TileRapresentation.builder().x(5).y(5).xPixel(200).yPixel(180).build();
-
-        TileBoundary boundary = TileUtils.getBoundaries(512, 512, original, topLeft, bottomRight);
-
-        assertEquals(50, boundary.getTopLeftXPixel());
-        assertEquals(0, boundary.getTopLeftYPixel());
-        assertEquals(200, boundary.getBottomRightXPixel());
-        assertEquals(180, boundary.getBottomRightYPixel());
-    }
+    // ───────────────────────── getMortonCode tests ─────────────────────────
 
     @Test
-    void getBoundaries_bottomRightLargerY_correctedToHeight() {
-        TileRapresentation original = TileRapresentation.builder().x(5).y(5).build();
-        TileRapresentation topLeft = TileRapresentation.builder().x(5).y(5).xPixel(50).yPixel(30).build();
-        TileRapresentation bottomRight = TileRapresentation.builder().x(5).y(6).xPixel(200).yPixel(180).build();
-
-        TileBoundary boundary = TileUtils.getBoundaries(512, 512, original, topLeft, bottomRight);
-
-        assertEquals(50, boundary.getTopLeftXPixel());
-        assertEquals(30, boundary.getTopLeftYPixel());
-        assertEquals(200, boundary.getBottomRightXPixel());
-        assertEquals(512, boundary.getBottomRightYPixel());
+    void getMortonCode_interleavesXAndYBits() {
+        assertEquals(0L, TileUtils.getMortonCode(0, 0));
+        assertEquals(1L, TileUtils.getMortonCode(1, 0));
+        assertEquals(2L, TileUtils.getMortonCode(0, 1));
+        assertEquals(3L, TileUtils.getMortonCode(1, 1));
+        assertEquals(0b110000L, TileUtils.getMortonCode(4, 4));
     }
 
     @Test
-    void getBoundaries_allBordersTouched_allPixelsCorrected() {
-        TileRapresentation original = TileRapresentation.builder().x(5).y(5).build();
-        TileRapresentation topLeft = TileRapresentation.builder().x(4).y(4).xPixel(100).yPixel(100).build();
-        TileRapresentation bottomRight = TileRapresentation.builder().x(6).y(6).xPixel(200).yPixel(200).build();
-
-        TileBoundary boundary = TileUtils.getBoundaries(512, 512, original, topLeft, bottomRight);
-
-        assertEquals(0, boundary.getTopLeftXPixel());
-        assertEquals(0, boundary.getTopLeftYPixel());
-        assertEquals(512, boundary.getBottomRightXPixel());
-        assertEquals(512, boundary.getBottomRightYPixel());
+    void getMortonCode_quadrantsAreContiguous() {
+        // every tile of the top left 2x2 quadrant comes before the tiles of the next quadrant
+        long maxTopLeftQuadrant = TileUtils.getMortonCode(1, 1);
+        assertTrue(maxTopLeftQuadrant < TileUtils.getMortonCode(2, 0));
+        assertTrue(maxTopLeftQuadrant < TileUtils.getMortonCode(0, 2));
     }
 }